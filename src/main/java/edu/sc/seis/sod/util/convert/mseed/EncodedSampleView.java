@@ -0,0 +1,231 @@
+package edu.sc.seis.sod.util.convert.mseed;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.iris.dmc.seedcodec.B1000Types;
+import edu.iris.dmc.seedcodec.Codec;
+import edu.iris.dmc.seedcodec.CodecException;
+import edu.iris.dmc.seedcodec.DecompressedData;
+import edu.sc.seis.sod.model.common.FissuresException;
+import edu.sc.seis.sod.model.seismogram.EncodedData;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+
+/**
+ * Random access to the samples of an encoded seismogram without decoding all
+ * of it. Each EncodedData is decoded the first time a sample in it is asked
+ * for and kept in a small least recently used cache of decoded blocks, so
+ * looking at a short window of a long seismogram only decodes the records
+ * that overlap the window. Steim frames within a record depend on the
+ * integration constants at the start of the record, so a record is the
+ * smallest unit that is decoded.
+ *
+ * Not thread safe.
+ */
+public class EncodedSampleView {
+
+    public EncodedSampleView(EncodedData[] data) {
+        this(data, DEFAULT_CACHED_BLOCKS);
+    }
+
+    public EncodedSampleView(EncodedData[] data, final int maxCachedBlocks) {
+        this.data = data;
+        blockStart = new int[data.length + 1];
+        for (int i = 0; i < data.length; i++) {
+            blockStart[i + 1] = blockStart[i] + data[i].num_points;
+            if (data[i].compression == B1000Types.FLOAT || data[i].compression == B1000Types.DOUBLE) {
+                integerData = false;
+            }
+        }
+        cache = new LinkedHashMap<Integer, DecodedBlock>(16, 0.75f, true) {
+
+            protected boolean removeEldestEntry(Map.Entry<Integer, DecodedBlock> eldest) {
+                return size() > maxCachedBlocks;
+            }
+        };
+    }
+
+    public static EncodedSampleView of(LocalSeismogramImpl seis) throws FissuresException {
+        return new EncodedSampleView(seis.get_as_encoded());
+    }
+
+    public int getNumPoints() {
+        return blockStart[data.length];
+    }
+
+    /** true if all of the blocks hold integer samples, ie not FLOAT or DOUBLE. */
+    public boolean isIntegerData() {
+        return integerData;
+    }
+
+    public int getNumBlocks() {
+        return data.length;
+    }
+
+    /** @return the index of the EncodedData that holds the sample */
+    public int getBlockIndex(int sampleIndex) {
+        if (sampleIndex < 0 || sampleIndex >= getNumPoints()) {
+            throw new IndexOutOfBoundsException("sample " + sampleIndex + " not in 0-" + getNumPoints());
+        }
+        int i = Arrays.binarySearch(blockStart, sampleIndex);
+        if (i < 0) {
+            return -i - 2;
+        }
+        // skip over empty blocks that start at the same index
+        while (blockStart[i + 1] == sampleIndex) {
+            i++;
+        }
+        return i;
+    }
+
+    /** @return the index of the first sample in the block */
+    public int getBlockStart(int blockIndex) {
+        return blockStart[blockIndex];
+    }
+
+    public int getInt(int index) throws CodecException {
+        DecodedBlock b = getBlockFor(index);
+        int i = index - b.start;
+        return b.ints != null ? b.ints[i] : (int)b.doubles[i];
+    }
+
+    public double getDouble(int index) throws CodecException {
+        DecodedBlock b = getBlockFor(index);
+        int i = index - b.start;
+        return b.ints != null ? b.ints[i] : b.doubles[i];
+    }
+
+    /**
+     * Copies the samples from begin, inclusive, to end, exclusive, decoding
+     * only the blocks that overlap the range. Non-integer samples are cast.
+     */
+    public int[] getInts(int begin, int end) throws CodecException {
+        int[] out = new int[end - begin];
+        int pos = begin;
+        while (pos < end) {
+            DecodedBlock b = getBlockFor(pos);
+            int n = Math.min(end, b.start + b.length) - pos;
+            if (b.ints != null) {
+                System.arraycopy(b.ints, pos - b.start, out, pos - begin, n);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    out[pos - begin + i] = (int)b.doubles[pos - b.start + i];
+                }
+            }
+            pos += n;
+        }
+        return out;
+    }
+
+    /**
+     * Copies the samples from begin, inclusive, to end, exclusive, decoding
+     * only the blocks that overlap the range.
+     */
+    public float[] getFloats(int begin, int end) throws CodecException {
+        float[] out = new float[end - begin];
+        int pos = begin;
+        while (pos < end) {
+            DecodedBlock b = getBlockFor(pos);
+            int n = Math.min(end, b.start + b.length) - pos;
+            for (int i = 0; i < n; i++) {
+                out[pos - begin + i] = b.ints != null ? b.ints[pos - b.start + i] : (float)b.doubles[pos - b.start + i];
+            }
+            pos += n;
+        }
+        return out;
+    }
+
+    /**
+     * @return min, max and mean of the samples from begin, inclusive, to end,
+     *         exclusive
+     */
+    public double[] getMinMaxMean(int begin, int end) throws CodecException {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        int pos = begin;
+        while (pos < end) {
+            DecodedBlock b = getBlockFor(pos);
+            int n = Math.min(end, b.start + b.length) - pos;
+            for (int i = pos - b.start; i < pos - b.start + n; i++) {
+                double v = b.ints != null ? b.ints[i] : b.doubles[i];
+                if (v < min) {
+                    min = v;
+                }
+                if (v > max) {
+                    max = v;
+                }
+                sum += v;
+            }
+            pos += n;
+        }
+        return new double[] {min, max, end > begin ? sum / (end - begin) : 0};
+    }
+
+    protected DecodedBlock getBlockFor(int sampleIndex) throws CodecException {
+        if (lastBlock != null && sampleIndex >= lastBlock.start && sampleIndex < lastBlock.start + lastBlock.length) {
+            return lastBlock;
+        }
+        int blockIndex = getBlockIndex(sampleIndex);
+        DecodedBlock b = cache.get(blockIndex);
+        if (b == null) {
+            b = new DecodedBlock(blockStart[blockIndex], decode(data[blockIndex]));
+            cache.put(blockIndex, b);
+            numDecoded++;
+        }
+        lastBlock = b;
+        return b;
+    }
+
+    /** number of blocks that have been decoded, including any decoded again after eviction. */
+    public int getNumDecoded() {
+        return numDecoded;
+    }
+
+    /**
+     * Decodes one EncodedData. EncodedData byte_order true means little
+     * endian, which for the codec means the bytes must be swapped.
+     */
+    public static DecompressedData decode(EncodedData ed) throws CodecException {
+        return CODEC.decompress(ed.compression, ed.values, ed.num_points, ed.byte_order);
+    }
+
+    static class DecodedBlock {
+
+        DecodedBlock(int start, DecompressedData dd) {
+            this.start = start;
+            this.ints = dd.getAsInt();
+            if (ints == null) {
+                doubles = dd.getAsDouble();
+                length = doubles.length;
+            } else {
+                length = ints.length;
+            }
+        }
+
+        final int start;
+
+        final int length;
+
+        int[] ints;
+
+        double[] doubles;
+    }
+
+    private EncodedData[] data;
+
+    private int[] blockStart;
+
+    private boolean integerData = true;
+
+    private Map<Integer, DecodedBlock> cache;
+
+    private DecodedBlock lastBlock = null;
+
+    private int numDecoded = 0;
+
+    private static final Codec CODEC = new Codec();
+
+    public static final int DEFAULT_CACHED_BLOCKS = 16;
+}
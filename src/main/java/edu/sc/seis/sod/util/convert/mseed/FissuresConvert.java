@@ -10,6 +10,8 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZonedDateTime;
@@ -22,6 +24,7 @@ import edu.sc.seis.seisFile.TimeUtils;
 import edu.sc.seis.seisFile.mseed.Blockette;
 import edu.sc.seis.seisFile.mseed.Blockette100;
 import edu.sc.seis.seisFile.mseed.Blockette1000;
+import edu.sc.seis.seisFile.mseed.Blockette1001;
 import edu.sc.seis.seisFile.mseed.Btime;
 import edu.sc.seis.seisFile.mseed.BtimeRange;
 import edu.sc.seis.seisFile.mseed.DataHeader;
@@ -66,6 +69,55 @@ public class FissuresConvert {
         return toMSeed(seis, 1);
     }
 
+    /**
+     * Converts to miniseed, steim compressing integer data that is not
+     * already encoded. Records are filled with as many 64 byte frames as fit
+     * in recordSize after the header, with the data starting at byte 64 after
+     * blockettes 1000 and 1001, and with STEIM2 falling back to STEIM1 for
+     * any record with differences too large for it. Float and already encoded
+     * data are converted as with toMSeed(seis, seqStart).
+     * 
+     * @param compression
+     *            B1000Types.STEIM1 or B1000Types.STEIM2
+     * @param recordSize
+     *            one of RECORD_SIZE_512, RECORD_SIZE_1024 or RECORD_SIZE_4096
+     */
+    public static DataRecord[] toMSeed(LocalSeismogramImpl seis, int seqStart, int compression, int recordSize)
+            throws SeedFormatException {
+        if (seis.is_encoded() || ! seis.can_convert_to_long()) {
+            return toMSeed(seis, seqStart);
+        }
+        try {
+            int frames = SteimEncoder.framesPerRecord(recordSize, STEIM_DATA_OFFSET);
+            EncodedData[] eData = new SteimEncoder(compression).encodeAll(seis.get_as_longs(), frames);
+            LinkedList<DataRecord> records = toMSeed(eData,
+                                                     seis.channel_id,
+                                                     seis.begin_time,
+                                                     (SamplingImpl)seis.sampling_info,
+                                                     seqStart);
+            DataRecord[] out = new DataRecord[records.size()];
+            int i = 0;
+            for (DataRecord dr : records) {
+                // the header and blockette 1000 end at byte 56, the 8 bytes of
+                // blockette 1001 move the data to byte 64 so the steim frames
+                // are on 64 byte boundaries, as they were sized. Blockette 100,
+                // which a short last record has room for, is left off so the
+                // offset is the same in every record.
+                DataRecord padded = new DataRecord(dr.getHeader());
+                padded.addBlockette(dr.getBlockettes(1000)[0]);
+                Blockette1001 b1001 = new Blockette1001();
+                b1001.setFrameCount((byte)(dr.getData().length / 64));
+                padded.addBlockette(b1001);
+                padded.setData(dr.getData());
+                out[i++] = padded;
+            }
+            return out;
+        } catch(FissuresException e) {
+            // this shouldn't ever happen as we already checked the type
+            throw new SeedFormatException("Problem getting integer data", e);
+        }
+    }
+
     public static DataRecord[] toMSeed(LocalSeismogramImpl seis, int seqStart) throws SeedFormatException {
         LinkedList<DataRecord> outRecords = new LinkedList<DataRecord>();
         Instant start = seis.begin_time;
@@ -83,54 +135,8 @@ public class FissuresConvert {
             }
         } else if (seis.data.discriminator().equals(TimeSeriesType.TYPE_FLOAT)) {
             try {
-                // for float, 64 bytes = 4 bytes * 16 samples, so each edata
-                // holds 62*16 samples
-                EncodedData[] eData = new EncodedData[(int)Math.ceil(seis.num_points * 4.0f / (62 * 64))];
-                float[] data = seis.get_as_floats();
-                for (int i = 0; i < eData.length; i++) {
-                    byte[] dataBytes = new byte[62 * 64];
-                    int j;
-                    for (j = 0; j + (62 * 16 * i) < data.length && j < 62 * 16; j++) {
-                        int val = Float.floatToIntBits(data[j + (62 * 16 * i)]);
-                        dataBytes[4 * j] = (byte)((val & 0xff000000) >> 24);
-                        dataBytes[4 * j + 1] = (byte)((val & 0x00ff0000) >> 16);
-                        dataBytes[4 * j + 2] = (byte)((val & 0x0000ff00) >> 8);
-                        dataBytes[4 * j + 3] = (byte)((val & 0x000000ff));
-                    }
-                    if (j == 0) {
-                        throw new SeedFormatException("try to put 0 float samples into an encodedData object j=" + j
-                                + " i=" + i + " seis.num_ppoints=" + seis.num_points);
-                    }
-                    eData[i] = new EncodedData((short)B1000Types.FLOAT, dataBytes, j, false);
-                }
-                outRecords = toMSeed(eData, seis.channel_id, start, (SamplingImpl)seis.sampling_info, seqStart);
-            } catch(FissuresException e) {
-                // this shouldn't ever happen as we already checked the type
-                throw new SeedFormatException("Problem getting float data", e);
-            }
-        } else if (seis.data.discriminator().equals(TimeSeriesType.TYPE_LONG)) {
-            try {
-                // for int, 64 bytes = 4 bytes * 16 samples, so each edata
-                // holds 62*16 samples
-                EncodedData[] eData = new EncodedData[(int)Math.ceil(seis.num_points * 4.0f / (62 * 64))];
-                int[] data = seis.get_as_longs();
-                for (int i = 0; i < eData.length; i++) {
-                    byte[] dataBytes = new byte[62 * 64];
-                    int j;
-                    for (j = 0; j + (62 * 16 * i) < data.length && j < 62 * 16; j++) {
-                        int val = data[j + (62 * 16 * i)];
-                        dataBytes[4 * j] = (byte)((val & 0xff000000) >> 24);
-                        dataBytes[4 * j + 1] = (byte)((val & 0x00ff0000) >> 16);
-                        dataBytes[4 * j + 2] = (byte)((val & 0x0000ff00) >> 8);
-                        dataBytes[4 * j + 3] = (byte)((val & 0x000000ff));
-                    }
-                    if (j == 0) {
-                        throw new SeedFormatException("try to put 0 int samples into an encodedData object j=" + j
-                                + " i=" + i + " seis.num_ppoints=" + seis.num_points);
-                    }
-                    eData[i] = new EncodedData((short)B1000Types.INTEGER, dataBytes, j, false);
-                }
-                outRecords = toMSeed(eData, seis.channel_id, start, (SamplingImpl)seis.sampling_info, seqStart);
+                outRecords = toMSeed(toEncodedData(seis.get_as_floats()),
+                                     seis.channel_id, start, (SamplingImpl)seis.sampling_info, seqStart);
             } catch(FissuresException e) {
                 // this shouldn't ever happen as we already checked the type
                 throw new SeedFormatException("Problem getting float data", e);
@@ -157,6 +163,21 @@ public class FissuresConvert {
         return outRecords.toArray(new DataRecord[0]);
     }
 
+    /**
+     * Writes the seismogram as miniseed directly to the stream, without
+     * creating DataRecord objects. See MSeedWriter.
+     */
+    public static void writeMSeed(LocalSeismogramImpl seis, OutputStream out) throws SeedFormatException, IOException {
+        MSeedWriter writer = new MSeedWriter(out);
+        try {
+            writer.write(seis);
+            out.flush();
+        } finally {
+            // the stream belongs to the caller, so release rather than close
+            writer.releaseBuffer();
+        }
+    }
+
     /*
     public static DataRecord[] toMSeed(DataChunk chunk) throws SeedFormatException {
         LinkedList<DataRecord> outRecords;
@@ -193,15 +214,15 @@ public class FissuresConvert {
         Blockette100 b100;
         int recordSize = RECORD_SIZE_4096;
         int recordSizePower = RECORD_SIZE_4096_POWER;
-        int minRecordSize = 0;   
+        // header and blockette sizes are the same for every record, so only
+        // need the largest data section to size the records
+        int maxDataLength = 0;
         for (int i = 0; i < eData.length; i++) {
-            header = new DataHeader(seqStart++, typeCode, false);
-            b1000 = new Blockette1000();
-            b100 = new Blockette100();
-            if ( minRecordSize < eData[i].values.length + header.getSize() + b1000.getSize()) {
-                minRecordSize = eData[i].values.length + header.getSize() + b1000.getSize();
+            if (maxDataLength < eData[i].values.length) {
+                maxDataLength = eData[i].values.length;
             }
         }
+        int minRecordSize = maxDataLength + DATA_HEADER_SIZE + B1000_SIZE;
         if (minRecordSize < RECORD_SIZE_4096) {
             recordSize = RECORD_SIZE_4096;
             recordSizePower = RECORD_SIZE_4096_POWER;
@@ -214,19 +235,22 @@ public class FissuresConvert {
             recordSize = RECORD_SIZE_512;
             recordSizePower = RECORD_SIZE_512_POWER;
         }
+        Duration sampPeriod = sampling_info.getPeriod();
+        short[] multiAndFactor = calcSeedMultipilerFactor(sampling_info);
+        QuantityImpl hertz = sampling_info.getFrequency().convertTo(UnitImpl.HERTZ);
         for (int i = 0; i < eData.length; i++) {
             header = new DataHeader(seqStart++, 'D', false);
             b1000 = new Blockette1000();
-            b100 = new Blockette100();
-            if (eData[i].values.length + header.getSize() + b1000.getSize() + b100.getSize() < recordSize) {
+            b100 = null;
+            if (eData[i].values.length + DATA_HEADER_SIZE + B1000_SIZE + B100_SIZE < recordSize) {
                 // ok to use Blockette100 for sampling
-            } else if (eData[i].values.length + header.getSize() + b1000.getSize() < recordSize) {
+                b100 = new Blockette100();
+            } else if (eData[i].values.length + DATA_HEADER_SIZE + B1000_SIZE < recordSize) {
                 // will fit without Blockette100
-                b100 = null;
             } else {
                 throw new SeedFormatException("Can't fit data into record of size "+recordSize+" "+
-                        + (eData[i].values.length + header.getSize() + b1000.getSize() + b100.getSize()) + " "
-                        + eData[i].values.length + " " + (header.getSize() + b1000.getSize() + b100.getSize()));
+                        + (eData[i].values.length + DATA_HEADER_SIZE + B1000_SIZE + B100_SIZE) + " "
+                        + eData[i].values.length + " " + (DATA_HEADER_SIZE + B1000_SIZE + B100_SIZE));
             } // end of else
               // can fit into one record
             header.setStationIdentifier(channel_id.getStationCode());
@@ -235,9 +259,7 @@ public class FissuresConvert {
             header.setNetworkCode(channel_id.getNetworkId());
             header.setStartBtime(getBtime(start));
             header.setNumSamples((short)eData[i].num_points);
-            Duration sampPeriod = sampling_info.getPeriod();
             start = start.plus(sampPeriod.multipliedBy(eData[i].num_points));
-            short[] multiAndFactor = calcSeedMultipilerFactor(sampling_info);
             header.setSampleRateFactor(multiAndFactor[0]);
             header.setSampleRateMultiplier(multiAndFactor[1]);
             b1000.setEncodingFormat((byte)eData[i].compression);
@@ -250,7 +272,6 @@ public class FissuresConvert {
             b1000.setDataRecordLength((byte)recordSizePower);
             DataRecord dr = new DataRecord(header);
             dr.addBlockette(b1000);
-            QuantityImpl hertz = sampling_info.getFrequency().convertTo(UnitImpl.HERTZ);
             if (b100 != null) {
                 b100.setActualSampleRate((float)hertz.getValue());
                 dr.addBlockette(b100);
@@ -282,6 +303,15 @@ public class FissuresConvert {
         return toFissures(data.toArray(new DataRecord[0]));
     }
 
+    /**
+     * Streams the contiguous seismograms in the file, each one is returned as
+     * soon as a gap, overlap or channel change is found, so only one segment
+     * is held in memory at a time. The iterator should be closed when done.
+     */
+    public static MSeedSegmentIterator toFissuresIterator(String filename) throws IOException {
+        return new MSeedSegmentIterator(filename);
+    }
+
     /*
 
                                     if (seis == null) {
@@ -438,28 +468,51 @@ public class FissuresConvert {
     public static LocalSeismogramImpl toFissures(DataRecord seed) throws SeedFormatException {
         DataHeader header = seed.getHeader();
         String isoTime = getISOTime(header.getStartBtime());
+        Instant time = TimeUtils.parseISOString(isoTime);
+        SamplingImpl sampling = convertSampleRate(seed);
+        TimeSeriesDataSel bits = convertData(seed);
+        return toFissures(header.getNetworkCode(),
+                          header.getStationIdentifier(),
+                          header.getLocationIdentifier(),
+                          header.getChannelIdentifier(),
+                          time,
+                          header.getNumSamples(),
+                          sampling,
+                          bits);
+    }
+
+    /**
+     * Creates a seismogram from the raw header fields of a miniseed record.
+     * The codes are trimmed and a temporary network code is given the start
+     * year, as miniseed does not store the network start.
+     */
+    public static LocalSeismogramImpl toFissures(String netCode,
+                                                 String staCode,
+                                                 String locCode,
+                                                 String chanCode,
+                                                 Instant time,
+                                                 int numSamples,
+                                                 SamplingImpl sampling,
+                                                 TimeSeriesDataSel bits) {
         // the network id isn't correct, but network start is not stored
         // in miniseed
-        Instant time = TimeUtils.parseISOString(isoTime);
-        String netId = header.getNetworkCode();
+        String netId = netCode;
         if (NetworkIdUtil.isTemporary(netId)) {
             netId = NetworkIdUtil.formId(netId, time);
         }
         ChannelId channelId = new ChannelId(netId,
-                                            header.getStationIdentifier().trim(),
-                                            edu.sc.seis.seisFile.fdsnws.stationxml.Channel.fixLocCode(header.getLocationIdentifier()), 
-                                            header.getChannelIdentifier().trim(),
+                                            staCode.trim(),
+                                            edu.sc.seis.seisFile.fdsnws.stationxml.Channel.fixLocCode(locCode), 
+                                            chanCode.trim(),
                                             time);
         String seisId = channelId.getNetworkId() + ":" + channelId.getStationCode() + ":" + channelId.getLocCode()
-                + ":" + channelId.getChannelCode() + ":" + getISOTime(header.getStartBtime());
+                + ":" + channelId.getChannelCode() + ":" + time.toString();
         Property[] props = new Property[1];
         props[0] = new Property("Name", seisId);
-        SamplingImpl sampling = convertSampleRate(seed);
-        TimeSeriesDataSel bits = convertData(seed);
         return new LocalSeismogramImpl(seisId,
                                        props,
                                        time,
-                                       header.getNumSamples(),
+                                       numSamples,
                                        sampling,
                                        UnitImpl.COUNT,
                                        channelId,
@@ -529,14 +582,9 @@ public class FissuresConvert {
     public static SamplingImpl convertSampleRate(DataRecord seed) {
         SamplingImpl sampling;
         Blockette[] blocketts = seed.getBlockettes(100);
-        int numPerSampling;
-        Duration timeInterval;
         if (blocketts.length != 0) {
             Blockette100 b100 = (Blockette100)blocketts[0];
-            float f = b100.getActualSampleRate();
-            numPerSampling = 1;
-            timeInterval = TimeUtils.durationFromSeconds( f);
-            sampling = new SamplingImpl(numPerSampling, timeInterval);
+            sampling = convertSampleRate(b100.getActualSampleRate());
         } else {
             DataHeader header = seed.getHeader();
             sampling = convertSampleRate(header.getSampleRateMultiplier(), header.getSampleRateFactor());
@@ -544,6 +592,11 @@ public class FissuresConvert {
         return sampling;
     }
 
+    /** converts the actual sample rate in hertz, as stored in a Blockette100. */
+    public static SamplingImpl convertSampleRate(float actualSampleRate) {
+        return new SamplingImpl(1, TimeUtils.durationFromSeconds(1.0 / actualSampleRate));
+    }
+
     public static SamplingImpl convertSampleRate(int multi, int factor) {
         int numPerSampling;
         Duration timeInterval;
@@ -584,21 +637,25 @@ public class FissuresConvert {
     public static EncodedData[] toEncodedData(int[] data) {
         // for int (corba calls this a long), 64 bytes = 4 bytes * 16 samples, so each edata
         // holds 62*16 samples
-        if (data.length == 0) {
-            return new EncodedData[0];
+        EncodedData[] eData = new EncodedData[(data.length + SAMPLES_PER_EDATA - 1) / SAMPLES_PER_EDATA];
+        for (int i = 0; i < eData.length; i++) {
+            byte[] dataBytes = new byte[62 * 64];
+            int n = Math.min(SAMPLES_PER_EDATA, data.length - i * SAMPLES_PER_EDATA);
+            ByteBuffer.wrap(dataBytes).asIntBuffer().put(data, i * SAMPLES_PER_EDATA, n);
+            eData[i] = new EncodedData((short)B1000Types.INTEGER, dataBytes, n, false);
         }
-        EncodedData[] eData = new EncodedData[(int)Math.ceil(data.length * 4.0f / (62 * 64))];
+        return eData;
+    }
+
+    public static EncodedData[] toEncodedData(float[] data) {
+        // for float, 64 bytes = 4 bytes * 16 samples, so each edata
+        // holds 62*16 samples
+        EncodedData[] eData = new EncodedData[(data.length + SAMPLES_PER_EDATA - 1) / SAMPLES_PER_EDATA];
         for (int i = 0; i < eData.length; i++) {
             byte[] dataBytes = new byte[62 * 64];
-            int j;
-            for (j = 0; j + (62 * 16 * i) < data.length && j < 62 * 16; j++) {
-                int val = data[j + (62 * 16 * i)];
-                dataBytes[4 * j] = (byte)((val & 0xff000000) >> 24);
-                dataBytes[4 * j + 1] = (byte)((val & 0x00ff0000) >> 16);
-                dataBytes[4 * j + 2] = (byte)((val & 0x0000ff00) >> 8);
-                dataBytes[4 * j + 3] = (byte)((val & 0x000000ff));
-            }
-            eData[i] = new EncodedData((short)B1000Types.INTEGER, dataBytes, j, false);
+            int n = Math.min(SAMPLES_PER_EDATA, data.length - i * SAMPLES_PER_EDATA);
+            ByteBuffer.wrap(dataBytes).asFloatBuffer().put(data, i * SAMPLES_PER_EDATA, n);
+            eData[i] = new EncodedData((short)B1000Types.FLOAT, dataBytes, n, false);
         }
         return eData;
     }
@@ -650,6 +707,24 @@ public class FissuresConvert {
     public static int RECORD_SIZE_256 = (int)Math.pow(2, RECORD_SIZE_256_POWER);
 
     public static final Duration DAY =  Duration.ofDays(1);
+
+    /** samples of 4 byte integer or float data per uncompressed EncodedData. */
+    private static final int SAMPLES_PER_EDATA = 62 * 16;
+
+    /** size of the fixed section of the data header in bytes. */
+    private static final int DATA_HEADER_SIZE = 48;
+
+    /** size of a Blockette1000 in bytes. */
+    private static final int B1000_SIZE = 8;
+
+    /** size of a Blockette100 in bytes. */
+    private static final int B100_SIZE = 12;
+
+    /** size of a Blockette1001 in bytes. */
+    private static final int B1001_SIZE = 8;
+
+    /** start of steim data, after the header and blockettes 1000 and 1001. */
+    static final int STEIM_DATA_OFFSET = DATA_HEADER_SIZE + B1000_SIZE + B1001_SIZE;
     
     /**
      * Turns a UnitImpl into a byte array using Java serialization
@@ -0,0 +1,195 @@
+package edu.sc.seis.sod.util.convert.mseed;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.sc.seis.seisFile.mseed.DataHeader;
+import edu.sc.seis.seisFile.mseed.DataRecord;
+import edu.sc.seis.seisFile.mseed.SeedFormatException;
+import edu.sc.seis.sod.model.common.FissuresException;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.model.station.ChannelIdUtil;
+
+/**
+ * Reads many miniseed files in parallel, possibly with records from many
+ * channels mixed together in each file and in any time order. Files are parsed
+ * on a fork-join pool, the records are sorted into per channel buckets, and
+ * each bucket is sorted by start time and split into contiguous seismograms,
+ * again in parallel across channels.
+ *
+ * Files that cannot be read are skipped and reported by getFailures() after
+ * ingest returns.
+ */
+public class MSeedBulkIngest {
+
+    public MSeedBulkIngest() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public MSeedBulkIngest(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Ingests all regular files in the directory tree.
+     */
+    public Map<String, List<LocalSeismogramImpl>> ingest(File directory) throws IOException {
+        return ingest(listFiles(directory));
+    }
+
+    /**
+     * @return contiguous seismograms keyed by ChannelIdUtil.toStringNoDates,
+     *         in time order within each channel
+     */
+    public Map<String, List<LocalSeismogramImpl>> ingest(List<File> files) throws IOException {
+        failures.clear();
+        List<Callable<Map<String, List<DataRecord>>>> readTasks = new ArrayList<Callable<Map<String, List<DataRecord>>>>();
+        for (final File f : files) {
+            readTasks.add(new Callable<Map<String, List<DataRecord>>>() {
+
+                public Map<String, List<DataRecord>> call() {
+                    return readByChannel(f);
+                }
+            });
+        }
+        Map<String, List<DataRecord>> buckets = new HashMap<String, List<DataRecord>>();
+        for (Future<Map<String, List<DataRecord>>> future : pool.invokeAll(readTasks)) {
+            for (Map.Entry<String, List<DataRecord>> entry : getResult(future).entrySet()) {
+                List<DataRecord> bucket = buckets.get(entry.getKey());
+                if (bucket == null) {
+                    buckets.put(entry.getKey(), entry.getValue());
+                } else {
+                    bucket.addAll(entry.getValue());
+                }
+            }
+        }
+        List<Callable<List<LocalSeismogramImpl>>> splitTasks = new ArrayList<Callable<List<LocalSeismogramImpl>>>();
+        for (final Map.Entry<String, List<DataRecord>> entry : buckets.entrySet()) {
+            splitTasks.add(new Callable<List<LocalSeismogramImpl>>() {
+
+                public List<LocalSeismogramImpl> call() throws SeedFormatException, FissuresException {
+                    return splitContiguous(entry.getValue());
+                }
+            });
+        }
+        Map<String, List<LocalSeismogramImpl>> out = new TreeMap<String, List<LocalSeismogramImpl>>();
+        for (Future<List<LocalSeismogramImpl>> future : pool.invokeAll(splitTasks)) {
+            List<LocalSeismogramImpl> seisList = getResult(future);
+            if (seisList.size() != 0) {
+                out.put(ChannelIdUtil.toStringNoDates(seisList.get(0).getChannelID()), seisList);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Reads every data record in the file and groups them by channel codes.
+     * Unreadable files are recorded as failures and give an empty map.
+     */
+    protected Map<String, List<DataRecord>> readByChannel(File f) {
+        Map<String, List<DataRecord>> out = new HashMap<String, List<DataRecord>>();
+        try {
+            MSeedSegmentIterator it = new MSeedSegmentIterator(f.getPath());
+            try {
+                DataRecord dr;
+                while ((dr = it.readDataRecord()) != null) {
+                    String key = getChannelKey(dr);
+                    List<DataRecord> bucket = out.get(key);
+                    if (bucket == null) {
+                        bucket = new ArrayList<DataRecord>();
+                        out.put(key, bucket);
+                    }
+                    bucket.add(dr);
+                }
+            } finally {
+                it.close();
+            }
+        } catch(IOException e) {
+            failed(f, e);
+            out.clear();
+        } catch(SeedFormatException e) {
+            failed(f, e);
+            out.clear();
+        }
+        return out;
+    }
+
+    /**
+     * Sorts the records, all from one channel, by start time and splits them
+     * into contiguous seismograms.
+     */
+    public static List<LocalSeismogramImpl> splitContiguous(List<DataRecord> records) throws SeedFormatException,
+            FissuresException {
+        Collections.sort(records, new Comparator<DataRecord>() {
+
+            public int compare(DataRecord o1, DataRecord o2) {
+                return o1.getHeader().getStartBtime().toInstant().compareTo(o2.getHeader().getStartBtime().toInstant());
+            }
+        });
+        return FissuresConvert.toFissures(records);
+    }
+
+    public static String getChannelKey(DataRecord dr) {
+        DataHeader header = dr.getHeader();
+        return header.getNetworkCode().trim() + "." + header.getStationIdentifier().trim() + "."
+                + header.getLocationIdentifier().trim() + "." + header.getChannelIdentifier().trim();
+    }
+
+    public static List<File> listFiles(File directory) throws IOException {
+        Stream<Path> walk = Files.walk(directory.toPath());
+        try {
+            return walk.filter(p -> Files.isRegularFile(p)).map(p -> p.toFile()).sorted().collect(Collectors.toList());
+        } finally {
+            walk.close();
+        }
+    }
+
+    /**
+     * @return files from the last ingest that could not be read, and why
+     */
+    public Map<File, Exception> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    protected void failed(File f, Exception e) {
+        logger.warn("Unable to read miniseed from " + f + ", skipping.", e);
+        failures.put(f, e);
+    }
+
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during ingest", e);
+        } catch(ExecutionException e) {
+            throw new IOException("Problem during ingest", e.getCause());
+        }
+    }
+
+    private ForkJoinPool pool;
+
+    private Map<File, Exception> failures = new ConcurrentHashMap<File, Exception>();
+
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(MSeedBulkIngest.class);
+}
@@ -0,0 +1,160 @@
+package edu.sc.seis.sod.util.convert.mseed;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import edu.sc.seis.seisFile.mseed.DataHeader;
+import edu.sc.seis.seisFile.mseed.DataRecord;
+import edu.sc.seis.seisFile.mseed.SeedFormatException;
+import edu.sc.seis.seisFile.mseed.SeedRecord;
+import edu.sc.seis.sod.model.common.FissuresException;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.util.time.RangeTool;
+
+/**
+ * Iterates over the contiguous seismograms in a stream of miniseed records.
+ * Records are read one at a time and appended to the current seismogram until
+ * a gap, overlap or change of channel is found, at which point the finished
+ * seismogram is returned by next(). Only the seismogram currently being
+ * assembled is held in memory, so a large file can be processed without
+ * reading all of its records first.
+ *
+ * Errors reading the stream are thrown from hasNext() and next() wrapped in a
+ * MSeedIterationException.
+ */
+public class MSeedSegmentIterator implements Iterator<LocalSeismogramImpl>, Closeable {
+
+    public MSeedSegmentIterator(String filename) throws IOException {
+        this(new DataInputStream(new BufferedInputStream(new FileInputStream(filename))), DEFAULT_RECORD_SIZE);
+    }
+
+    /**
+     * @param in
+     *            source of miniseed records, closed by close() if it is
+     *            Closeable
+     * @param defaultRecordSize
+     *            record size to use for records without a blockette 1000
+     */
+    public MSeedSegmentIterator(DataInput in, int defaultRecordSize) {
+        this.in = in;
+        this.defaultRecordSize = defaultRecordSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextSeis == null) {
+            try {
+                nextSeis = readSegment();
+            } catch(IOException e) {
+                throw new MSeedIterationException(e);
+            } catch(SeedFormatException e) {
+                throw new MSeedIterationException(e);
+            } catch(FissuresException e) {
+                throw new MSeedIterationException(e);
+            }
+        }
+        return nextSeis != null;
+    }
+
+    @Override
+    public LocalSeismogramImpl next() {
+        if ( ! hasNext()) {
+            throw new NoSuchElementException();
+        }
+        LocalSeismogramImpl out = nextSeis;
+        nextSeis = null;
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        eof = true;
+        pending = null;
+        if (in instanceof Closeable) {
+            ((Closeable)in).close();
+        }
+    }
+
+    /**
+     * Reads records until the current segment is broken by a non-contiguous
+     * record or the end of the stream.
+     *
+     * @return the finished segment, or null if there are no more records
+     */
+    protected LocalSeismogramImpl readSegment() throws IOException, SeedFormatException, FissuresException {
+        DataRecord first = pending != null ? pending : readDataRecord();
+        pending = null;
+        if (first == null) {
+            return null;
+        }
+        LocalSeismogramImpl seis = FissuresConvert.toFissures(first);
+        DataRecord prev = first;
+        DataRecord dr;
+        while ((dr = readDataRecord()) != null) {
+            if ( ! isSameChannel(prev, dr)
+                    || ! RangeTool.areContiguous(FissuresConvert.getTimeRange(prev.getBtimeRange()),
+                                                 FissuresConvert.getTimeRange(dr.getBtimeRange()),
+                                                 FissuresConvert.convertSampleRate(prev).getPeriod())) {
+                pending = dr;
+                break;
+            }
+            FissuresConvert.append(seis, dr);
+            prev = dr;
+        }
+        return seis;
+    }
+
+    /**
+     * @return the next data record in the stream, skipping any non-data
+     *         records, or null at the end of the stream
+     */
+    protected DataRecord readDataRecord() throws IOException, SeedFormatException {
+        while ( ! eof) {
+            try {
+                SeedRecord sr = SeedRecord.read(in, defaultRecordSize);
+                if (sr instanceof DataRecord) {
+                    return (DataRecord)sr;
+                }
+            } catch(EOFException e) {
+                eof = true;
+            }
+        }
+        return null;
+    }
+
+    public static boolean isSameChannel(DataRecord one, DataRecord two) {
+        DataHeader a = one.getHeader();
+        DataHeader b = two.getHeader();
+        return a.getNetworkCode().trim().equals(b.getNetworkCode().trim())
+                && a.getStationIdentifier().trim().equals(b.getStationIdentifier().trim())
+                && a.getLocationIdentifier().trim().equals(b.getLocationIdentifier().trim())
+                && a.getChannelIdentifier().trim().equals(b.getChannelIdentifier().trim());
+    }
+
+    private DataInput in;
+
+    private int defaultRecordSize;
+
+    private boolean eof = false;
+
+    private DataRecord pending = null;
+
+    private LocalSeismogramImpl nextSeis = null;
+
+    public static final int DEFAULT_RECORD_SIZE = 4096;
+
+    /** Unchecked wrapper for errors found while iterating, see getCause(). */
+    public static class MSeedIterationException extends RuntimeException {
+
+        public MSeedIterationException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
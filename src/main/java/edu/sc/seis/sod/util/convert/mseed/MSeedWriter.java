@@ -0,0 +1,429 @@
+package edu.sc.seis.sod.util.convert.mseed;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import edu.iris.dmc.seedcodec.B1000Types;
+import edu.sc.seis.seisFile.mseed.SeedFormatException;
+import edu.sc.seis.sod.model.common.FissuresException;
+import edu.sc.seis.sod.model.common.SamplingImpl;
+import edu.sc.seis.sod.model.common.UnitImpl;
+import edu.sc.seis.sod.model.seismogram.EncodedData;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.model.station.ChannelId;
+
+/**
+ * Writes miniseed records straight to an output channel. Unlike
+ * FissuresConvert.toMSeed, no DataRecord, DataHeader or Blockette objects are
+ * created. The fixed header and blockettes are kept as a template that is
+ * only rebuilt when the channel, sampling or encoding changes, samples are
+ * packed with bulk puts into a record buffer taken from a shared pool, and
+ * each finished record is written before the next is started.
+ *
+ * A writer is not thread safe, use one per output.
+ */
+public class MSeedWriter implements Closeable {
+
+    public MSeedWriter(OutputStream out) {
+        this(Channels.newChannel(out));
+    }
+
+    public MSeedWriter(WritableByteChannel out) {
+        this.out = out;
+    }
+
+    /**
+     * Sets the record size as a power of 2, ie 9 for 512, 12 for 4096. For
+     * already encoded data the record size is otherwise the smallest that fits
+     * the largest EncodedData, for uncompressed samples the default is 4096.
+     */
+    public void setRecordSizePower(byte recordSizePower) {
+        if (recordSizePower < FissuresConvert.RECORD_SIZE_256_POWER || recordSizePower > 16) {
+            throw new IllegalArgumentException("record size power must be between 8 and 16: " + recordSizePower);
+        }
+        this.fixedRecordSizePower = recordSizePower;
+    }
+
+    /** Quality code for the records, one of D, R, Q or M. Default is D. */
+    public void setQualityCode(char qualityCode) {
+        this.qualityCode = qualityCode;
+        template = null;
+    }
+
+    /**
+     * Include a Blockette100 with the actual sample rate, in addition to the
+     * sample rate factor and multiplier in the fixed header. This moves the
+     * start of data from byte 64 to 128 in each record.
+     */
+    public void setIncludeBlockette100(boolean includeBlockette100) {
+        this.includeBlockette100 = includeBlockette100;
+        template = null;
+    }
+
+    /**
+     * Compression for integer samples that are not already encoded, one of
+     * B1000Types.INTEGER, STEIM1 or STEIM2. The default is INTEGER, ie
+     * uncompressed. With STEIM2, records whose differences are too large fall
+     * back to STEIM1. Float data is always written uncompressed.
+     */
+    public void setCompression(int compression) {
+        if (compression == B1000Types.STEIM1 || compression == B1000Types.STEIM2) {
+            steimEncoder = new SteimEncoder(compression);
+        } else if (compression == B1000Types.INTEGER) {
+            steimEncoder = null;
+        } else {
+            throw new IllegalArgumentException("compression must be INTEGER, STEIM1 or STEIM2: " + compression);
+        }
+    }
+
+    public int getNextSequenceNumber() {
+        return seqNum;
+    }
+
+    public void setNextSequenceNumber(int seqNum) {
+        this.seqNum = seqNum;
+    }
+
+    /**
+     * Writes the seismogram, as is for encoded data or as integers or
+     * uncompressed floats otherwise.
+     *
+     * @return the number of records written
+     */
+    public int write(LocalSeismogramImpl seis) throws SeedFormatException, IOException {
+        try {
+            if (seis.is_encoded()) {
+                return write(seis.get_as_encoded(), seis.channel_id, seis.begin_time, seis.getSampling());
+            } else if (seis.can_convert_to_long()) {
+                return write(seis.get_as_longs(), seis.channel_id, seis.begin_time, seis.getSampling());
+            } else if (seis.can_convert_to_float()) {
+                return write(seis.get_as_floats(), seis.channel_id, seis.begin_time, seis.getSampling());
+            }
+        } catch(FissuresException e) {
+            // this shouldn't ever happen as we already checked the type
+            throw new SeedFormatException("Problem getting data", e);
+        }
+        throw new SeedFormatException("Can only handle encoded, integer or float data, type="
+                + seis.data.discriminator().value());
+    }
+
+    /**
+     * Writes each EncodedData as one record.
+     *
+     * @return the number of records written
+     */
+    public int write(EncodedData[] eData, ChannelId channel, Instant start, SamplingImpl sampling)
+            throws SeedFormatException, IOException {
+        int maxBytes = 0;
+        for (int i = 0; i < eData.length; i++) {
+            maxBytes = Math.max(maxBytes, eData[i].values.length);
+        }
+        byte power = fixedRecordSizePower;
+        if (power == 0) {
+            int minRecordSize = getDataOffset() + maxBytes;
+            if (minRecordSize <= FissuresConvert.RECORD_SIZE_512) {
+                power = FissuresConvert.RECORD_SIZE_512_POWER;
+            } else if (minRecordSize <= FissuresConvert.RECORD_SIZE_1024) {
+                power = FissuresConvert.RECORD_SIZE_1024_POWER;
+            } else {
+                power = FissuresConvert.RECORD_SIZE_4096_POWER;
+            }
+        }
+        int samplesBefore = 0;
+        for (int i = 0; i < eData.length; i++) {
+            ByteBuffer buf = startRecord(channel, sampling, eData[i].compression, eData[i].byte_order, power,
+                                         start, samplesBefore, eData[i].num_points);
+            if (eData[i].values.length > buf.remaining()) {
+                throw new SeedFormatException("Can't fit data into record of size " + (1 << power) + ", "
+                        + eData[i].values.length + " bytes of data");
+            }
+            buf.put(eData[i].values);
+            finishRecord(buf);
+            samplesBefore += eData[i].num_points;
+        }
+        return eData.length;
+    }
+
+    /**
+     * Writes the samples as 4 byte big endian integers, or steim compressed
+     * if set with setCompression.
+     *
+     * @return the number of records written
+     */
+    public int write(int[] data, ChannelId channel, Instant start, SamplingImpl sampling) throws SeedFormatException,
+            IOException {
+        byte power = fixedRecordSizePower == 0 ? FissuresConvert.RECORD_SIZE_4096_POWER : fixedRecordSizePower;
+        if (steimEncoder != null) {
+            return writeSteim(data, channel, start, sampling, power);
+        }
+        int perRecord = ((1 << power) - getDataOffset()) / 4;
+        int numRecords = 0;
+        for (int offset = 0; offset < data.length; offset += perRecord) {
+            int n = Math.min(perRecord, data.length - offset);
+            ByteBuffer buf = startRecord(channel, sampling, B1000Types.INTEGER, false, power, start, offset, n);
+            buf.asIntBuffer().put(data, offset, n);
+            finishRecord(buf);
+            numRecords++;
+        }
+        return numRecords;
+    }
+
+    /**
+     * Steim compresses the samples, filling each record with as many frames
+     * as fit.
+     */
+    protected int writeSteim(int[] data, ChannelId channel, Instant start, SamplingImpl sampling, byte power)
+            throws SeedFormatException, IOException {
+        int frames = SteimEncoder.framesPerRecord(1 << power, getDataOffset());
+        int numRecords = 0;
+        int offset = 0;
+        while (offset < data.length) {
+            EncodedData ed = steimEncoder.encode(data, offset, frames);
+            if (ed.num_points == 0) {
+                throw new SeedFormatException("steim compression made no progress at sample " + offset);
+            }
+            ByteBuffer buf = startRecord(channel, sampling, ed.compression, false, power, start, offset, ed.num_points);
+            buf.put(ed.values);
+            finishRecord(buf);
+            offset += ed.num_points;
+            numRecords++;
+        }
+        return numRecords;
+    }
+
+    /**
+     * Writes the samples uncompressed as 4 byte big endian floats.
+     *
+     * @return the number of records written
+     */
+    public int write(float[] data, ChannelId channel, Instant start, SamplingImpl sampling)
+            throws SeedFormatException, IOException {
+        byte power = fixedRecordSizePower == 0 ? FissuresConvert.RECORD_SIZE_4096_POWER : fixedRecordSizePower;
+        int perRecord = ((1 << power) - getDataOffset()) / 4;
+        int numRecords = 0;
+        for (int offset = 0; offset < data.length; offset += perRecord) {
+            int n = Math.min(perRecord, data.length - offset);
+            ByteBuffer buf = startRecord(channel, sampling, B1000Types.FLOAT, false, power, start, offset, n);
+            buf.asFloatBuffer().put(data, offset, n);
+            finishRecord(buf);
+            numRecords++;
+        }
+        return numRecords;
+    }
+
+    @Override
+    public void close() throws IOException {
+        releaseBuffer();
+        out.close();
+    }
+
+    /**
+     * Fills in the header of the next record in the record buffer.
+     *
+     * @param samplesBefore
+     *            number of samples between start and the first sample of this
+     *            record
+     * @return the record buffer, positioned at the start of the data section
+     */
+    protected ByteBuffer startRecord(ChannelId channel,
+                                     SamplingImpl sampling,
+                                     int encoding,
+                                     boolean littleEndianData,
+                                     byte recordSizePower,
+                                     Instant start,
+                                     int samplesBefore,
+                                     int numSamples) throws SeedFormatException {
+        if (numSamples > 0xffff) {
+            throw new SeedFormatException("Too many samples for one record: " + numSamples);
+        }
+        if (template == null || channel != templateChannel || sampling != templateSampling
+                || encoding != templateEncoding || littleEndianData != templateLittleEndian
+                || recordSizePower != templateRecordSizePower) {
+            buildTemplate(channel, sampling, encoding, littleEndianData, recordSizePower);
+        }
+        int recordSize = 1 << recordSizePower;
+        if (recordBuffer == null || recordBuffer.capacity() != recordSize) {
+            releaseBuffer();
+            recordBuffer = acquireBuffer(recordSize);
+        }
+        ByteBuffer buf = recordBuffer;
+        buf.clear();
+        buf.put(template);
+        while (buf.hasRemaining()) {
+            buf.put(zeros, 0, Math.min(zeros.length, buf.remaining()));
+        }
+        int seq = seqNum;
+        for (int i = 5; i >= 0; i--) {
+            buf.put(i, (byte)('0' + seq % 10));
+            seq /= 10;
+        }
+        seqNum = seqNum >= 999999 ? 1 : seqNum + 1;
+        putBtime(buf, 20, start.plus(samplePeriod.multipliedBy(samplesBefore)));
+        buf.putShort(30, (short)numSamples);
+        buf.position(template.length);
+        return buf;
+    }
+
+    protected void finishRecord(ByteBuffer buf) throws IOException {
+        buf.position(0);
+        buf.limit(buf.capacity());
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    /**
+     * Builds the fixed header and blockettes, with everything that does not
+     * change from record to record for this channel.
+     */
+    protected void buildTemplate(ChannelId channel,
+                                 SamplingImpl sampling,
+                                 int encoding,
+                                 boolean littleEndianData,
+                                 byte recordSizePower) {
+        int dataOffset = getDataOffset();
+        ByteBuffer t = ByteBuffer.allocate(dataOffset);
+        t.order(ByteOrder.BIG_ENDIAN);
+        putString(t, 0, "000000", 6);
+        t.put(6, (byte)qualityCode);
+        t.put(7, (byte)' ');
+        putString(t, 8, channel.getStationCode(), 5);
+        putString(t, 13, channel.getLocCode(), 2);
+        putString(t, 15, channel.getChannelCode(), 3);
+        putString(t, 18, channel.getNetworkId(), 2);
+        short[] factorMulti = FissuresConvert.calcSeedMultipilerFactor(sampling);
+        t.putShort(32, factorMulti[0]);
+        t.putShort(34, factorMulti[1]);
+        t.put(39, (byte)(includeBlockette100 ? 2 : 1));
+        t.putShort(44, (short)dataOffset);
+        t.putShort(46, (short)FIXED_HEADER_SIZE);
+        // blockette 1000
+        t.putShort(48, (short)1000);
+        t.putShort(50, (short)(includeBlockette100 ? FIXED_HEADER_SIZE + B1000_SIZE : 0));
+        t.put(52, (byte)encoding);
+        // seed uses oposite convention
+        t.put(53, (byte)(littleEndianData ? 0 : 1));
+        t.put(54, recordSizePower);
+        if (includeBlockette100) {
+            t.putShort(56, (short)100);
+            t.putShort(58, (short)0);
+            t.putFloat(60, (float)sampling.getFrequency().getValue(UnitImpl.HERTZ));
+        }
+        template = t.array();
+        templateChannel = channel;
+        templateSampling = sampling;
+        templateEncoding = encoding;
+        templateLittleEndian = littleEndianData;
+        templateRecordSizePower = recordSizePower;
+        samplePeriod = sampling.getPeriod();
+    }
+
+    protected int getDataOffset() {
+        return includeBlockette100 ? 2 * FRAME_SIZE : FRAME_SIZE;
+    }
+
+    static void putString(ByteBuffer buf, int pos, String s, int length) {
+        for (int i = 0; i < length; i++) {
+            buf.put(pos + i, (byte)(s != null && i < s.length() ? s.charAt(i) : ' '));
+        }
+    }
+
+    static void putBtime(ByteBuffer buf, int pos, Instant time) {
+        long epochSecond = time.getEpochSecond();
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        int secOfDay = (int)Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        LocalDate day = LocalDate.ofEpochDay(epochDay);
+        buf.putShort(pos, (short)day.getYear());
+        buf.putShort(pos + 2, (short)day.getDayOfYear());
+        buf.put(pos + 4, (byte)(secOfDay / 3600));
+        buf.put(pos + 5, (byte)((secOfDay / 60) % 60));
+        buf.put(pos + 6, (byte)(secOfDay % 60));
+        buf.put(pos + 7, (byte)0);
+        buf.putShort(pos + 8, (short)(time.getNano() / 100000));
+    }
+
+    static ByteBuffer acquireBuffer(int recordSize) {
+        ByteBuffer buf = null;
+        if (recordSize <= FissuresConvert.RECORD_SIZE_4096) {
+            ConcurrentLinkedQueue<ByteBuffer> pool = BUFFER_POOL[Integer.numberOfTrailingZeros(recordSize)];
+            buf = pool.poll();
+        }
+        if (buf == null) {
+            buf = ByteBuffer.allocate(recordSize);
+        }
+        buf.order(ByteOrder.BIG_ENDIAN);
+        return buf;
+    }
+
+    /**
+     * Gives the record buffer back to the shared pool without closing the
+     * output, for when the caller owns the stream. The writer can still be
+     * used afterwards, it takes a new buffer from the pool.
+     */
+    public void releaseBuffer() {
+        if (recordBuffer != null && recordBuffer.capacity() <= FissuresConvert.RECORD_SIZE_4096) {
+            ConcurrentLinkedQueue<ByteBuffer> pool = BUFFER_POOL[Integer.numberOfTrailingZeros(recordBuffer.capacity())];
+            if (pool.size() < MAX_POOLED_PER_SIZE) {
+                pool.offer(recordBuffer);
+            }
+        }
+        recordBuffer = null;
+    }
+
+    private WritableByteChannel out;
+
+    private int seqNum = 1;
+
+    private char qualityCode = 'D';
+
+    private boolean includeBlockette100 = false;
+
+    private byte fixedRecordSizePower = 0;
+
+    private SteimEncoder steimEncoder = null;
+
+    private ByteBuffer recordBuffer;
+
+    private byte[] zeros = new byte[FRAME_SIZE];
+
+    private byte[] template;
+
+    private ChannelId templateChannel;
+
+    private SamplingImpl templateSampling;
+
+    private int templateEncoding;
+
+    private boolean templateLittleEndian;
+
+    private byte templateRecordSizePower;
+
+    private Duration samplePeriod;
+
+    static final int FIXED_HEADER_SIZE = 48;
+
+    static final int B1000_SIZE = 8;
+
+    static final int FRAME_SIZE = 64;
+
+    static final long SECONDS_PER_DAY = 86400;
+
+    static final int MAX_POOLED_PER_SIZE = 64;
+
+    @SuppressWarnings("unchecked")
+    private static final ConcurrentLinkedQueue<ByteBuffer>[] BUFFER_POOL = new ConcurrentLinkedQueue[FissuresConvert.RECORD_SIZE_4096_POWER + 1];
+    static {
+        for (int i = 0; i < BUFFER_POOL.length; i++) {
+            BUFFER_POOL[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package edu.sc.seis.sod.util.convert.mseed;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import edu.sc.seis.seisFile.mseed.SeedFormatException;
+import edu.sc.seis.sod.model.common.FissuresException;
+import edu.sc.seis.sod.model.common.SamplingImpl;
+import edu.sc.seis.sod.model.common.TimeRange;
+import edu.sc.seis.sod.model.seismogram.EncodedData;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.model.seismogram.TimeSeriesDataSel;
+import edu.sc.seis.sod.util.convert.mseed.MSeedSegmentIterator.MSeedIterationException;
+import edu.sc.seis.sod.util.time.RangeTool;
+
+/**
+ * Reads a miniseed file through a memory mapped FileChannel. Record boundaries
+ * are found from the fixed header and the record length in the Blockette1000,
+ * read in place from the mapped buffer, so no DataRecord objects are created
+ * and the only copy of the data is the data section of each record handed to
+ * EncodedData. Contiguous records from the same channel are appended into one
+ * seismogram, split on gaps and overlaps the same as
+ * FissuresConvert.toFissures(List).
+ *
+ * Records without a Blockette1000 cannot be sized in place and cause a
+ * SeedFormatException, use FissuresConvert for older data.
+ */
+public class MappedMSeedReader implements Iterator<LocalSeismogramImpl>, Closeable {
+
+    public MappedMSeedReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        fileSize = channel.size();
+        this.file = file;
+    }
+
+    /**
+     * Reads all of the contiguous seismograms in the file.
+     */
+    public static List<LocalSeismogramImpl> read(File file) throws IOException, SeedFormatException {
+        List<LocalSeismogramImpl> out = new ArrayList<LocalSeismogramImpl>();
+        MappedMSeedReader reader = new MappedMSeedReader(file);
+        try {
+            while (reader.hasNext()) {
+                out.add(reader.next());
+            }
+        } catch(MSeedIterationException e) {
+            if (e.getCause() instanceof SeedFormatException) {
+                throw (SeedFormatException)e.getCause();
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw e;
+        } finally {
+            reader.close();
+        }
+        return out;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextSeis == null) {
+            try {
+                nextSeis = readSegment();
+            } catch(IOException e) {
+                throw new MSeedIterationException(e);
+            } catch(SeedFormatException e) {
+                throw new MSeedIterationException(e);
+            }
+        }
+        return nextSeis != null;
+    }
+
+    @Override
+    public LocalSeismogramImpl next() {
+        if ( ! hasNext()) {
+            throw new NoSuchElementException();
+        }
+        LocalSeismogramImpl out = nextSeis;
+        nextSeis = null;
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mapped = null;
+        channel.close();
+    }
+
+    protected LocalSeismogramImpl readSegment() throws IOException, SeedFormatException {
+        RecordInfo first = pending != null ? pending : readRecord();
+        pending = null;
+        if (first == null) {
+            return null;
+        }
+        LocalSeismogramImpl seis = first.toSeismogram();
+        RecordInfo prev = first;
+        RecordInfo rec;
+        while ((rec = readRecord()) != null) {
+            if ( ! prev.isSameChannel(rec)
+                    || ! RangeTool.areContiguous(prev.getTimeRange(), rec.getTimeRange(), prev.sampling.getPeriod())) {
+                pending = rec;
+                break;
+            }
+            try {
+                seis.append_encoded(rec.data);
+            } catch(FissuresException e) {
+                throw new SeedFormatException("Unable to append record at "+rec.filePosition+" in "+file, e);
+            }
+            seis.sampling_info = new SamplingImpl(seis.getNumPoints() - 1,
+                                                  Duration.between(seis.getBeginTime(), rec.getLastSampleTime()));
+            prev = rec;
+        }
+        return seis;
+    }
+
+    /**
+     * Reads the header fields of the record at the current file position in
+     * place and advances past it.
+     *
+     * @return the record, or null at the end of the file
+     */
+    protected RecordInfo readRecord() throws IOException, SeedFormatException {
+        while (filePosition + FIXED_HEADER_SIZE <= fileSize) {
+            ByteBuffer buf = map(filePosition, FIXED_HEADER_SIZE);
+            int pos = buf.position();
+            char quality = (char)buf.get(pos + 6);
+            if (quality == ' ' || quality == 0) {
+                // padding at end of file
+                return null;
+            }
+            if ("DRQM".indexOf(quality) == -1) {
+                // control header, no blockette 1000 to size it so assume default size
+                filePosition += MSeedSegmentIterator.DEFAULT_RECORD_SIZE;
+                continue;
+            }
+            ByteOrder headerOrder = isBigEndianHeader(buf, pos) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            buf.order(headerOrder);
+            int numBlockettes = buf.get(pos + 39) & 0xff;
+            int dataOffset = buf.getShort(pos + 44) & 0xffff;
+            int blocketteOffset = buf.getShort(pos + 46) & 0xffff;
+            int recordLength = 0;
+            int encoding = 0;
+            boolean dataBigEndian = true;
+            float actualSampleRate = 0;
+            for (int i = 0; i < numBlockettes && blocketteOffset >= FIXED_HEADER_SIZE; i++) {
+                buf = map(filePosition, blocketteOffset + 12);
+                buf.order(headerOrder);
+                pos = buf.position();
+                int bPos = pos + blocketteOffset;
+                int type = buf.getShort(bPos) & 0xffff;
+                int next = buf.getShort(bPos + 2) & 0xffff;
+                if (type == 1000) {
+                    encoding = buf.get(bPos + 4);
+                    dataBigEndian = buf.get(bPos + 5) == 1;
+                    int power = buf.get(bPos + 6);
+                    if (power < MIN_RECORD_POWER || power > MAX_RECORD_POWER) {
+                        throw new SeedFormatException("Record length power " + power + " not in " + MIN_RECORD_POWER
+                                + ".." + MAX_RECORD_POWER + " in record at " + filePosition + " in " + file);
+                    }
+                    recordLength = 1 << power;
+                } else if (type == 100) {
+                    actualSampleRate = buf.getFloat(bPos + 4);
+                }
+                blocketteOffset = next;
+            }
+            if (recordLength == 0) {
+                throw new SeedFormatException("No Blockette1000 in record at " + filePosition + " in " + file);
+            }
+            if (filePosition + recordLength > fileSize) {
+                throw new SeedFormatException("Record of length " + recordLength + " at " + filePosition
+                        + " runs past end of file " + file + ", size=" + fileSize);
+            }
+            if (dataOffset > recordLength) {
+                throw new SeedFormatException("Data offset " + dataOffset + " past end of record of length "
+                        + recordLength + " at " + filePosition + " in " + file);
+            }
+            buf = map(filePosition, recordLength);
+            buf.order(headerOrder);
+            pos = buf.position();
+            RecordInfo rec = new RecordInfo();
+            rec.filePosition = filePosition;
+            rec.netCode = readString(buf, pos + 18, 2);
+            rec.staCode = readString(buf, pos + 8, 5);
+            rec.locCode = readString(buf, pos + 13, 2);
+            rec.chanCode = readString(buf, pos + 15, 3);
+            rec.begin = readBtime(buf, pos + 20);
+            int numSamples = buf.getShort(pos + 30) & 0xffff;
+            if (actualSampleRate > 0) {
+                rec.sampling = FissuresConvert.convertSampleRate(actualSampleRate);
+            } else {
+                rec.sampling = FissuresConvert.convertSampleRate(buf.getShort(pos + 34), buf.getShort(pos + 32));
+            }
+            byte[] dataBytes = new byte[recordLength - dataOffset];
+            ByteBuffer dataSlice = buf.duplicate();
+            dataSlice.position(pos + dataOffset);
+            dataSlice.get(dataBytes);
+            // EncodedData follows the fissures convention, true is little endian
+            rec.data = new EncodedData((short)encoding, dataBytes, numSamples, !dataBigEndian);
+            filePosition += recordLength;
+            return rec;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a buffer positioned at filePos with at least length bytes
+     * remaining, remapping the window if the request runs past the end of the
+     * currently mapped region.
+     */
+    protected ByteBuffer map(long filePos, int length) throws IOException, SeedFormatException {
+        if (filePos + length > fileSize) {
+            throw new SeedFormatException("Record at " + filePos + " runs past end of file " + file + ", size="
+                    + fileSize);
+        }
+        if (mapped == null || filePos < mappedStart || filePos + length > mappedStart + mapped.capacity()) {
+            mappedStart = filePos;
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                                 mappedStart,
+                                 Math.min(MAX_MAP_SIZE, fileSize - mappedStart));
+        }
+        ByteBuffer out = mapped.duplicate();
+        out.position((int)(filePos - mappedStart));
+        return out;
+    }
+
+    /**
+     * The SEED header may be in either byte order, check that the year and day
+     * of the start time are sensible when read as big endian.
+     */
+    static boolean isBigEndianHeader(ByteBuffer buf, int pos) {
+        int year = ((buf.get(pos + 20) & 0xff) << 8) | (buf.get(pos + 21) & 0xff);
+        int jday = ((buf.get(pos + 22) & 0xff) << 8) | (buf.get(pos + 23) & 0xff);
+        return year >= 1900 && year <= 2500 && jday >= 1 && jday <= 366;
+    }
+
+    static String readString(ByteBuffer buf, int pos, int length) {
+        char[] out = new char[length];
+        for (int i = 0; i < length; i++) {
+            out[i] = (char)(buf.get(pos + i) & 0xff);
+        }
+        return new String(out);
+    }
+
+    static Instant readBtime(ByteBuffer buf, int pos) {
+        int year = buf.getShort(pos) & 0xffff;
+        int jday = buf.getShort(pos + 2) & 0xffff;
+        int hour = buf.get(pos + 4) & 0xff;
+        int min = buf.get(pos + 5) & 0xff;
+        int sec = buf.get(pos + 6) & 0xff;
+        int tenthMilli = buf.getShort(pos + 8) & 0xffff;
+        long epochSeconds = LocalDate.ofYearDay(year, jday).toEpochDay() * 86400 + hour * 3600 + min * 60 + sec;
+        return Instant.ofEpochSecond(epochSeconds, tenthMilli * 100000L);
+    }
+
+    static class RecordInfo {
+
+        long filePosition;
+
+        String netCode, staCode, locCode, chanCode;
+
+        Instant begin;
+
+        SamplingImpl sampling;
+
+        EncodedData data;
+
+        Instant getLastSampleTime() {
+            return begin.plus(sampling.getPeriod().multipliedBy(Math.max(0, data.num_points - 1)));
+        }
+
+        TimeRange getTimeRange() {
+            return new TimeRange(begin, getLastSampleTime());
+        }
+
+        boolean isSameChannel(RecordInfo other) {
+            return netCode.trim().equals(other.netCode.trim()) && staCode.trim().equals(other.staCode.trim())
+                    && locCode.trim().equals(other.locCode.trim()) && chanCode.trim().equals(other.chanCode.trim());
+        }
+
+        LocalSeismogramImpl toSeismogram() {
+            TimeSeriesDataSel bits = new TimeSeriesDataSel();
+            bits.encoded_values(new EncodedData[] {data});
+            return FissuresConvert.toFissures(netCode, staCode, locCode, chanCode, begin, data.num_points, sampling, bits);
+        }
+    }
+
+    private File file;
+
+    private FileChannel channel;
+
+    private long fileSize;
+
+    private long filePosition = 0;
+
+    private MappedByteBuffer mapped = null;
+
+    private long mappedStart = 0;
+
+    private RecordInfo pending = null;
+
+    private LocalSeismogramImpl nextSeis = null;
+
+    static final int FIXED_HEADER_SIZE = 48;
+
+    /** smallest and largest record length, as powers of two, accepted from a Blockette1000. */
+    static final int MIN_RECORD_POWER = 7;
+
+    static final int MAX_RECORD_POWER = 16;
+
+    /** map at most 1Gb at a time, records are remapped as the window moves through large files. */
+    static final long MAX_MAP_SIZE = 1L << 30;
+}
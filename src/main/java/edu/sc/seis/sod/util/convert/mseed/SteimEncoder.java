@@ -0,0 +1,105 @@
+package edu.sc.seis.sod.util.convert.mseed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.iris.dmc.seedcodec.B1000Types;
+import edu.iris.dmc.seedcodec.Steim1;
+import edu.iris.dmc.seedcodec.Steim2;
+import edu.iris.dmc.seedcodec.SteimException;
+import edu.iris.dmc.seedcodec.SteimFrameBlock;
+import edu.sc.seis.seisFile.mseed.SeedFormatException;
+import edu.sc.seis.sod.model.seismogram.EncodedData;
+
+/**
+ * Compresses integer samples into Steim1 or Steim2 frames, one record's worth
+ * at a time so each record can be filled to capacity. When Steim2 is asked for
+ * but a first difference does not fit in 30 bits, that record falls back to
+ * Steim1. The bias for each record is the last sample of the previous one, so
+ * the records decode as one continuous series.
+ *
+ * Not thread safe, the window buffer is reused between calls.
+ */
+public class SteimEncoder {
+
+    /**
+     * @param compression
+     *            B1000Types.STEIM1 or B1000Types.STEIM2
+     */
+    public SteimEncoder(int compression) {
+        if (compression != B1000Types.STEIM1 && compression != B1000Types.STEIM2) {
+            throw new IllegalArgumentException("compression must be STEIM1 or STEIM2: " + compression);
+        }
+        this.compression = compression;
+    }
+
+    /**
+     * Encodes as many samples starting at offset as fit in the given number
+     * of 64 byte frames.
+     *
+     * @return the encoded data, num_points is the number of samples used
+     */
+    public EncodedData encode(int[] data, int offset, int frames) throws SeedFormatException {
+        int maxSamples = frames * (compression == B1000Types.STEIM2 ? STEIM2_MAX_PER_FRAME : STEIM1_MAX_PER_FRAME);
+        int n = Math.min(maxSamples, data.length - offset);
+        if (window == null || window.length != n) {
+            window = new int[n];
+        }
+        System.arraycopy(data, offset, window, 0, n);
+        int bias = offset == 0 ? 0 : data[offset - 1];
+        SteimFrameBlock block = null;
+        short usedCompression = (short)compression;
+        try {
+            if (compression == B1000Types.STEIM2) {
+                try {
+                    block = Steim2.encode(window, frames, bias);
+                } catch(SteimException e) {
+                    // difference too big for steim2, use steim1 for this record
+                    usedCompression = (short)B1000Types.STEIM1;
+                }
+            }
+            if (block == null) {
+                block = Steim1.encode(window, frames, bias);
+            }
+        } catch(SteimException e) {
+            throw new SeedFormatException("Unable to steim compress samples starting at " + offset, e);
+        }
+        // seed convention for steim is big endian, fissures byte_order false
+        return new EncodedData(usedCompression, block.getEncodedData(), block.getNumSamples(), false);
+    }
+
+    /**
+     * Encodes all of the samples into EncodedData that each fit into one
+     * record of the given number of frames.
+     */
+    public EncodedData[] encodeAll(int[] data, int framesPerRecord) throws SeedFormatException {
+        List<EncodedData> out = new ArrayList<EncodedData>();
+        int offset = 0;
+        while (offset < data.length) {
+            EncodedData ed = encode(data, offset, framesPerRecord);
+            if (ed.num_points == 0) {
+                throw new SeedFormatException("steim compression made no progress at sample " + offset);
+            }
+            out.add(ed);
+            offset += ed.num_points;
+        }
+        return out.toArray(new EncodedData[0]);
+    }
+
+    /** number of 64 byte data frames in a record with data starting at dataOffset. */
+    public static int framesPerRecord(int recordSize, int dataOffset) {
+        return (recordSize - dataOffset) / FRAME_SIZE;
+    }
+
+    private int compression;
+
+    private int[] window;
+
+    static final int FRAME_SIZE = 64;
+
+    /** 15 data words of 7 4-bit differences, frame 0 loses 2 words to the integration constants */
+    static final int STEIM2_MAX_PER_FRAME = 105;
+
+    /** 15 data words of 4 1-byte differences */
+    static final int STEIM1_MAX_PER_FRAME = 60;
+}
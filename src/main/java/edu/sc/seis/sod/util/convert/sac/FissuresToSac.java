@@ -5,6 +5,7 @@ import java.time.Instant;
 import java.time.ZonedDateTime;
 
 import edu.iris.dmc.seedcodec.CodecException;
+import edu.iris.dmc.seedcodec.DecompressedData;
 import edu.sc.seis.seisFile.TimeUtils;
 import edu.sc.seis.seisFile.fdsnws.stationxml.Channel;
 import edu.sc.seis.seisFile.sac.Complex;
@@ -17,7 +18,9 @@ import edu.sc.seis.sod.model.common.QuantityImpl;
 import edu.sc.seis.sod.model.common.SamplingImpl;
 import edu.sc.seis.sod.model.common.UnitImpl;
 import edu.sc.seis.sod.model.event.OriginImpl;
+import edu.sc.seis.sod.model.seismogram.EncodedData;
 import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.util.convert.mseed.EncodedSampleView;
 
 /**
  * FissuresToSac.java
@@ -42,17 +45,10 @@ public class FissuresToSac {
 	 */
 	public static SacTimeSeries getSAC(LocalSeismogramImpl seis)
 			throws CodecException {
+		double[] minMaxMean = new double[3];
 		float[] floatSamps;
 		try {
-			if (seis.can_convert_to_long()) {
-				int[] idata = seis.get_as_longs();
-				floatSamps = new float[idata.length];
-				for (int i = 0; i < idata.length; i++) {
-					floatSamps[i] = idata[i];
-				}
-			} else {
-				floatSamps = seis.get_as_floats();
-			} // end of else
+			floatSamps = getFloats(seis, minMaxMean);
 		} catch (FissuresException e) {
 			if (e.getCause() instanceof CodecException) {
 				throw (CodecException) e.getCause();
@@ -60,6 +56,21 @@ public class FissuresToSac {
 				throw new CodecException(e);
 			}
 		}
+		SacHeader header = getHeader(seis);
+		// values are already in the seismogram's y unit
+		header.setDepmin( (float) minMaxMean[0]);
+		header.setDepmax( (float) minMaxMean[1]);
+		header.setDepmen( (float) minMaxMean[2]);
+
+        return new SacTimeSeries(header, floatSamps);
+	}
+
+	/**
+	 * Creates the header for a seismogram, with the times, sample interval and
+	 * channel codes filled in but not depmin, depmax, depmen or anything from
+	 * the data.
+	 */
+	public static SacHeader getHeader(LocalSeismogramImpl seis) {
 		SacHeader header = SacHeader.createEmptyEvenSampledTimeSeriesHeader();
 		header.setIztype( SacConstants.IB);
 		SamplingImpl samp = (SamplingImpl) seis.sampling_info;
@@ -67,22 +78,127 @@ public class FissuresToSac {
 		float f = (float) TimeUtils.durationToDoubleSeconds(period);
 		header.setDelta( f);
 
-		UnitImpl yUnit = (UnitImpl) seis.y_unit;
-		QuantityImpl min = (QuantityImpl) seis.getMinValue();
-		header.setDepmin( (float) min.convertTo(yUnit).getValue());
-		QuantityImpl max = (QuantityImpl) seis.getMaxValue();
-		header.setDepmax( (float) max.convertTo(yUnit).getValue());
-		QuantityImpl mean = (QuantityImpl) seis.getMeanValue();
-		header.setDepmen( (float) mean.convertTo(yUnit).getValue());
-
 		setKZTime(header, seis.begin_time);
 
 		header.setKnetwk(seis.channel_id.getNetworkId());
 		header.setKstnm( seis.channel_id.getStationCode());
 		header.setKcmpnm( seis.channel_id.getChannelCode());
 		header.setKhole( seis.channel_id.getLocCode());
+		return header;
+	}
 
-        return new SacTimeSeries(header, floatSamps);
+	/**
+	 * Gets the samples as floats in one pass, decoding each encoded block
+	 * straight into the output and finding the min, max and mean on the way,
+	 * instead of decoding to ints, copying to floats and then scanning three
+	 * more times for the statistics.
+	 * 
+	 * @param minMaxMean
+	 *            filled with the min, max and mean, all 0 if there are no
+	 *            samples
+	 */
+	public static float[] getFloats(LocalSeismogramImpl seis, double[] minMaxMean)
+			throws FissuresException, CodecException {
+		SampleStats stats = new SampleStats();
+		float[] out;
+		if (seis.is_encoded()) {
+			EncodedData[] encoded = seis.get_as_encoded();
+			int numPoints = 0;
+			for (EncodedData ed : encoded) {
+				numPoints += ed.num_points;
+			}
+			out = new float[numPoints];
+			int pos = 0;
+			for (EncodedData ed : encoded) {
+				DecompressedData dd = EncodedSampleView.decode(ed);
+				int[] ints = dd.getAsInt();
+				if (ints != null) {
+					pos = stats.add(ints, 0, ints.length, out, pos);
+				} else {
+					double[] doubles = dd.getAsDouble();
+					pos = stats.add(doubles, 0, doubles.length, out, pos);
+				}
+			}
+		} else if (seis.can_convert_to_long()) {
+			int[] ints = seis.get_as_longs();
+			out = new float[ints.length];
+			stats.add(ints, 0, ints.length, out, 0);
+		} else {
+			out = seis.get_as_floats();
+			stats.add(out, 0, out.length);
+		}
+		stats.fill(minMaxMean);
+		return out;
+	}
+
+	/**
+	 * Running min, max and sum of samples as they are converted to float.
+	 */
+	static class SampleStats {
+
+		int add(int[] samples, int from, int n, float[] out, int pos) {
+			for (int i = 0; i < n; i++) {
+				int v = samples[from + i];
+				out[pos + i] = v;
+				if (v < min) {
+					min = v;
+				}
+				if (v > max) {
+					max = v;
+				}
+				sum += v;
+			}
+			count += n;
+			return pos + n;
+		}
+
+		int add(double[] samples, int from, int n, float[] out, int pos) {
+			for (int i = 0; i < n; i++) {
+				double v = samples[from + i];
+				out[pos + i] = (float) v;
+				if (v < min) {
+					min = v;
+				}
+				if (v > max) {
+					max = v;
+				}
+				sum += v;
+			}
+			count += n;
+			return pos + n;
+		}
+
+		void add(float[] samples, int from, int n) {
+			for (int i = from; i < from + n; i++) {
+				float v = samples[i];
+				if (v < min) {
+					min = v;
+				}
+				if (v > max) {
+					max = v;
+				}
+				sum += v;
+			}
+			count += n;
+		}
+
+		void fill(double[] minMaxMean) {
+			if (count == 0) {
+				minMaxMean[0] = minMaxMean[1] = minMaxMean[2] = 0;
+			} else {
+				minMaxMean[0] = min;
+				minMaxMean[1] = max;
+				minMaxMean[2] = sum / count;
+			}
+		}
+
+		double min = Double.POSITIVE_INFINITY;
+
+		double max = Double.NEGATIVE_INFINITY;
+
+		double sum = 0;
+
+		long count = 0;
 	}
 
 	/**
@@ -136,20 +252,28 @@ public class FissuresToSac {
 	public static SacTimeSeries getSAC(LocalSeismogramImpl seis,
 			Channel channel, OriginImpl origin) throws CodecException {
 		SacTimeSeries sac = getSAC(seis);
+		addChannelAndOrigin(sac.getHeader(), channel, origin);
+		return sac;
+	}
+
+	/**
+	 * Adds the channel and origin, either of which may be null, and the
+	 * distance and azimuths if both are given.
+	 */
+	public static void addChannelAndOrigin(SacHeader header, Channel channel, OriginImpl origin) {
 		if (channel != null) {
-			addChannel(sac.getHeader(), channel);
+			addChannel(header, channel);
 		}
 		if (origin != null) {
-			addOrigin(sac.getHeader(), origin);
+			addOrigin(header, origin);
 		}
 		if (origin != null && channel != null) {
 			DistAz distAz = new DistAz(channel, origin);
-			sac.getHeader().setGcarc( (float) distAz.getDelta());
-			sac.getHeader().setDist( (float) distAz.getDelta() * 111.19f);
-			sac.getHeader().setAz( (float) distAz.getAz());
-			sac.getHeader().setBaz( (float) distAz.getBaz());
+			header.setGcarc( (float) distAz.getDelta());
+			header.setDist( (float) distAz.getDelta() * 111.19f);
+			header.setAz( (float) distAz.getAz());
+			header.setBaz( (float) distAz.getBaz());
 		}
-		return sac;
 	}
 
 	/**
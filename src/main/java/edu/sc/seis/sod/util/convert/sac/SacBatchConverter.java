@@ -0,0 +1,273 @@
+package edu.sc.seis.sod.util.convert.sac;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.sc.seis.seisFile.TimeUtils;
+import edu.sc.seis.seisFile.sac.SacTimeSeries;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.model.station.ChannelId;
+
+/**
+ * Converts many SAC files to seismograms, or many seismograms to SAC files, on
+ * a fixed pool of worker threads. At most maxInFlight files are queued or
+ * being worked on at once, so a large directory does not fill memory with
+ * pending work faster than the disks can keep up. A file that fails is
+ * recorded in the failures map for the batch and reported to the listener,
+ * and the rest of the batch carries on. Batches may run at the same time on
+ * one converter if each is given its own failures map. The worker threads are
+ * daemons, so a converter that is never closed does not keep the JVM running,
+ * but close it when done to free them.
+ */
+public class SacBatchConverter implements AutoCloseable {
+
+    public SacBatchConverter() {
+        this(Runtime.getRuntime().availableProcessors(), 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public SacBatchConverter(int numThreads, int maxInFlight) {
+        this.pool = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread t = new Thread(r, "SacBatchConverter " + threadNum.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Told as each file in a batch finishes, from the worker threads.
+     */
+    public interface ProgressListener {
+
+        public void finished(File file, int numDone, int numTotal);
+
+        public void failed(File file, Exception e, int numDone, int numTotal);
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Reads all regular files in the directory tree as SAC.
+     */
+    public Map<File, LocalSeismogramImpl> readAll(File directory) throws IOException {
+        return readAll(listFiles(directory));
+    }
+
+    /**
+     * @return the seismogram from each file that could be read, keyed by file
+     */
+    public Map<File, LocalSeismogramImpl> readAll(List<File> files) throws IOException {
+        return readAll(files, new ConcurrentHashMap<File, Exception>());
+    }
+
+    /**
+     * @param failures
+     *            filled with the files that could not be read, and why, must
+     *            be safe for use from several threads
+     */
+    public Map<File, LocalSeismogramImpl> readAll(List<File> files, Map<File, Exception> failures)
+            throws IOException {
+        final Map<File, LocalSeismogramImpl> out = new ConcurrentHashMap<File, LocalSeismogramImpl>();
+        run(files, new Conversion() {
+
+            public void convert(int index, File f) throws Exception {
+                out.put(f, SacToFissures.getSeismogram(f));
+            }
+        }, failures);
+        return new TreeMap<File, LocalSeismogramImpl>(out);
+    }
+
+    /**
+     * Writes each seismogram to a file in the directory, named by
+     * getFilename. Seismograms that would get the same name, ie the same
+     * channel and begin second, get _1, _2 and so on added before the .sac so
+     * none is overwritten.
+     *
+     * @return the files written, in the same order as the seismograms, null
+     *         for any that failed
+     */
+    public List<File> writeAll(final List<LocalSeismogramImpl> seismograms, File directory) throws IOException {
+        return writeAll(seismograms, directory, new ConcurrentHashMap<File, Exception>());
+    }
+
+    /**
+     * @param failures
+     *            filled with the files that could not be written, and why,
+     *            must be safe for use from several threads
+     */
+    public List<File> writeAll(final List<LocalSeismogramImpl> seismograms,
+                               File directory,
+                               Map<File, Exception> failures) throws IOException {
+        final List<File> files = new ArrayList<File>(seismograms.size());
+        Set<String> used = new HashSet<String>();
+        for (LocalSeismogramImpl seis : seismograms) {
+            files.add(new File(directory, uniqueName(getFilename(seis), used)));
+        }
+        final File[] written = new File[files.size()];
+        run(files, new Conversion() {
+
+            public void convert(int index, File f) throws Exception {
+                SacTimeSeries sac = FissuresToSac.getSAC(seismograms.get(index));
+                sac.write(f);
+                written[index] = f;
+            }
+        }, failures);
+        List<File> out = new ArrayList<File>(written.length);
+        Collections.addAll(out, written);
+        return out;
+    }
+
+    /**
+     * @return net.sta.loc.chan.year.jday.hhmmss.sac, with the location code
+     *         left empty if it is blank
+     */
+    public static String getFilename(LocalSeismogramImpl seis) {
+        ChannelId chan = seis.channel_id;
+        ZonedDateTime begin = ZonedDateTime.ofInstant(seis.getBeginTime(), TimeUtils.TZ_UTC);
+        return chan.getNetworkId() + "." + chan.getStationCode() + "." + chan.getLocCode().trim() + "."
+                + chan.getChannelCode() + "." + FILENAME_TIME.format(begin) + ".sac";
+    }
+
+    /**
+     * @return the name, or the name with _n before the .sac if it is already
+     *         in used, which the returned name is added to
+     */
+    static String uniqueName(String name, Set<String> used) {
+        String out = name;
+        String base = name.endsWith(".sac") ? name.substring(0, name.length() - 4) : name;
+        for (int n = 1; !used.add(out); n++) {
+            out = base + "_" + n + ".sac";
+        }
+        return out;
+    }
+
+    /**
+     * @return files that could not be converted in the batch that finished
+     *         last, and why. When batches run at the same time pass each its
+     *         own failures map instead.
+     */
+    public Map<File, Exception> getFailures() {
+        return Collections.unmodifiableMap(lastFailures);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /** same as shutdown, running batches still finish */
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    public static List<File> listFiles(File directory) throws IOException {
+        Stream<Path> walk = Files.walk(directory.toPath());
+        try {
+            return walk.filter(p -> Files.isRegularFile(p)).map(p -> p.toFile()).sorted().collect(Collectors.toList());
+        } finally {
+            walk.close();
+        }
+    }
+
+    interface Conversion {
+
+        void convert(int index, File f) throws Exception;
+    }
+
+    /**
+     * Submits one task per file, waiting for a permit before each so no more
+     * than maxInFlight are outstanding, then waits for them all to finish. Any
+     * Throwable from a conversion, not just an Exception, fails only that
+     * file, with an Error wrapped in an ExecutionException, so the file is
+     * always counted as done and its permit given back.
+     */
+    void run(final List<File> files, final Conversion conversion, final Map<File, Exception> failures)
+            throws IOException {
+        final int total = files.size();
+        final AtomicInteger done = new AtomicInteger();
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        try {
+            for (int i = 0; i < total; i++) {
+                final int index = i;
+                final File f = files.get(i);
+                inFlight.acquire();
+                try {
+                    pool.execute(new Runnable() {
+
+                        public void run() {
+                            Exception failure = null;
+                            try {
+                                conversion.convert(index, f);
+                            } catch(Exception e) {
+                                failure = e;
+                            } catch(Throwable t) {
+                                failure = new ExecutionException(t);
+                            }
+                            try {
+                                int n = done.incrementAndGet();
+                                if (failure == null) {
+                                    if (listener != null) {
+                                        listener.finished(f, n, total);
+                                    }
+                                } else {
+                                    failures.put(f, failure);
+                                    logger.warn("Unable to convert " + f + ", skipping.", failure);
+                                    if (listener != null) {
+                                        listener.failed(f, failure, n, total);
+                                    }
+                                }
+                            } finally {
+                                inFlight.release();
+                            }
+                        }
+                    });
+                } catch(RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+            }
+            // all permits back means every task has finished
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+            lastFailures = failures;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during batch conversion", e);
+        }
+    }
+
+    private ExecutorService pool;
+
+    private int maxInFlight;
+
+    private volatile ProgressListener listener = null;
+
+    private volatile Map<File, Exception> lastFailures = new ConcurrentHashMap<File, Exception>();
+
+    private static final AtomicInteger threadNum = new AtomicInteger();
+
+    private static final DateTimeFormatter FILENAME_TIME = DateTimeFormatter.ofPattern("yyyy.DDD.HHmmss");
+
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SacBatchConverter.class);
+}
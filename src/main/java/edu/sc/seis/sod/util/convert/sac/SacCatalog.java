@@ -0,0 +1,195 @@
+package edu.sc.seis.sod.util.convert.sac;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.sc.seis.seisFile.TimeUtils;
+import edu.sc.seis.seisFile.sac.SacHeader;
+import edu.sc.seis.sod.model.station.ChannelId;
+import edu.sc.seis.sod.model.station.ChannelIdUtil;
+
+/**
+ * In memory index of the SAC files in a directory tree by channel and time,
+ * built from the headers alone with SacToFissures.readHeader so no data is
+ * read. The headers are read in parallel. Files that are not SAC are recorded
+ * in getFailures() and left out of the index.
+ */
+public class SacCatalog {
+
+    public SacCatalog() {}
+
+    /**
+     * One file in the catalog. The end time is the time of the last sample.
+     */
+    public static class Entry {
+
+        Entry(File file, SacHeader header) {
+            this.file = file;
+            this.channelId = SacToFissures.getChannelId(header);
+            this.beginTime = SacToFissures.getSeismogramBeginTime(header);
+            this.numPoints = header.getNpts();
+            this.sampleInterval = TimeUtils.durationFromSeconds(header.getDelta());
+            this.endTime = beginTime.plus(sampleInterval.multipliedBy(Math.max(numPoints - 1, 0)));
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public ChannelId getChannelId() {
+            return channelId;
+        }
+
+        public Instant getBeginTime() {
+            return beginTime;
+        }
+
+        public Instant getEndTime() {
+            return endTime;
+        }
+
+        public int getNumPoints() {
+            return numPoints;
+        }
+
+        public Duration getSampleInterval() {
+            return sampleInterval;
+        }
+
+        public boolean overlaps(Instant begin, Instant end) {
+            return !beginTime.isAfter(end) && !endTime.isBefore(begin);
+        }
+
+        @Override
+        public String toString() {
+            return file + " " + ChannelIdUtil.toStringNoDates(channelId) + " " + beginTime + " to " + endTime;
+        }
+
+        private File file;
+
+        private ChannelId channelId;
+
+        private Instant beginTime, endTime;
+
+        private int numPoints;
+
+        private Duration sampleInterval;
+    }
+
+    /**
+     * Scans all regular files in the directory tree, adding each SAC file to
+     * the catalog.
+     */
+    public void scan(File directory) throws IOException {
+        scan(SacBatchConverter.listFiles(directory));
+    }
+
+    public void scan(List<File> files) {
+        files.parallelStream().forEach(f -> {
+            try {
+                add(new Entry(f, SacToFissures.readHeader(f)));
+            } catch(IOException | RuntimeException e) {
+                failures.put(f, e);
+                logger.warn("Unable to read sac header from " + f + ", skipping.", e);
+            }
+        });
+    }
+
+    public synchronized void add(Entry entry) {
+        String key = ChannelIdUtil.toStringNoDates(entry.getChannelId());
+        List<Entry> entries = byChannel.get(key);
+        if (entries == null) {
+            entries = new ArrayList<Entry>();
+            byChannel.put(key, entries);
+        }
+        // kept sorted by begin time, files mostly arrive in order
+        int i = entries.size();
+        while (i > 0 && entries.get(i - 1).getBeginTime().isAfter(entry.getBeginTime())) {
+            i--;
+        }
+        entries.add(i, entry);
+        size++;
+    }
+
+    /**
+     * @return channels in the catalog, as ChannelIdUtil.toStringNoDates
+     */
+    public synchronized List<String> getChannels() {
+        return new ArrayList<String>(byChannel.keySet());
+    }
+
+    /**
+     * @return entries for the channel sorted by begin time
+     */
+    public synchronized List<Entry> getEntries(ChannelId channel) {
+        List<Entry> entries = byChannel.get(ChannelIdUtil.toStringNoDates(channel));
+        return entries == null ? new ArrayList<Entry>() : new ArrayList<Entry>(entries);
+    }
+
+    /**
+     * @return entries for the channel that have samples between begin and end,
+     *         sorted by begin time
+     */
+    public synchronized List<Entry> find(ChannelId channel, Instant begin, Instant end) {
+        List<Entry> out = new ArrayList<Entry>();
+        List<Entry> entries = byChannel.get(ChannelIdUtil.toStringNoDates(channel));
+        if (entries == null) {
+            return out;
+        }
+        for (Entry entry : entries) {
+            if (entry.getBeginTime().isAfter(end)) {
+                break;
+            }
+            if (entry.overlaps(begin, end)) {
+                out.add(entry);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return entries for any channel that have samples between begin and end,
+     *         sorted by channel then begin time
+     */
+    public synchronized List<Entry> find(Instant begin, Instant end) {
+        List<Entry> out = new ArrayList<Entry>();
+        for (List<Entry> entries : byChannel.values()) {
+            for (Entry entry : entries) {
+                if (entry.getBeginTime().isAfter(end)) {
+                    break;
+                }
+                if (entry.overlaps(begin, end)) {
+                    out.add(entry);
+                }
+            }
+        }
+        return out;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return files that could not be read as SAC, and why
+     */
+    public Map<File, Exception> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    private Map<String, List<Entry>> byChannel = new TreeMap<String, List<Entry>>();
+
+    private int size = 0;
+
+    private Map<File, Exception> failures = new ConcurrentHashMap<File, Exception>();
+
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SacCatalog.class);
+}
@@ -0,0 +1,159 @@
+package edu.sc.seis.sod.util.convert.sac;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.sc.seis.seisFile.fdsnws.stationxml.PoleZero;
+import edu.sc.seis.seisFile.fdsnws.stationxml.PolesZeros;
+import edu.sc.seis.seisFile.fdsnws.stationxml.Response;
+import edu.sc.seis.seisFile.fdsnws.stationxml.Unit;
+import edu.sc.seis.seisFile.sac.SacPoleZero;
+import edu.sc.seis.sod.model.common.UnknownUnit;
+
+/**
+ * Size bounded, thread safe cache of StationXMLToSacPoleZero.convert results.
+ * Entries are keyed by the content of the response that the conversion uses,
+ * the first stage poles, zeros, normalization and units plus the instrument
+ * sensitivity, so the many channels and epochs that share an instrument
+ * response are converted once. Least recently used entries are evicted once
+ * there are more than maxEntries.
+ *
+ * Each caller gets its own copy of the pole and zero arrays, so the results
+ * may be modified.
+ */
+public class SacPoleZeroCache {
+
+    public SacPoleZeroCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public SacPoleZeroCache(final int maxEntries) {
+        map = new LinkedHashMap<String, SacPoleZero>(16, 0.75f, true) {
+
+            protected boolean removeEldestEntry(Map.Entry<String, SacPoleZero> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @throws UnknownUnit
+     *             on bad unit conversion
+     * @throws IllegalArgumentException
+     *             if the first stage is not poles and zeros
+     */
+    public SacPoleZero convert(Response response) throws UnknownUnit {
+        String key = getKey(response);
+        SacPoleZero out;
+        synchronized(map) {
+            out = map.get(key);
+        }
+        if (out == null) {
+            misses.incrementAndGet();
+            // converted outside the lock, two threads missing on the same
+            // response at once both convert and the results are the same
+            out = StationXMLToSacPoleZero.convert(response);
+            synchronized(map) {
+                map.put(key, out);
+            }
+        } else {
+            hits.incrementAndGet();
+        }
+        return copy(out);
+    }
+
+    /**
+     * Converts all of the responses in parallel. Responses that cannot be
+     * converted are logged and left out.
+     */
+    public <K> Map<K, SacPoleZero> convertAll(Map<K, Response> responses) {
+        final Map<K, SacPoleZero> out = new ConcurrentHashMap<K, SacPoleZero>();
+        responses.entrySet().parallelStream().forEach(entry -> {
+            try {
+                out.put(entry.getKey(), convert(entry.getValue()));
+            } catch(UnknownUnit | RuntimeException e) {
+                logger.warn("Unable to convert response for " + entry.getKey() + ", skipping.", e);
+            }
+        });
+        return out;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /** hits over all lookups, 0 if there have been none */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double)h / total;
+    }
+
+    public int size() {
+        synchronized(map) {
+            return map.size();
+        }
+    }
+
+    public void clear() {
+        synchronized(map) {
+            map.clear();
+        }
+    }
+
+    /**
+     * Everything in the response that StationXMLToSacPoleZero.convert looks
+     * at, written out exactly so different responses never share a key.
+     */
+    static String getKey(Response response) {
+        PolesZeros pz = StationXMLToSacPoleZero.getFirstPolesZeros(response);
+        StringBuilder sb = new StringBuilder();
+        Unit unit = pz.getInputUnits();
+        sb.append(unit.getName()).append('|').append(unit.getDescription()).append('|');
+        sb.append(pz.getPzTransferType()).append('|');
+        sb.append(pz.getNormalizationFactor()).append('|').append(pz.getNormalizationFreq()).append('|');
+        sb.append(response.getInstrumentSensitivity().getSensitivityValue()).append('|');
+        sb.append(response.getInstrumentSensitivity().getFrequency()).append("|z");
+        appendPoleZeros(sb, pz.getZeroList());
+        sb.append("|p");
+        appendPoleZeros(sb, pz.getPoleList());
+        return sb.toString();
+    }
+
+    private static void appendPoleZeros(StringBuilder sb, List<PoleZero> list) {
+        for (PoleZero p : list) {
+            sb.append(' ').append(p.getReal()).append(',').append(p.getImaginary());
+        }
+    }
+
+    static SacPoleZero copy(SacPoleZero pz) {
+        return new SacPoleZero(pz.getPoles().clone(), pz.getZeros().clone(), pz.getConstant());
+    }
+
+    private Map<String, SacPoleZero> map;
+
+    private AtomicLong hits = new AtomicLong();
+
+    private AtomicLong misses = new AtomicLong();
+
+    private AtomicLong evictions = new AtomicLong();
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SacPoleZeroCache.class);
+}
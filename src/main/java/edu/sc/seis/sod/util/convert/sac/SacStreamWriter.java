@@ -0,0 +1,213 @@
+package edu.sc.seis.sod.util.convert.sac;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import edu.iris.dmc.seedcodec.CodecException;
+import edu.iris.dmc.seedcodec.DecompressedData;
+import edu.sc.seis.seisFile.fdsnws.stationxml.Channel;
+import edu.sc.seis.seisFile.sac.SacConstants;
+import edu.sc.seis.seisFile.sac.SacHeader;
+import edu.sc.seis.sod.model.common.FissuresException;
+import edu.sc.seis.sod.model.event.OriginImpl;
+import edu.sc.seis.sod.model.seismogram.EncodedData;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.util.convert.mseed.EncodedSampleView;
+
+/**
+ * Writes a seismogram as a SAC file without making the whole float array that
+ * FissuresToSac.getSAC needs. The header is written first, then the samples a
+ * block at a time as each EncodedData is decoded, so memory use depends on
+ * the record size rather than the length of the seismogram. depmin, depmax
+ * and depmen are not known until the end, so they are written into the
+ * header afterwards with positioned writes.
+ */
+public class SacStreamWriter {
+
+    public static void write(LocalSeismogramImpl seis, File file) throws IOException, CodecException {
+        write(seis, null, null, file);
+    }
+
+    /**
+     * @param channel
+     *            may be null
+     * @param origin
+     *            may be null
+     */
+    public static void write(LocalSeismogramImpl seis, Channel channel, OriginImpl origin, File file)
+            throws IOException, CodecException {
+        SacHeader header = FissuresToSac.getHeader(seis);
+        FissuresToSac.addChannelAndOrigin(header, channel, origin);
+        FileChannel out = FileChannel.open(file.toPath(),
+                                           StandardOpenOption.WRITE,
+                                           StandardOpenOption.CREATE,
+                                           StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            write(seis, header, out);
+        } catch(FissuresException e) {
+            if (e.getCause() instanceof CodecException) {
+                throw (CodecException)e.getCause();
+            }
+            throw new CodecException(e);
+        } finally {
+            out.close();
+        }
+    }
+
+    static void write(LocalSeismogramImpl seis, SacHeader header, FileChannel out)
+            throws IOException, CodecException, FissuresException {
+        int numPoints = 0;
+        EncodedData[] encoded = null;
+        if (seis.is_encoded()) {
+            encoded = seis.get_as_encoded();
+            for (EncodedData ed : encoded) {
+                numPoints += ed.num_points;
+            }
+        } else {
+            numPoints = seis.getNumPoints();
+        }
+        header.setNpts(numPoints);
+        if ( !SacConstants.isUndef(header.getB())) {
+            header.setE(header.getB() + header.getDelta() * Math.max(numPoints - 1, 0));
+        }
+        ByteBuffer headerBytes = toBytes(header);
+        ByteOrder order = getByteOrder(headerBytes);
+        long dataStart = headerBytes.remaining();
+        writeFully(out, headerBytes, 0);
+
+        BlockWriter writer = new BlockWriter(out, order, dataStart);
+        if (encoded != null) {
+            for (EncodedData ed : encoded) {
+                DecompressedData dd = EncodedSampleView.decode(ed);
+                int[] ints = dd.getAsInt();
+                if (ints != null) {
+                    writer.write(ints, 0, ints.length);
+                } else {
+                    double[] doubles = dd.getAsDouble();
+                    writer.write(doubles, 0, doubles.length);
+                }
+            }
+        } else if (seis.can_convert_to_long()) {
+            int[] ints = seis.get_as_longs();
+            for (int i = 0; i < ints.length; i += BLOCK_SAMPLES) {
+                writer.write(ints, i, Math.min(BLOCK_SAMPLES, ints.length - i));
+            }
+        } else {
+            float[] floats = seis.get_as_floats();
+            for (int i = 0; i < floats.length; i += BLOCK_SAMPLES) {
+                writer.write(floats, i, Math.min(BLOCK_SAMPLES, floats.length - i));
+            }
+        }
+        double[] minMaxMean = new double[3];
+        writer.stats.fill(minMaxMean);
+        header.setDepmin((float)minMaxMean[0]);
+        header.setDepmax((float)minMaxMean[1]);
+        header.setDepmen((float)minMaxMean[2]);
+        patchFloat(out, order, DEPMIN_OFFSET, (float)minMaxMean[0]);
+        patchFloat(out, order, DEPMAX_OFFSET, (float)minMaxMean[1]);
+        patchFloat(out, order, DEPMEN_OFFSET, (float)minMaxMean[2]);
+    }
+
+    static ByteBuffer toBytes(SacHeader header) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(SacToFissures.HEADER_BYTES);
+        DataOutputStream dos = new DataOutputStream(bytes);
+        header.writeHeader(dos);
+        dos.flush();
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /**
+     * The header is written in whatever order it was created with, NVHDR shows
+     * which it is and the data must match.
+     */
+    static ByteOrder getByteOrder(ByteBuffer headerBytes) {
+        int nvhdr = headerBytes.duplicate().order(ByteOrder.BIG_ENDIAN).getInt(SacToFissures.NVHDR_OFFSET);
+        return (nvhdr >= 1 && nvhdr <= 9) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    }
+
+    static void patchFloat(FileChannel out, ByteOrder order, int offset, float value) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4).order(order);
+        buf.putFloat(0, value);
+        writeFully(out, buf, offset);
+    }
+
+    static void writeFully(FileChannel out, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += out.write(buf, position);
+        }
+    }
+
+    /**
+     * Converts each block to float into one reused buffer and appends it to
+     * the file, keeping the running stats.
+     */
+    static class BlockWriter {
+
+        BlockWriter(FileChannel out, ByteOrder order, long position) {
+            this.out = out;
+            this.order = order;
+            this.position = position;
+        }
+
+        void write(int[] samples, int from, int n) throws IOException {
+            stats.add(samples, from, n, getFloats(n), 0);
+            flush(n);
+        }
+
+        void write(double[] samples, int from, int n) throws IOException {
+            stats.add(samples, from, n, getFloats(n), 0);
+            flush(n);
+        }
+
+        void write(float[] samples, int from, int n) throws IOException {
+            stats.add(samples, from, n);
+            System.arraycopy(samples, from, getFloats(n), 0, n);
+            flush(n);
+        }
+
+        private float[] getFloats(int n) {
+            if (floats == null || floats.length < n) {
+                floats = new float[n];
+                bytes = ByteBuffer.allocate(4 * n).order(order);
+            }
+            return floats;
+        }
+
+        private void flush(int n) throws IOException {
+            bytes.clear();
+            FloatBuffer fb = bytes.asFloatBuffer();
+            fb.put(floats, 0, n);
+            bytes.limit(4 * n);
+            writeFully(out, bytes, position);
+            position += 4 * n;
+        }
+
+        FissuresToSac.SampleStats stats = new FissuresToSac.SampleStats();
+
+        private FileChannel out;
+
+        private ByteOrder order;
+
+        private long position;
+
+        private float[] floats;
+
+        private ByteBuffer bytes;
+    }
+
+    /** samples per write when the data is not encoded */
+    static final int BLOCK_SAMPLES = 4096;
+
+    static final int DEPMIN_OFFSET = 1 * 4;
+
+    static final int DEPMAX_OFFSET = 2 * 4;
+
+    static final int DEPMEN_OFFSET = 56 * 4;
+}
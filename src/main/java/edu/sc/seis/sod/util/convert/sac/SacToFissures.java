@@ -1,10 +1,16 @@
 package edu.sc.seis.sod.util.convert.sac;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.time.Duration;
 import java.time.Instant;
@@ -45,6 +51,15 @@ import edu.sc.seis.sod.model.station.StationId;
 public class SacToFissures {
 
     public SacToFissures() {}
+
+    /** size of the sac header, where the data begins */
+    static final int HEADER_BYTES = 632;
+
+    /** byte offset of NVHDR, the 77th word */
+    static final int NVHDR_OFFSET = 76 * 4;
+
+    /** 70 floats and 40 ints before the character fields */
+    static final int NUMERIC_HEADER_BYTES = 110 * 4;
     
     public static LocalSeismogramImpl getSeismogram(File sacFile) throws FileNotFoundException, IOException, FissuresException {
         SacTimeSeries sac = SacTimeSeries.read(sacFile);
@@ -62,6 +77,43 @@ public class SacToFissures {
         return getSeismogram(sac);
     }
 
+    /**
+     * Reads only the header of a sac file, mapping just the first 632 bytes so
+     * the data is never read. Either byte order is accepted, it is found from
+     * NVHDR, which must be between 1 and 9.
+     */
+    public static SacHeader readHeader(File sacFile) throws IOException {
+        FileChannel channel = FileChannel.open(sacFile.toPath(), StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("File too short to be sac, " + channel.size() + " bytes: " + sacFile);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            byte[] headerBytes = new byte[HEADER_BYTES];
+            mapped.get(headerBytes);
+            int nvhdr = ByteBuffer.wrap(headerBytes).order(ByteOrder.BIG_ENDIAN).getInt(NVHDR_OFFSET);
+            if (nvhdr < 1 || nvhdr > 9) {
+                int swapped = Integer.reverseBytes(nvhdr);
+                if (swapped < 1 || swapped > 9) {
+                    throw new IOException("Does not look like sac, NVHDR=" + nvhdr + " in either byte order: " + sacFile);
+                }
+                // little endian, swap the float and int words so the header
+                // can be read as big endian, the strings are single bytes
+                for (int i = 0; i < NUMERIC_HEADER_BYTES; i += 4) {
+                    byte b = headerBytes[i];
+                    headerBytes[i] = headerBytes[i + 3];
+                    headerBytes[i + 3] = b;
+                    b = headerBytes[i + 1];
+                    headerBytes[i + 1] = headerBytes[i + 2];
+                    headerBytes[i + 2] = b;
+                }
+            }
+            return new SacHeader(new DataInputStream(new ByteArrayInputStream(headerBytes)));
+        } finally {
+            channel.close();
+        }
+    }
+
     /**
      * Gets a LocalSeismogram. The data comes from the sac file, while the
      * SeismogramAttr comes from attr. A check is made on the beginTime,
@@ -19,11 +19,7 @@ public class StationXMLToSacPoleZero {
      * @throws UnknownUnit on bad unit conversion
      * */
     public static SacPoleZero convert(Response response) throws UnknownUnit {
-        ResponseStage first = response.getFirstStage();
-        if (first.getResponseItem() instanceof PolesZeros) {
-            throw new IllegalArgumentException("First Stage is not PolesZeros: "+first.getResponseItem().getClass().getSimpleName());
-        }
-        PolesZeros polesZeros = (PolesZeros)first.getResponseItem();
+        PolesZeros polesZeros = getFirstPolesZeros(response);
         int gamma = 0;
         UnitImpl unit = StationXMLToFissures.convertUnit(polesZeros.getInputUnits());
 
@@ -74,9 +70,18 @@ public class StationXMLToSacPoleZero {
         constant *= scaleUnit.getValue();
         return new SacPoleZero(poles, zeros, constant);
     }
-    
 
-    
+    /**
+     * @throws IllegalArgumentException if the first stage is not poles and zeros
+     */
+    public static PolesZeros getFirstPolesZeros(Response response) {
+        ResponseStage first = response.getFirstStage();
+        if ( ! (first.getResponseItem() instanceof PolesZeros)) {
+            throw new IllegalArgumentException("First Stage is not PolesZeros: "+first.getResponseItem().getClass().getSimpleName());
+        }
+        return (PolesZeros)first.getResponseItem();
+    }
+
     private static double calc_A0(Complex[] poles, Complex[] zeros, double ref_freq) {
         int i;
         Complex numer = ONE;
@@ -17,6 +17,7 @@ import edu.sc.seis.sod.model.common.SamplingImpl;
 import edu.sc.seis.sod.model.common.TimeRange;
 import edu.sc.seis.sod.model.common.UnitImpl;
 import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.util.convert.mseed.EncodedSampleView;
 
 /**
  * FissuresToWAV.java
@@ -86,19 +87,11 @@ public class FissuresToWAV {
     }
 
     private void writeWAVData(DataOutput out) throws IOException, CodecException, FissuresException {
-
-        //calculate maximum amplification factor to avoid either
-        //clipping or dead quiet
-        double max = seis.getMaxValue().getValue();
-        double min = seis.getMinValue().getValue();
-        double absMax = Double.MAX_VALUE;
-        if (Math.abs(min) > Math.abs(max)){
-            absMax = Math.abs(min);
+        if (seis.is_encoded()) {
+            writeWAVData(out, EncodedSampleView.of(seis));
+            return;
         }
-        else{
-            absMax = Math.abs(max);
-        }
-        double amplification = (32000.0/absMax);
+        double amplification = getAmplification(seis.getMinValue().getValue(), seis.getMaxValue().getValue());
 
             try{
                 if (seis.can_convert_to_long()) {
@@ -122,6 +115,34 @@ public class FissuresToWAV {
         
     }
 
+    /**
+     * Encoded data is read a record at a time through the view, once for the
+     * min and max and again for the samples, instead of decoding the whole
+     * seismogram into one array.
+     */
+    private void writeWAVData(DataOutput out, EncodedSampleView view) throws IOException, CodecException {
+        double[] minMaxMean = view.getMinMaxMean(0, view.getNumPoints());
+        double amplification = getAmplification(minMaxMean[0], minMaxMean[1]);
+        for (int i = 0; i < view.getNumPoints(); i++) {
+            writeLittleEndian(out, (short)(amplification * view.getDouble(i)));
+        }
+    }
+
+    /**
+     * calculate maximum amplification factor to avoid either clipping or
+     * dead quiet
+     */
+    static double getAmplification(double min, double max) {
+        double absMax;
+        if (Math.abs(min) > Math.abs(max)){
+            absMax = Math.abs(min);
+        }
+        else{
+            absMax = Math.abs(max);
+        }
+        return 32000.0/absMax;
+    }
+
     public int calculateSampleRate(SamplingImpl sampling){
         QuantityImpl freq = sampling.getFrequency();
         freq = freq.convertTo(UnitImpl.HERTZ);
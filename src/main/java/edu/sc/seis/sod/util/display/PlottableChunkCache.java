@@ -0,0 +1,367 @@
+package edu.sc.seis.sod.util.display;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import edu.sc.seis.sod.model.common.TimeRange;
+import edu.sc.seis.sod.model.seismogram.PlottableChunk;
+import edu.sc.seis.sod.util.time.ReduceTool;
+
+/**
+ * Size bounded cache of PlottableChunk lists keyed by channel, day and pixels
+ * per day, for viewers that ask for the same channel-days repeatedly while
+ * panning. The keys are spread over independent segments, each an access
+ * ordered LinkedHashMap with its own lock and its own share of the byte
+ * budget, so lookups on different segments do not contend. The weight of an
+ * entry is the size of its x and y arrays.
+ *
+ * Cached lists are shared between callers and must not be modified.
+ */
+public class PlottableChunkCache {
+
+    public PlottableChunkCache(long maxBytes) {
+        this(maxBytes, DEFAULT_SEGMENTS);
+    }
+
+    public PlottableChunkCache(long maxBytes, int numSegments) {
+        segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment(Math.max(1, maxBytes / numSegments));
+        }
+    }
+
+    public List<PlottableChunk> get(Key key) {
+        Weighted w = segmentFor(key).get(key);
+        List<PlottableChunk> out = w == null ? null : w.chunks;
+        if (out == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return out;
+    }
+
+    /**
+     * Caches the chunks for the key, dropping any merged or rescaled results
+     * made from what was there before.
+     */
+    public void put(Key key, List<PlottableChunk> chunks) {
+        removeDerived(key);
+        segmentFor(key).put(key, Collections.unmodifiableList(chunks), null);
+    }
+
+    /**
+     * Returns the cached chunks for the key, or calls the loader and caches
+     * what it returns. Two threads missing on the same key at once may both
+     * call the loader, the last to finish is cached.
+     */
+    public List<PlottableChunk> getOrCompute(Key key, Callable<List<PlottableChunk>> loader) throws Exception {
+        List<PlottableChunk> out = get(key);
+        if (out == null) {
+            out = Collections.unmodifiableList(loader.call());
+            removeDerived(key);
+            segmentFor(key).put(key, out, null);
+        }
+        return out;
+    }
+
+    /**
+     * Cached ReduceTool.merge of the chunks for one channel-day. Results are
+     * kept apart from get and put and from convertToCommonPixelScale. A
+     * cached result is only returned for the same list object it was made
+     * from, so pass the list from get or one that is not changed afterwards,
+     * and it is dropped by put or remove of the key.
+     */
+    public List<PlottableChunk> merge(Key key, List<PlottableChunk> chunks) {
+        return derived(new DerivedKey(key, Operation.MERGE), chunks, c -> ReduceTool.merge(c));
+    }
+
+    /**
+     * Cached SimplePlotUtil.convertToCommonPixelScale of the chunks for one
+     * channel over the whole day in the key, matched to the chunks and
+     * dropped the same as merge.
+     */
+    public List<PlottableChunk> convertToCommonPixelScale(Key key, List<PlottableChunk> chunks) {
+        return derived(new DerivedKey(key, Operation.COMMON_PIXEL_SCALE),
+                       chunks,
+                       c -> SimplePlotUtil.convertToCommonPixelScale(c,
+                                                                     SimplePlotUtil.getDay(key.day),
+                                                                     key.pixelsPerDay));
+    }
+
+    private List<PlottableChunk> derived(DerivedKey key,
+                                         List<PlottableChunk> chunks,
+                                         Function<List<PlottableChunk>, List<PlottableChunk>> operation) {
+        Segment segment = segmentFor(key);
+        Weighted w = segment.get(key);
+        if (w != null && w.source == chunks) {
+            hits.incrementAndGet();
+            return w.chunks;
+        }
+        misses.incrementAndGet();
+        List<PlottableChunk> out = Collections.unmodifiableList(operation.apply(chunks));
+        segment.put(key, out, chunks);
+        return out;
+    }
+
+    /**
+     * Removes the entry for the key and the merged and rescaled results for
+     * it.
+     */
+    public void remove(Key key) {
+        segmentFor(key).remove(key);
+        removeDerived(key);
+    }
+
+    private void removeDerived(Key key) {
+        for (Operation op : Operation.values()) {
+            DerivedKey dk = new DerivedKey(key, op);
+            segmentFor(dk).remove(dk);
+        }
+    }
+
+    public void clear() {
+        for (Segment s : segments) {
+            s.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        long out = 0;
+        for (Segment s : segments) {
+            out += s.getEvictions();
+        }
+        return out;
+    }
+
+    /** total weight in bytes of the cached chunks */
+    public long getWeight() {
+        long out = 0;
+        for (Segment s : segments) {
+            out += s.getWeight();
+        }
+        return out;
+    }
+
+    public static long weigh(List<PlottableChunk> chunks) {
+        long out = ENTRY_OVERHEAD;
+        for (PlottableChunk chunk : chunks) {
+            out += CHUNK_OVERHEAD;
+            if (chunk.getData().x_coor != null) {
+                out += 4L * chunk.getData().x_coor.length;
+            }
+            if (chunk.getData().y_coor != null) {
+                out += 4L * chunk.getData().y_coor.length;
+            }
+        }
+        return out;
+    }
+
+    Segment segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[Math.floorMod(h, segments.length)];
+    }
+
+    public static class Key {
+
+        public Key(PlottableChunk chunk) {
+            this(chunk.getNetworkCode(),
+                 chunk.getStationCode(),
+                 chunk.getSiteCode(),
+                 chunk.getChannelCode(),
+                 chunk.getBeginTime(),
+                 chunk.getPixelsPerDay());
+        }
+
+        /**
+         * @param day
+         *            any time in the day, it is truncated to the beginning of
+         *            the day
+         */
+        public Key(String network, String station, String site, String channel, Instant day, int pixelsPerDay) {
+            this.network = network;
+            this.station = station;
+            this.site = site;
+            this.channel = channel;
+            this.day = SimplePlotUtil.getBeginningOfDay(day);
+            this.pixelsPerDay = pixelsPerDay;
+        }
+
+        public TimeRange getDayRange() {
+            return SimplePlotUtil.getDay(day);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if ( ! (o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key)o;
+            return pixelsPerDay == k.pixelsPerDay && day.equals(k.day) && network.equals(k.network)
+                    && station.equals(k.station) && site.equals(k.site) && channel.equals(k.channel);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 17;
+            result = 37 * result + network.hashCode();
+            result = 37 * result + station.hashCode();
+            result = 37 * result + site.hashCode();
+            result = 37 * result + channel.hashCode();
+            result = 37 * result + day.hashCode();
+            result = 37 * result + pixelsPerDay;
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return network + "." + station + "." + site + "." + channel + " " + day + " " + pixelsPerDay;
+        }
+
+        final String network, station, site, channel;
+
+        final Instant day;
+
+        final int pixelsPerDay;
+    }
+
+    enum Operation {
+        MERGE, COMMON_PIXEL_SCALE
+    }
+
+    /**
+     * Key for a result computed from the chunks for a Key, so it does not
+     * collide with what is put for the Key itself.
+     */
+    static class DerivedKey {
+
+        DerivedKey(Key key, Operation operation) {
+            this.key = key;
+            this.operation = operation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if ( ! (o instanceof DerivedKey)) {
+                return false;
+            }
+            DerivedKey k = (DerivedKey)o;
+            return operation == k.operation && key.equals(k.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 37 * key.hashCode() + operation.hashCode();
+        }
+
+        final Key key;
+
+        final Operation operation;
+    }
+
+    static class Segment {
+
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        synchronized Weighted get(Object key) {
+            return map.get(key);
+        }
+
+        synchronized void put(Object key, List<PlottableChunk> chunks, List<PlottableChunk> source) {
+            Weighted w = new Weighted(chunks, source);
+            Weighted old = map.put(key, w);
+            if (old != null) {
+                weight -= old.weight;
+            }
+            weight += w.weight;
+            Iterator<Weighted> it = map.values().iterator();
+            // evict least recently used, but never the entry just added
+            while (weight > maxWeight && map.size() > 1) {
+                Weighted eldest = it.next();
+                weight -= eldest.weight;
+                it.remove();
+                evictions++;
+            }
+        }
+
+        synchronized void remove(Object key) {
+            Weighted old = map.remove(key);
+            if (old != null) {
+                weight -= old.weight;
+            }
+        }
+
+        synchronized void clear() {
+            map.clear();
+            weight = 0;
+        }
+
+        synchronized long getWeight() {
+            return weight;
+        }
+
+        synchronized long getEvictions() {
+            return evictions;
+        }
+
+        private LinkedHashMap<Object, Weighted> map = new LinkedHashMap<Object, Weighted>(16, 0.75f, true);
+
+        private long maxWeight;
+
+        private long weight = 0;
+
+        private long evictions = 0;
+    }
+
+    static class Weighted {
+
+        Weighted(List<PlottableChunk> chunks, List<PlottableChunk> source) {
+            this.chunks = chunks;
+            this.weight = weigh(chunks);
+            this.source = source;
+        }
+
+        final List<PlottableChunk> chunks;
+
+        /** the list a derived result was made from, null otherwise */
+        final List<PlottableChunk> source;
+
+        final long weight;
+    }
+
+    private Segment[] segments;
+
+    private AtomicLong hits = new AtomicLong();
+
+    private AtomicLong misses = new AtomicLong();
+
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    /** rough size of the objects around the arrays */
+    static final long CHUNK_OVERHEAD = 96;
+
+    static final long ENTRY_OVERHEAD = 64;
+}
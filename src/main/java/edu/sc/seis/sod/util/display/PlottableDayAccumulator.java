@@ -0,0 +1,135 @@
+package edu.sc.seis.sod.util.display;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.sc.seis.seisFile.TimeUtils;
+import edu.sc.seis.sod.model.seismogram.Plottable;
+import edu.sc.seis.sod.model.seismogram.PlottableChunk;
+
+/**
+ * Collects PlottableChunks as they arrive into one buffer of pixelsPerDay
+ * min/max pairs per channel-day, written in place by pixel index, and hands
+ * out the merged chunks for a day on demand. This replaces merging the new
+ * chunk with everything already there with ReduceTool.merge, which allocates
+ * and refills a new array for every pair. Where chunks overlap the last one
+ * added wins, the same as the merge. Chunks that run past midnight are split
+ * across the days.
+ *
+ * Days are keyed with PlottableChunkCache.Key, so the merged chunks can be put
+ * straight in the cache.
+ */
+public class PlottableDayAccumulator {
+
+    public synchronized void add(PlottableChunk chunk) {
+        int pixelsPerDay = chunk.getPixelsPerDay();
+        Instant chunkDay = LocalDate.ofYearDay(chunk.getYear(), chunk.getJDay())
+                .atStartOfDay(TimeUtils.TZ_UTC)
+                .toInstant();
+        int[] y = chunk.getYData();
+        int numPixels = chunk.getNumPixels();
+        DayBuffer buffer = null;
+        long bufferDayOffset = Long.MIN_VALUE;
+        for (int i = 0; i < numPixels; i++) {
+            long pixel = (long)chunk.getBeginPixel() + i;
+            long dayOffset = Math.floorDiv(pixel, pixelsPerDay);
+            if (buffer == null || dayOffset != bufferDayOffset) {
+                Instant day = chunkDay.plus(TimeUtils.ONE_DAY.multipliedBy(dayOffset));
+                buffer = getBuffer(new PlottableChunkCache.Key(chunk.getNetworkCode(),
+                                                               chunk.getStationCode(),
+                                                               chunk.getSiteCode(),
+                                                               chunk.getChannelCode(),
+                                                               day,
+                                                               pixelsPerDay));
+                bufferDayOffset = dayOffset;
+            }
+            int p = (int)Math.floorMod(pixel, (long)pixelsPerDay);
+            buffer.y[2 * p] = y[2 * i];
+            buffer.y[2 * p + 1] = y[2 * i + 1];
+            buffer.filled.set(p);
+        }
+    }
+
+    /**
+     * @return the data for the day as chunks, one per run of pixels with data,
+     *         or an empty list if nothing has been added for the day
+     */
+    public synchronized List<PlottableChunk> getChunks(PlottableChunkCache.Key key) {
+        List<PlottableChunk> out = new ArrayList<PlottableChunk>();
+        DayBuffer buffer = days.get(key);
+        if (buffer == null) {
+            return out;
+        }
+        int jday = PlottableChunk.getJDay(key.day);
+        int year = PlottableChunk.getYear(key.day);
+        int start = buffer.filled.nextSetBit(0);
+        while (start >= 0) {
+            int end = buffer.filled.nextClearBit(start);
+            int[] x = new int[2 * (end - start)];
+            int[] y = new int[x.length];
+            for (int p = start; p < end; p++) {
+                x[2 * (p - start)] = p;
+                x[2 * (p - start) + 1] = p;
+            }
+            System.arraycopy(buffer.y, 2 * start, y, 0, y.length);
+            out.add(new PlottableChunk(new Plottable(x, y),
+                                       start,
+                                       jday,
+                                       year,
+                                       key.pixelsPerDay,
+                                       key.network,
+                                       key.station,
+                                       key.site,
+                                       key.channel));
+            start = buffer.filled.nextSetBit(end);
+        }
+        return out;
+    }
+
+    /** number of pixels in the day that have data */
+    public synchronized int getNumFilledPixels(PlottableChunkCache.Key key) {
+        DayBuffer buffer = days.get(key);
+        return buffer == null ? 0 : buffer.filled.cardinality();
+    }
+
+    public synchronized Set<PlottableChunkCache.Key> getDays() {
+        return new HashSet<PlottableChunkCache.Key>(days.keySet());
+    }
+
+    /**
+     * Drops the buffer for the day, for when it will get no more data.
+     */
+    public synchronized void remove(PlottableChunkCache.Key key) {
+        days.remove(key);
+    }
+
+    private DayBuffer getBuffer(PlottableChunkCache.Key key) {
+        DayBuffer buffer = days.get(key);
+        if (buffer == null) {
+            buffer = new DayBuffer(key.pixelsPerDay);
+            days.put(key, buffer);
+        }
+        return buffer;
+    }
+
+    static class DayBuffer {
+
+        DayBuffer(int pixelsPerDay) {
+            y = new int[pixelsPerDay * 2];
+            filled = new BitSet(pixelsPerDay);
+        }
+
+        final int[] y;
+
+        final BitSet filled;
+    }
+
+    private Map<PlottableChunkCache.Key, DayBuffer> days = new HashMap<PlottableChunkCache.Key, DayBuffer>();
+}
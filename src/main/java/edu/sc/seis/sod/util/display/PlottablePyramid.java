@@ -0,0 +1,128 @@
+package edu.sc.seis.sod.util.display;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.model.seismogram.Plottable;
+import edu.sc.seis.sod.model.seismogram.PlottableChunk;
+
+/**
+ * PlottableChunks for the same data at several resolutions. The finest level
+ * is made from the seismograms with SimplePlotUtil.makePlottables, and each
+ * coarser level has half the pixels per day of the one before it, made by
+ * combining the min/max of pairs of pixels. A viewer can then pick the level
+ * closest to the density it is drawing at instead of going back to the
+ * seismograms for each zoom.
+ *
+ * Coarse pixels at the edges of a chunk may be made from only one finer
+ * pixel.
+ */
+public class PlottablePyramid {
+
+    /**
+     * @param finest
+     *            chunks all at the same pixels per day
+     * @param minPixelsPerDay
+     *            halving stops before going below this, or when pixels per day
+     *            becomes odd
+     */
+    public PlottablePyramid(List<PlottableChunk> finest, int minPixelsPerDay) {
+        if (finest.size() == 0) {
+            return;
+        }
+        int pixelsPerDay = finest.get(0).getPixelsPerDay();
+        List<PlottableChunk> level = finest;
+        levels.put(pixelsPerDay, Collections.unmodifiableList(level));
+        while (pixelsPerDay % 2 == 0 && pixelsPerDay / 2 >= minPixelsPerDay) {
+            List<PlottableChunk> coarser = new ArrayList<PlottableChunk>(level.size());
+            for (PlottableChunk chunk : level) {
+                coarser.add(halve(chunk));
+            }
+            pixelsPerDay /= 2;
+            level = coarser;
+            levels.put(pixelsPerDay, Collections.unmodifiableList(level));
+        }
+    }
+
+    public static PlottablePyramid build(LocalSeismogramImpl[] seis, int finestPixelsPerDay, int minPixelsPerDay)
+            throws IOException {
+        return new PlottablePyramid(SimplePlotUtil.makePlottables(seis, finestPixelsPerDay), minPixelsPerDay);
+    }
+
+    /**
+     * @return the chunks from the level whose pixels per day is closest, by
+     *         ratio, to the requested density
+     */
+    public List<PlottableChunk> getLevel(int pixelsPerDay) {
+        if (levels.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return levels.get(getClosestPixelsPerDay(pixelsPerDay));
+    }
+
+    public int getClosestPixelsPerDay(int pixelsPerDay) {
+        Integer below = levels.floorKey(pixelsPerDay);
+        Integer above = levels.ceilingKey(pixelsPerDay);
+        if (below == null) {
+            return above;
+        }
+        if (above == null) {
+            return below;
+        }
+        return (double)pixelsPerDay / below <= (double)above / pixelsPerDay ? below : above;
+    }
+
+    /** the pixels per day of each level, finest last */
+    public List<Integer> getPixelsPerDayLevels() {
+        return new ArrayList<Integer>(levels.keySet());
+    }
+
+    public Map<Integer, List<PlottableChunk>> getLevels() {
+        return Collections.unmodifiableMap(levels);
+    }
+
+    /**
+     * Makes a chunk at half the pixels per day by combining each pair of
+     * pixels, the min of the two mins and the max of the two maxes.
+     */
+    public static PlottableChunk halve(PlottableChunk chunk) {
+        int begin = chunk.getBeginPixel();
+        int numPixels = chunk.getNumPixels();
+        int[] y = chunk.getYData();
+        int newBegin = Math.floorDiv(begin, 2);
+        int newNumPixels = numPixels == 0 ? 0 : Math.floorDiv(begin + numPixels - 1, 2) - newBegin + 1;
+        int[] outX = new int[newNumPixels * 2];
+        int[] outY = new int[newNumPixels * 2];
+        for (int i = 0; i < newNumPixels; i++) {
+            outX[2 * i] = newBegin + i;
+            outX[2 * i + 1] = newBegin + i;
+            outY[2 * i] = Integer.MAX_VALUE;
+            outY[2 * i + 1] = Integer.MIN_VALUE;
+        }
+        for (int i = 0; i < numPixels; i++) {
+            int j = Math.floorDiv(begin + i, 2) - newBegin;
+            if (y[2 * i] < outY[2 * j]) {
+                outY[2 * j] = y[2 * i];
+            }
+            if (y[2 * i + 1] > outY[2 * j + 1]) {
+                outY[2 * j + 1] = y[2 * i + 1];
+            }
+        }
+        return new PlottableChunk(new Plottable(outX, outY),
+                                  newBegin,
+                                  chunk.getJDay(),
+                                  chunk.getYear(),
+                                  chunk.getPixelsPerDay() / 2,
+                                  chunk.getNetworkCode(),
+                                  chunk.getStationCode(),
+                                  chunk.getSiteCode(),
+                                  chunk.getChannelCode());
+    }
+
+    private TreeMap<Integer, List<PlottableChunk>> levels = new TreeMap<Integer, List<PlottableChunk>>();
+}
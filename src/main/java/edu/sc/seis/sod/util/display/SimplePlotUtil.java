@@ -11,6 +11,7 @@ import java.util.List;
 
 import edu.iris.dmc.seedcodec.CodecException;
 import edu.sc.seis.seisFile.TimeUtils;
+import edu.sc.seis.sod.model.common.FissuresException;
 import edu.sc.seis.sod.model.common.QuantityImpl;
 import edu.sc.seis.sod.model.common.SamplingImpl;
 import edu.sc.seis.sod.model.common.TimeRange;
@@ -20,6 +21,7 @@ import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
 import edu.sc.seis.sod.model.seismogram.Plottable;
 import edu.sc.seis.sod.model.seismogram.PlottableChunk;
 import edu.sc.seis.sod.model.util.LinearInterp;
+import edu.sc.seis.sod.util.convert.mseed.EncodedSampleView;
 import edu.sc.seis.sod.util.time.ClockUtil;
 
 /**
@@ -62,33 +64,133 @@ public class SimplePlotUtil {
         int startPixel = seisPixelRange.getMin();
         int[][] pixels = new int[2][numPixels * 2];
         int pixelPoint = startPixel < 0 ? 0 : startPoint;
-        Instant pixelEndTime = correctedSeisRange.getBeginTime();
-        Duration pixelPeriod = getPixelPeriod(pixelsPerDay);
-        if(corrected) {}
+        int[] pixelEndPoints = getPixelEndPoints(correctedSeisRange,
+                                                 startPoint,
+                                                 endPoint,
+                                                 numPixels,
+                                                 getPixelPeriod(pixelsPerDay));
+        if(seis.can_convert_to_long()) {
+            binMinMax(getAsInts(seis), pixelPoint, pixelEndPoints, pixels[1]);
+        } else {
+            binMinMax(getAsDoubles(seis), pixelPoint, pixelEndPoints, pixels[1]);
+        }
         for(int i = 0; i < numPixels; i++) {
-            pixelEndTime = pixelEndTime.plus(pixelPeriod);
-            int pos = 2 * i;
-            int nextPos = pos + 1;
-            pixels[0][pos] = startPixel + i;
-            pixels[0][nextPos] = pixels[0][pos];
-            int nextPixelPoint = getPixel(startPoint,
-                                          endPoint,
-                                          correctedSeisRange.getBeginTime(),
-                                          correctedSeisRange.getEndTime(),
-                                          pixelEndTime);
-            QuantityImpl min = seis.getMinValue(pixelPoint, nextPixelPoint);
-            pixels[1][pos] = (int)min.getValue();
-            QuantityImpl max = seis.getMaxValue(pixelPoint, nextPixelPoint);
-            pixels[1][nextPos] = (int)max.getValue();
-            if(corrected && (i < 2 || i >= numPixels - 2)) {
-                logger.debug(pixels[0][pos] + ": min " + min.getValue() + " max "
-                        + max.getValue());
+            pixels[0][2 * i] = startPixel + i;
+            pixels[0][2 * i + 1] = startPixel + i;
+        }
+        if(corrected && logger.isDebugEnabled()) {
+            for(int i = 0; i < numPixels; i++) {
+                if(i < 2 || i >= numPixels - 2) {
+                    logger.debug(pixels[0][2 * i] + ": min " + pixels[1][2 * i]
+                            + " max " + pixels[1][2 * i + 1]);
+                }
             }
-            pixelPoint = nextPixelPoint;
         }
         return new Plottable(pixels[0], pixels[1]);
     }
 
+    /**
+     * Finds the sample index at the end of each pixel, ie the first sample of
+     * the next pixel. Each end time is computed from the begin time rather
+     * than accumulated, which gives the same instants without repeated
+     * additions.
+     */
+    static int[] getPixelEndPoints(TimeRange correctedSeisRange,
+                                   int startPoint,
+                                   int endPoint,
+                                   int numPixels,
+                                   Duration pixelPeriod) {
+        int[] out = new int[numPixels];
+        Instant begin = correctedSeisRange.getBeginTime();
+        Instant end = correctedSeisRange.getEndTime();
+        for(int i = 0; i < numPixels; i++) {
+            out[i] = getPixel(startPoint,
+                              endPoint,
+                              begin,
+                              end,
+                              begin.plus(pixelPeriod.multipliedBy(i + 1)));
+        }
+        return out;
+    }
+
+    /**
+     * Fills minMax with the min and max of the samples in each pixel, in one
+     * pass over the data. A pixel covers from the end of the previous pixel
+     * up to but not including its own end point, and an empty pixel takes
+     * the value of the sample at its start, the same as
+     * LocalSeismogramImpl.getMinValue(int, int). An empty pixel at or past
+     * the last sample, which happens when there are more pixels than
+     * samples, takes the last sample.
+     */
+    static void binMinMax(int[] data,
+                          int firstPoint,
+                          int[] pixelEndPoints,
+                          int[] minMax) {
+        int begin = firstPoint;
+        for(int i = 0; i < pixelEndPoints.length; i++) {
+            int end = pixelEndPoints[i];
+            int min = data.length == 0 ? 0 : data[Math.min(begin, data.length - 1)];
+            int max = min;
+            for(int j = begin + 1; j < Math.min(end, data.length); j++) {
+                int v = data[j];
+                if(v < min) {
+                    min = v;
+                } else if(v > max) {
+                    max = v;
+                }
+            }
+            minMax[2 * i] = min;
+            minMax[2 * i + 1] = max;
+            begin = end;
+        }
+    }
+
+    static void binMinMax(double[] data,
+                          int firstPoint,
+                          int[] pixelEndPoints,
+                          int[] minMax) {
+        int begin = firstPoint;
+        for(int i = 0; i < pixelEndPoints.length; i++) {
+            int end = pixelEndPoints[i];
+            double min = data.length == 0 ? 0 : data[Math.min(begin, data.length - 1)];
+            double max = min;
+            for(int j = begin + 1; j < Math.min(end, data.length); j++) {
+                double v = data[j];
+                if(v < min) {
+                    min = v;
+                } else if(v > max) {
+                    max = v;
+                }
+            }
+            minMax[2 * i] = (int)min;
+            minMax[2 * i + 1] = (int)max;
+            begin = end;
+        }
+    }
+
+    static int[] getAsInts(LocalSeismogramImpl seis) throws CodecException {
+        try {
+            return seis.get_as_longs();
+        } catch(FissuresException e) {
+            throw toCodecException(e);
+        }
+    }
+
+    static double[] getAsDoubles(LocalSeismogramImpl seis) throws CodecException {
+        try {
+            return seis.get_as_doubles();
+        } catch(FissuresException e) {
+            throw toCodecException(e);
+        }
+    }
+
+    private static CodecException toCodecException(FissuresException e) {
+        if(e.getCause() instanceof CodecException) {
+            return (CodecException)e.getCause();
+        }
+        return new CodecException(e);
+    }
+
     public static Plottable getEmptyPlottable() {
         int[] empty = new int[0];
         return new Plottable(empty, empty);
@@ -249,37 +351,49 @@ public class SimplePlotUtil {
                             seis.getEndTime(),
                             seisEndIndex);
         int pixelEndIndex = getPixel(width, timeRange, tempdate);
-        int pixels = seisEndIndex - seisStartIndex + 1;
-        out[0] = new int[2 * pixels];
-        out[1] = new int[out[0].length];
-        int tempYvalues[] = new int[out[0].length];
-        int seisIndex = seisStartIndex;
+        if(seisEndIndex <= seisStartIndex) {
+            out[0] = new int[0];
+            out[1] = new int[0];
+            return out;
+        }
+        // at most one pair per pixel, so buffers scale with the width and not
+        // the number of samples
+        int capacity = 2 * (Math.abs(pixelEndIndex - pixelStartIndex) + 1);
+        out[0] = new int[capacity];
+        out[1] = new int[capacity];
+        SampleSource samples = new SampleSource(seis);
+        // x for sample k after the start is round(pixelStart + k*dp/ds), done
+        // in integer arithmetic instead of a double interpolation per sample.
+        // This is the pixel the old Math.round((float)linearInterp(...)) gave,
+        // except when there are so many samples that the float could not tell
+        // a fraction just under one half from one half and rounded up.
+        long ds = seisEndIndex - seisStartIndex;
+        long dp = pixelEndIndex - pixelStartIndex;
+        int xvalue = pixelStartIndex;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
         int numAdded = 0;
-        int xvalue = Math.round((float)(linearInterp(seisStartIndex,
-                                                     pixelStartIndex,
-                                                     seisEndIndex,
-                                                     pixelEndIndex,
-                                                     seisIndex)));
-        int tempValue = 0;
-        seisIndex++;
-        int j = 0;
-        while(seisIndex <= seisEndIndex) {
-            tempValue = Math.round((float)(linearInterp(seisStartIndex,
-                                                        pixelStartIndex,
-                                                        seisEndIndex,
-                                                        pixelEndIndex,
-                                                        seisIndex)));
-            tempYvalues[j++] = (int)seis.getValueAt(seisIndex).getValue();
+        for(int seisIndex = seisStartIndex + 1; seisIndex <= seisEndIndex; seisIndex++) {
+            long k = seisIndex - seisStartIndex;
+            int tempValue = pixelStartIndex
+                    + (int)Math.floorDiv(2 * k * dp + ds, 2 * ds);
+            int y = samples.getInt(seisIndex);
+            if(y < min) {
+                min = y;
+            }
+            if(y > max) {
+                max = y;
+            }
             if(tempValue != xvalue) {
                 out[0][numAdded] = xvalue;
                 out[0][numAdded + 1] = xvalue;
-                out[1][numAdded] = getMinValue(tempYvalues, 0, j - 1);
-                out[1][numAdded + 1] = getMaxValue(tempYvalues, 0, j - 1);
-                j = 0;
+                out[1][numAdded] = min;
+                out[1][numAdded + 1] = max;
+                min = Integer.MAX_VALUE;
+                max = Integer.MIN_VALUE;
                 xvalue = tempValue;
                 numAdded = numAdded + 2;
             }
-            seisIndex++;
         }
         int temp[][] = new int[2][numAdded];
         System.arraycopy(out[0], 0, temp[0], 0, numAdded);
@@ -287,22 +401,48 @@ public class SimplePlotUtil {
         return temp;
     }
 
-    private static int getMinValue(int[] yValues, int startIndex, int endIndex) {
-        int minValue = java.lang.Integer.MAX_VALUE;
-        for(int i = startIndex; i <= endIndex; i++) {
-            if(yValues[i] < minValue)
-                minValue = yValues[i];
+    /**
+     * Integer samples from a seismogram without boxing. Encoded data is
+     * decoded a record at a time as it is walked, otherwise the data is used
+     * as it is held in the seismogram, so float data is not copied into a
+     * double array.
+     */
+    static class SampleSource {
+
+        SampleSource(LocalSeismogramImpl seis) throws CodecException {
+            try {
+                if(seis.is_encoded()) {
+                    view = new EncodedSampleView(seis.get_as_encoded());
+                } else if(seis.can_convert_to_long()) {
+                    ints = seis.get_as_longs();
+                } else if(seis.can_convert_to_float()) {
+                    floats = seis.get_as_floats();
+                } else {
+                    doubles = seis.get_as_doubles();
+                }
+            } catch(FissuresException e) {
+                throw toCodecException(e);
+            }
         }
-        return minValue;
-    }
 
-    private static int getMaxValue(int[] yValues, int startIndex, int endIndex) {
-        int maxValue = java.lang.Integer.MIN_VALUE;
-        for(int i = startIndex; i <= endIndex; i++) {
-            if(yValues[i] > maxValue)
-                maxValue = yValues[i];
+        int getInt(int index) throws CodecException {
+            if(ints != null) {
+                return ints[index];
+            } else if(floats != null) {
+                return (int)floats[index];
+            } else if(doubles != null) {
+                return (int)doubles[index];
+            }
+            return view.getInt(index);
         }
-        return maxValue;
+
+        EncodedSampleView view;
+
+        int[] ints;
+
+        float[] floats;
+
+        double[] doubles;
     }
 
     /**
@@ -1,14 +1,14 @@
 package edu.sc.seis.sod.util.time;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import edu.sc.seis.seisFile.TimeUtils;
 import edu.sc.seis.sod.model.common.QuantityImpl;
@@ -23,38 +23,115 @@ import edu.sc.seis.sod.util.exceptionHandler.GlobalExceptionHandler;
 public class ClockUtil {
 
     /**
-     * Calculates the difference between the CPU clock and the time retrieved
-     * from the http://www.seis.sc.edu/cgi-bin/date_time.pl. 
+     * Difference between the CPU clock and the time from the TimeSource, by
+     * default http://www.seis.sc.edu/cgi-bin/date_time.pl. This never waits on
+     * the network, the first call starts a background refresh and until that
+     * finishes the offset is zero. The offset is refreshed every
+     * REFRESH_INTERVAL after that.
      */
     public static Duration getTimeOffset() {
-        if(serverOffset == null ) {
-            if (warnServerFail ) {
-                // already tried and failed, so...
-                return ZERO_OFFSET;
+        startRefresh();
+        return Duration.ofNanos(offsetNanos);
+    }
+
+    /**
+     * Gets the offset from the time source now, waiting for it, and uses it
+     * from then on. Zero is used if the time source fails. If the time source
+     * is replaced while waiting, the old source's offset is dropped.
+     */
+    public static Duration refreshTimeOffset() {
+        TimeSource source = timeSource;
+        try {
+            Duration offset = source.getOffset();
+            synchronized(sourceLock) {
+                if(timeSource != source) {
+                    // replaced while fetching, the refresh for the new one
+                    // sets the offset
+                    return Duration.ofNanos(offsetNanos);
+                }
+                offsetNanos = offset.toNanos();
             }
-            try {
-                serverOffset = getServerTimeOffset();
-            } catch(Throwable e) {
-            	noGoClock(e);
-                return ZERO_OFFSET;
-            } // end of try-catch
-        } // end of if ()
-        return serverOffset;
+            warnServerFail = false;
+            return offset;
+        } catch(Throwable e) {
+            noGoClock(source, e);
+            return Duration.ofNanos(offsetNanos);
+        }
     }
-    
-    private static void noGoClock(Throwable e) {
+
+    /**
+     * Replaces the reference clock and refreshes the offset from it in the
+     * background.
+     */
+    public static void setTimeSource(TimeSource source) {
+        synchronized(sourceLock) {
+            timeSource = source;
+        }
+        warnServerFail = false;
+        if(refreshStarted.get()) {
+            getRefresher().execute(ClockUtil::refreshTimeOffset);
+        } else {
+            startRefresh();
+        }
+    }
+
+    public static TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    /** the offset in use, without starting the background refresh */
+    static Duration getCurrentOffset() {
+        return Duration.ofNanos(offsetNanos);
+    }
+
+    /**
+     * Puts back a time source and offset without refreshing, for tests that
+     * must not go to the network.
+     */
+    static void restoreTimeSource(TimeSource source, Duration offset) {
+        synchronized(sourceLock) {
+            timeSource = source;
+            offsetNanos = offset.toNanos();
+        }
+    }
+
+    private static void startRefresh() {
+        if(!refreshStarted.get() && refreshStarted.compareAndSet(false, true)) {
+            getRefresher().scheduleWithFixedDelay(ClockUtil::refreshTimeOffset,
+                                                  0,
+                                                  REFRESH_INTERVAL.toMillis(),
+                                                  TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static synchronized ScheduledExecutorService getRefresher() {
+        if(refresher == null) {
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ClockUtil offset refresh");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return refresher;
+    }
+
+    private static void noGoClock(TimeSource source, Throwable e) {
+        if(warnServerFail) {
+            // already warned, keep the last offset
+            return;
+        }
         warnServerFail = true;
         // oh well, can't get to server, use CPU time, so
         // offset is zero, check for really bad clocks first
-        logger.debug("Unable to make a connection to "+SEIS_SC_EDU_URL+" to verify system clock, assuming offset is zero.", e);
-        logger.warn("Unable to make a connection to "+SEIS_SC_EDU_URL+" to verify system clock, assuming offset is zero.");
+        logger.debug("Unable to make a connection to "+source+" to verify system clock, using offset "+Duration.ofNanos(offsetNanos)+".", e);
+        logger.warn("Unable to make a connection to "+source+" to verify system clock, using offset "+Duration.ofNanos(offsetNanos)+".");
         Instant localNow = Instant.now();
         if(!warnBadBadClock && OLD_DATE.isAfter(localNow)) {
             warnBadBadClock = true;
             GlobalExceptionHandler.handle("Unable to check the time from the server and the computer's clock is obviously wrong. Please reset the clock on your computer to be closer to real time. \nComputer Time="
                                                   + localNow
                                                   + "\nTime checking url="
-                                                  + SEIS_SC_EDU_URL,
+                                                  + source,
                                           e);
         }
     }
@@ -65,7 +142,8 @@ public class ClockUtil {
      * established, then the current CPU time is used.
      */
     public static Instant now() {
-        return Instant.now().plus(getTimeOffset());
+        startRefresh();
+        return Instant.now().plusNanos(offsetNanos);
     }
 
     public static Instant tomorrow() {
@@ -95,20 +173,12 @@ public class ClockUtil {
         return TimeUtils.future;
     }
 
+    /**
+     * Blocking fetch of the offset from seis.sc.edu, ignoring the current
+     * TimeSource.
+     */
     public static Duration getServerTimeOffset() throws IOException {
-        HttpURLConnection conn = (HttpURLConnection)SEIS_SC_EDU_URL.openConnection();
-        conn.setReadTimeout(10000); // timeout after 10 seconds
-        InputStream is = conn.getInputStream();
-        InputStreamReader isReader = new InputStreamReader(is);
-        BufferedReader bufferedReader = new BufferedReader(isReader);
-        String str;
-        String timeStr = null;
-        while((str = bufferedReader.readLine()) != null) {
-            timeStr = str;
-        }
-        Instant localTime = Instant.now();
-        Instant serverTime = TimeUtils.parseISOString(timeStr);
-        return Duration.between(localTime, serverTime);
+        return new UrlTimeSource(SEIS_SC_EDU_URL).getOffset();
     }
     
     /** True if the first duration is less than the second. */
@@ -158,19 +228,29 @@ public class ClockUtil {
     
     public static final long NANO = 1000000000;
     
-    private static boolean warnServerFail = false;
+    private static volatile boolean warnServerFail = false;
 
-    private static boolean warnBadBadClock = false;
+    private static volatile boolean warnBadBadClock = false;
 
-    private static Duration serverOffset = null;
+    /** offset of the reference clock from the CPU clock, read on every now() */
+    private static volatile long offsetNanos = 0;
 
-    private static final Duration ZERO_OFFSET = Duration.ofNanos(0);
+    private static final AtomicBoolean refreshStarted = new AtomicBoolean(false);
+
+    private static ScheduledExecutorService refresher = null;
+
+    public static final Duration REFRESH_INTERVAL = Duration.ofHours(1);
 
     private static URL SEIS_SC_EDU_URL;
+
+    private static final Object sourceLock = new Object();
+
+    private static volatile TimeSource timeSource = new TimeSource.Fixed(Duration.ZERO);
     static {
         // we have to do this in a static block because of the exception
         try {
             SEIS_SC_EDU_URL = new URL("http://www.seis.sc.edu/cgi-bin/date_time.pl");
+            timeSource = new UrlTimeSource(SEIS_SC_EDU_URL);
         } catch(MalformedURLException e) {
             // Can't happen
             GlobalExceptionHandler.handle("Caught MalformedURL with seis data_time.pl URL. This should never happen.",
@@ -0,0 +1,220 @@
+package edu.sc.seis.sod.util.time;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.sc.seis.sod.model.common.TimeRange;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.model.seismogram.RequestFilter;
+import edu.sc.seis.sod.model.station.ChannelIdUtil;
+
+/**
+ * Coverage per channel that can be added to as data arrives and asked what is
+ * still missing, the incremental form of CoverageTool.notCovered. Each
+ * channel keeps its coverage as sorted, disjoint begin and end arrays of epoch
+ * nanoseconds, so a query is a binary search plus a walk over the k ranges
+ * that overlap the request. Ranges that overlap or touch are united as they
+ * are added, the same as ReduceTool.merge(TimeRange[]).
+ *
+ * Channels are keyed by ChannelIdUtil.toStringNoDates.
+ */
+public class CoverageIndex {
+
+    public void add(RequestFilter rf) {
+        getCoverage(ChannelIdUtil.toStringNoDates(rf.channelId), true).add(rf.startTime, rf.endTime);
+    }
+
+    public void add(LocalSeismogramImpl seis) {
+        getCoverage(ChannelIdUtil.toStringNoDates(seis.channel_id), true).add(seis.getBeginTime(), seis.getEndTime());
+    }
+
+    public void add(String channelKey, TimeRange range) {
+        getCoverage(channelKey, true).add(range.getBeginTime(), range.getEndTime());
+    }
+
+    /**
+     * @return the parts of the request filters that are not covered for their
+     *         channel
+     */
+    public RequestFilter[] notCovered(RequestFilter[] neededFilters) {
+        List<RequestFilter> out = new ArrayList<RequestFilter>();
+        for (RequestFilter rf : neededFilters) {
+            Coverage c = getCoverage(ChannelIdUtil.toStringNoDates(rf.channelId), false);
+            if (c == null) {
+                out.add(rf);
+            } else {
+                c.notCovered(rf, out);
+            }
+        }
+        return out.toArray(new RequestFilter[out.size()]);
+    }
+
+    public boolean isCovered(RequestFilter rf) {
+        Coverage c = getCoverage(ChannelIdUtil.toStringNoDates(rf.channelId), false);
+        return c != null && c.isCovered(rf.startTime, rf.endTime);
+    }
+
+    /**
+     * @return the coverage for the channel, or null if nothing has been added
+     *         for it and create is false
+     */
+    public Coverage getCoverage(String channelKey, boolean create) {
+        Coverage c = coverage.get(channelKey);
+        if (c == null && create) {
+            Coverage prev = coverage.putIfAbsent(channelKey, c = new Coverage());
+            if (prev != null) {
+                c = prev;
+            }
+        }
+        return c;
+    }
+
+    public int getNumChannels() {
+        return coverage.size();
+    }
+
+    /**
+     * Sorted disjoint time ranges for one channel. Adding a range shifts the
+     * arrays in place, appending in time order is constant time. The original
+     * Instants are kept next to the epoch nanoseconds, searches compare the
+     * longs and only look at the Instants for times that EpochNanos clamps, so
+     * sentinels like TimeUtils.future come back out unchanged.
+     */
+    public static class Coverage {
+
+        public Coverage() {
+            this(16);
+        }
+
+        public Coverage(int initialCapacity) {
+            int cap = Math.max(1, initialCapacity);
+            begins = new long[cap];
+            ends = new long[cap];
+            beginTimes = new Instant[cap];
+            endTimes = new Instant[cap];
+        }
+
+        public synchronized void add(Instant begin, Instant end) {
+            long b = EpochNanos.toNanos(begin);
+            long e = EpochNanos.toNanos(end);
+            // first range that ends at or after the new begin, it may touch
+            int first = firstEnding(b, begin, false);
+            // ranges from first up to last, exclusive, overlap or touch the new one
+            int last = first;
+            while (last < size && EpochNanos.compare(begins[last], beginTimes[last], e, end) <= 0) {
+                last++;
+            }
+            if (first < last) {
+                if (EpochNanos.compare(begins[first], beginTimes[first], b, begin) < 0) {
+                    b = begins[first];
+                    begin = beginTimes[first];
+                }
+                if (EpochNanos.compare(ends[last - 1], endTimes[last - 1], e, end) > 0) {
+                    e = ends[last - 1];
+                    end = endTimes[last - 1];
+                }
+            }
+            int removed = last - first;
+            if (removed == 0) {
+                if (size == begins.length) {
+                    begins = Arrays.copyOf(begins, size * 2);
+                    ends = Arrays.copyOf(ends, size * 2);
+                    beginTimes = Arrays.copyOf(beginTimes, size * 2);
+                    endTimes = Arrays.copyOf(endTimes, size * 2);
+                }
+                shift(first, first + 1, size - first);
+                size++;
+            } else if (removed > 1) {
+                shift(last, first + 1, size - last);
+                Arrays.fill(beginTimes, size - removed + 1, size, null);
+                Arrays.fill(endTimes, size - removed + 1, size, null);
+                size -= removed - 1;
+            }
+            begins[first] = b;
+            ends[first] = e;
+            beginTimes[first] = begin;
+            endTimes[first] = end;
+        }
+
+        /**
+         * Adds the parts of the request that are not covered to out.
+         */
+        public synchronized void notCovered(RequestFilter rf, List<RequestFilter> out) {
+            Instant rfStart = rf.startTime;
+            Instant rfEnd = rf.endTime;
+            long end = EpochNanos.toNanos(rfEnd);
+            // ranges ending at or before the start cannot overlap
+            for (int j = firstEnding(EpochNanos.toNanos(rfStart), rfStart, true); j < size
+                    && EpochNanos.compare(begins[j], beginTimes[j], end, rfEnd) < 0; j++) {
+                if (beginTimes[j].isAfter(rfStart)) {
+                    out.add(new RequestFilter(rf.channelId, rfStart, beginTimes[j]));
+                }
+                rfStart = endTimes[j];
+                if ( ! rfStart.isBefore(rfEnd)) {
+                    break;
+                }
+            }
+            if (rfEnd.isAfter(rfStart)) {
+                out.add(new RequestFilter(rf.channelId, rfStart, rfEnd));
+            }
+        }
+
+        public synchronized boolean isCovered(Instant begin, Instant end) {
+            int i = firstEnding(EpochNanos.toNanos(end), end, false);
+            return i < size && ! beginTimes[i].isAfter(begin);
+        }
+
+        public synchronized int size() {
+            return size;
+        }
+
+        public synchronized List<TimeRange> getRanges() {
+            List<TimeRange> out = new ArrayList<TimeRange>(size);
+            for (int i = 0; i < size; i++) {
+                out.add(new TimeRange(beginTimes[i], endTimes[i]));
+            }
+            return out;
+        }
+
+        /**
+         * @return the first range ending at or after the time, or strictly
+         *         after it if after is true
+         */
+        private int firstEnding(long time, Instant instant, boolean after) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = EpochNanos.compare(ends[mid], endTimes[mid], time, instant);
+                if (c < 0 || (after && c == 0)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private void shift(int from, int to, int length) {
+            System.arraycopy(begins, from, begins, to, length);
+            System.arraycopy(ends, from, ends, to, length);
+            System.arraycopy(beginTimes, from, beginTimes, to, length);
+            System.arraycopy(endTimes, from, endTimes, to, length);
+        }
+
+        private long[] begins;
+
+        private long[] ends;
+
+        private Instant[] beginTimes;
+
+        private Instant[] endTimes;
+
+        private int size = 0;
+    }
+
+    private ConcurrentHashMap<String, Coverage> coverage = new ConcurrentHashMap<String, Coverage>();
+}
@@ -1,6 +1,5 @@
 package edu.sc.seis.sod.util.time;
 
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -51,38 +50,25 @@ public class CoverageTool {
 
     public static RequestFilter[] notCovered(RequestFilter[] filters,
                                              TimeRange[] timeRanges) {
-        List unsatisfied = new ArrayList();
-        timeRanges = ReduceTool.merge(timeRanges);
-        timeRanges = SortTool.byBeginTimeAscending(timeRanges);
+        timeRanges = SortTool.byBeginTimeAscending(timeRanges.clone());
+        CoverageIndex.Coverage coverage = new CoverageIndex.Coverage(timeRanges.length);
+        for(int i = 0; i < timeRanges.length; i++) {
+            coverage.add(timeRanges[i].getBeginTime(), timeRanges[i].getEndTime());
+        }
+        return notCovered(filters, coverage);
+    }
+
+    /**
+     * Same as notCovered(RequestFilter[], TimeRange[]) but against coverage
+     * that can be kept and added to between calls.
+     */
+    public static RequestFilter[] notCovered(RequestFilter[] filters,
+                                             CoverageIndex.Coverage coverage) {
+        List<RequestFilter> unsatisfied = new ArrayList<RequestFilter>();
         for(int i = 0; i < filters.length; i++) {
-            Instant rfStart = filters[i].startTime;
-            Instant rfEnd = filters[i].endTime;
-            for(int j = 0; j < timeRanges.length; j++) {
-                Instant trStart = timeRanges[j].getBeginTime();
-                Instant trEnd = timeRanges[j].getEndTime();
-                if(trStart.isBefore(rfEnd)) {
-                    if(trEnd.isAfter(rfStart)) {
-                        if(ReduceTool.equalsOrBefore(trStart, rfStart)) {
-                            rfStart = trEnd;
-                        } else {
-                            unsatisfied.add(new RequestFilter(filters[i].channelId,
-                                                              rfStart,
-                                                              trStart));
-                            rfStart = trEnd;
-                        }
-                        if(ReduceTool.equalsOrAfter(trEnd, rfEnd)) {
-                            break;
-                        }
-                    }
-                }
-            }
-            if(rfEnd.isAfter(rfStart)) {
-                unsatisfied.add(new RequestFilter(filters[i].channelId,
-                                                  rfStart,
-                                                  rfEnd));
-            }
+            coverage.notCovered(filters[i], unsatisfied);
         }
-        return (RequestFilter[])unsatisfied.toArray(new RequestFilter[unsatisfied.size()]);
+        return unsatisfied.toArray(new RequestFilter[unsatisfied.size()]);
     }
 
     public static RequestFilter[] notCoveredIgnoreGaps(RequestFilter[] filters,
@@ -0,0 +1,92 @@
+package edu.sc.seis.sod.util.time;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Conversion between Instant and nanoseconds since the epoch as a long, for
+ * keeping times in primitive arrays. A long holds about 292 years either side
+ * of 1970, times outside of that, like TimeUtils.wayPast and wayFuture, are
+ * clamped to Long.MIN_VALUE and Long.MAX_VALUE, which still sort correctly.
+ */
+public class EpochNanos {
+
+    public static long toNanos(Instant time) {
+        long seconds = time.getEpochSecond();
+        if (seconds >= MAX_SECONDS) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds <= MIN_SECONDS) {
+            return Long.MIN_VALUE;
+        }
+        return seconds * NANOS_PER_SECOND + time.getNano();
+    }
+
+    /**
+     * Nanoseconds in the duration, clamped the same way as toNanos.
+     */
+    public static long toNanos(Duration duration) {
+        long seconds = duration.getSeconds();
+        if (seconds >= MAX_SECONDS) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds <= MIN_SECONDS) {
+            return Long.MIN_VALUE;
+        }
+        return seconds * NANOS_PER_SECOND + duration.getNano();
+    }
+
+    /**
+     * Inverse of toNanos, except that clamped values do not give back the
+     * original time.
+     */
+    public static Instant toInstant(long nanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND), Math.floorMod(nanos, NANOS_PER_SECOND));
+    }
+
+    /**
+     * True if the value is one that toNanos clamps to, so it may stand for
+     * more than one time.
+     */
+    public static boolean isClamped(long nanos) {
+        return nanos == Long.MAX_VALUE || nanos == Long.MIN_VALUE;
+    }
+
+    /**
+     * Compares two times by their nanoseconds, going back to the Instants only
+     * when both were clamped to the same value. This keeps the speed of
+     * comparing longs while still ordering times outside of the range a long
+     * can hold, like TimeUtils.future and wayPast.
+     */
+    public static int compare(long a, Instant aTime, long b, Instant bTime) {
+        if (a != b) {
+            return a < b ? -1 : 1;
+        }
+        return isClamped(a) ? aTime.compareTo(bTime) : 0;
+    }
+
+    /** a + b, saturating at Long.MIN_VALUE and Long.MAX_VALUE instead of overflowing */
+    public static long add(long a, long b) {
+        long r = a + b;
+        // overflow only if both have the same sign and the result does not
+        if (((a ^ r) & (b ^ r)) < 0) {
+            return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return r;
+    }
+
+    /** a - b, saturating at Long.MIN_VALUE and Long.MAX_VALUE instead of overflowing */
+    public static long subtract(long a, long b) {
+        long r = a - b;
+        if (((a ^ b) & (a ^ r)) < 0) {
+            return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return r;
+    }
+
+    static final long NANOS_PER_SECOND = 1000000000L;
+
+    static final long MAX_SECONDS = Long.MAX_VALUE / NANOS_PER_SECOND;
+
+    static final long MIN_SECONDS = Long.MIN_VALUE / NANOS_PER_SECOND;
+}
@@ -0,0 +1,276 @@
+package edu.sc.seis.sod.util.time;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import edu.sc.seis.sod.model.common.TimeRange;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.model.seismogram.PlottableChunk;
+import edu.sc.seis.sod.model.seismogram.RequestFilter;
+import edu.sc.seis.sod.model.station.ChannelIdUtil;
+
+/**
+ * Gap and overlap statistics for one channel, made with a single pass over
+ * the segments sorted by begin time. Use the static analyze methods to get a
+ * report per channel from a collection of seismograms, request filters or
+ * plottable chunks.
+ *
+ * A seismogram covers from its begin time to one sample period after its last
+ * sample, and the next one is contiguous if it starts within half a sample of
+ * that. Request filters and plottable chunks are contiguous only when one
+ * begins where the previous ends, allowing one microsecond for plottable
+ * chunks the same as RangeTool.areContiguous. Durations saturate at about
+ * 292 years for ranges that reach TimeUtils.wayPast or future.
+ */
+public class GapReport {
+
+    GapReport(String channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @return reports keyed by ChannelIdUtil.toStringNoDates
+     */
+    public static Map<String, GapReport> analyze(Collection<LocalSeismogramImpl> seismograms) {
+        Map<String, Accumulator> byChannel = new TreeMap<String, Accumulator>();
+        for (LocalSeismogramImpl seis : seismograms) {
+            String key = ChannelIdUtil.toStringNoDates(seis.channel_id);
+            Accumulator acc = getAccumulator(byChannel, key);
+            Duration period = seis.getSampling().getPeriod();
+            acc.add(EpochNanos.toNanos(seis.getBeginTime()),
+                    EpochNanos.toNanos(seis.getEndTime().plus(period)),
+                    EpochNanos.add(EpochNanos.toNanos(period) / 2, MICROSECOND));
+        }
+        return finish(byChannel);
+    }
+
+    public static Map<String, GapReport> analyzeRequestFilters(Collection<RequestFilter> filters) {
+        Map<String, Accumulator> byChannel = new TreeMap<String, Accumulator>();
+        for (RequestFilter rf : filters) {
+            String key = ChannelIdUtil.toStringNoDates(rf.channelId);
+            getAccumulator(byChannel, key).add(EpochNanos.toNanos(rf.startTime), EpochNanos.toNanos(rf.endTime), 0);
+        }
+        return finish(byChannel);
+    }
+
+    /**
+     * Chunks are keyed by network.station.site.channel and pixels per day, as
+     * different resolutions of the same channel are separate data.
+     */
+    public static Map<String, GapReport> analyzePlottables(Collection<PlottableChunk> chunks) {
+        Map<String, Accumulator> byChannel = new TreeMap<String, Accumulator>();
+        for (PlottableChunk chunk : chunks) {
+            String key = chunk.getNetworkCode() + "." + chunk.getStationCode() + "." + chunk.getSiteCode() + "."
+                    + chunk.getChannelCode() + " " + chunk.getPixelsPerDay();
+            getAccumulator(byChannel, key).add(EpochNanos.toNanos(chunk.getBeginTime()),
+                                               EpochNanos.toNanos(chunk.getEndTime()),
+                                               MICROSECOND);
+        }
+        return finish(byChannel);
+    }
+
+    private static Accumulator getAccumulator(Map<String, Accumulator> byChannel, String key) {
+        Accumulator acc = byChannel.get(key);
+        if (acc == null) {
+            acc = new Accumulator();
+            byChannel.put(key, acc);
+        }
+        return acc;
+    }
+
+    private static Map<String, GapReport> finish(Map<String, Accumulator> byChannel) {
+        Map<String, GapReport> out = new TreeMap<String, GapReport>();
+        for (Map.Entry<String, Accumulator> entry : byChannel.entrySet()) {
+            out.put(entry.getKey(), entry.getValue().sweep(entry.getKey()));
+        }
+        return out;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public int getNumSegments() {
+        return numSegments;
+    }
+
+    public Instant getBeginTime() {
+        return EpochNanos.toInstant(begin);
+    }
+
+    public Instant getEndTime() {
+        return EpochNanos.toInstant(end);
+    }
+
+    public int getGapCount() {
+        return gapCount;
+    }
+
+    public Duration getTotalGap() {
+        return Duration.ofNanos(totalGap);
+    }
+
+    public Duration getLargestGap() {
+        return Duration.ofNanos(largestGap);
+    }
+
+    /** begin of the largest gap, null if there are no gaps */
+    public Instant getLargestGapBegin() {
+        return gapCount == 0 ? null : EpochNanos.toInstant(largestGapBegin);
+    }
+
+    public int getOverlapCount() {
+        return overlaps.size();
+    }
+
+    public Duration getTotalOverlap() {
+        return Duration.ofNanos(totalOverlap);
+    }
+
+    /** the time spans covered more than once, in time order */
+    public List<TimeRange> getOverlaps() {
+        return Collections.unmodifiableList(overlaps);
+    }
+
+    /**
+     * @return percent of the time from the first begin to the last end that
+     *         has data
+     */
+    public double getPercentAvailable() {
+        if (end <= begin) {
+            return numSegments == 0 ? 0 : 100;
+        }
+        // in double, end - begin overflows a long for clamped times
+        return Math.min(100, 100.0 * covered / ((double)end - (double)begin));
+    }
+
+    @Override
+    public String toString() {
+        return channel + " segments: " + numSegments + " gaps: " + gapCount + " total gap: " + getTotalGap()
+                + " largest gap: " + getLargestGap() + " overlaps: " + getOverlapCount() + " total overlap: "
+                + getTotalOverlap() + " available: " + String.format("%.2f", getPercentAvailable()) + "%";
+    }
+
+    /**
+     * Collects the ranges for one channel until the sweep. Each range has its
+     * own tolerance, so seismograms at different sample rates on the same
+     * channel are each judged by their own sample period. The arithmetic
+     * saturates, as clamped times like TimeUtils.wayPast and future are near
+     * the ends of a long.
+     */
+    static class Accumulator {
+
+        void add(long begin, long end, long tolerance) {
+            if (size == begins.length) {
+                begins = Arrays.copyOf(begins, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                tolerances = Arrays.copyOf(tolerances, size * 2);
+            }
+            begins[size] = begin;
+            ends[size] = end;
+            tolerances[size] = tolerance;
+            size++;
+        }
+
+        GapReport sweep(String channel) {
+            GapReport r = new GapReport(channel);
+            r.numSegments = size;
+            if (size == 0) {
+                return r;
+            }
+            int[] order = sortOrder();
+            r.begin = begins[order[0]];
+            long coveredEnd = ends[order[0]];
+            r.covered = (double)coveredEnd - (double)r.begin;
+            for (int k = 1; k < size; k++) {
+                int i = order[k];
+                long b = begins[i];
+                long e = ends[i];
+                long tolerance = tolerances[i];
+                if (b > EpochNanos.add(coveredEnd, tolerance)) {
+                    long gap = EpochNanos.subtract(b, coveredEnd);
+                    r.gapCount++;
+                    r.totalGap = EpochNanos.add(r.totalGap, gap);
+                    if (gap > r.largestGap) {
+                        r.largestGap = gap;
+                        r.largestGapBegin = coveredEnd;
+                    }
+                } else if (b < EpochNanos.subtract(coveredEnd, tolerance)) {
+                    long overlapEnd = Math.min(e, coveredEnd);
+                    r.totalOverlap = EpochNanos.add(r.totalOverlap, EpochNanos.subtract(overlapEnd, b));
+                    r.overlaps.add(new TimeRange(EpochNanos.toInstant(b), EpochNanos.toInstant(overlapEnd)));
+                }
+                if (e > coveredEnd) {
+                    r.covered += (double)e - (double)Math.max(b, coveredEnd);
+                    coveredEnd = e;
+                }
+            }
+            r.end = coveredEnd;
+            return r;
+        }
+
+        /**
+         * Indices by begin then end, without boxing. SortTool.sortOrder orders
+         * by begin, then the few runs with equal begins are put in end order
+         * with an insertion sort.
+         */
+        int[] sortOrder() {
+            int[] order = SortTool.sortOrder(Arrays.copyOf(begins, size), null, false);
+            int runStart = 0;
+            for (int k = 1; k <= size; k++) {
+                if (k < size && begins[order[k]] == begins[order[runStart]]) {
+                    continue;
+                }
+                for (int i = runStart + 1; i < k; i++) {
+                    int item = order[i];
+                    int j = i;
+                    while (j > runStart && ends[order[j - 1]] > ends[item]) {
+                        order[j] = order[j - 1];
+                        j--;
+                    }
+                    order[j] = item;
+                }
+                runStart = k;
+            }
+            return order;
+        }
+
+        private long[] begins = new long[16];
+
+        private long[] ends = new long[16];
+
+        private long[] tolerances = new long[16];
+
+        private int size = 0;
+    }
+
+    private String channel;
+
+    private int numSegments = 0;
+
+    private long begin, end;
+
+    /** in double, like the percent it is used for, as it can pass Long.MAX_VALUE */
+    private double covered = 0;
+
+    private int gapCount = 0;
+
+    private long totalGap = 0;
+
+    private long largestGap = 0;
+
+    private long largestGapBegin;
+
+    private long totalOverlap = 0;
+
+    private List<TimeRange> overlaps = new ArrayList<TimeRange>();
+
+    static final long MICROSECOND = 1000;
+}
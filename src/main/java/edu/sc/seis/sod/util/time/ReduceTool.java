@@ -1,9 +1,15 @@
 package edu.sc.seis.sod.util.time;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import edu.sc.seis.seisFile.TimeUtils;
 import edu.sc.seis.sod.model.common.FissuresException;
@@ -37,24 +43,41 @@ public class ReduceTool {
     throw new RuntimeException("Use Cut.cutOverlap");
     }
     
+    /**
+     * Removes seismograms whose time range is contained in the time range of
+     * another seismogram for the same channel. Of several with exactly the
+     * same range, one is kept.
+     *
+     * Sorts by begin time ascending and then end time descending, so anything
+     * that could contain a seismogram comes before it, and keeps the latest
+     * end time seen so far for each channel. A seismogram ending at or before
+     * that is contained. The input array is not changed.
+     *
+     * The result is in begin time order, ties by end time latest first, and
+     * of several with the same range the first in the input is kept. This
+     * used to sort the input array in place by length and return the
+     * survivors shortest first, and also compared seismograms of different
+     * channels, so a short seismogram on one channel could be dropped because
+     * of a longer one on another.
+     */
     public static LocalSeismogramImpl[] removeContained(LocalSeismogramImpl[] seis) {
-        SortTool.byLengthAscending(seis);
-        List results = new ArrayList();
-        for(int i = 0; i < seis.length; i++) {
-            Instant iEnd = seis[i].getEndTime();
-            Instant iBegin = seis[i].getBeginTime();
-            boolean contained = false;
-            for(int j = i + 1; j < seis.length && !contained; j++) {
-                if(equalsOrAfter(iBegin, seis[j].getBeginTime())
-                        && equalsOrBefore(iEnd, seis[j].getEndTime())) {
-                    contained = true;
-                }
-            }
-            if(!contained) {
-                results.add(seis[i]);
+        LocalSeismogramImpl[] sorted = seis.clone();
+        // stable sorts, so sort by the secondary key first
+        SortTool.sortByTimeDescending(sorted, s -> s.getEndTime());
+        SortTool.sortByTime(sorted, s -> s.getBeginTime());
+        Map<String, Instant> maxEndByChannel = new HashMap<String, Instant>();
+        List<LocalSeismogramImpl> results = new ArrayList<LocalSeismogramImpl>();
+        for(LocalSeismogramImpl s : sorted) {
+            String key = ChannelIdUtil.toStringNoDates(s.channel_id);
+            Instant maxEnd = maxEndByChannel.get(key);
+            if(maxEnd != null && !s.getEndTime().isAfter(maxEnd)) {
+                // begins no earlier and ends no later than one already seen
+                continue;
             }
+            maxEndByChannel.put(key, s.getEndTime());
+            results.add(s);
         }
-        return (LocalSeismogramImpl[])results.toArray(new LocalSeismogramImpl[0]);
+        return results.toArray(new LocalSeismogramImpl[0]);
     }
 
     /**
@@ -73,28 +96,77 @@ public class ReduceTool {
         return new RFMerger().merge(ranges);
     }
 
+    /**
+     * Cuts each request filter to each window for the same channel that it
+     * overlaps. Filters entirely inside a window are kept as they are, a
+     * filter that only touches a window, like one ending exactly at the
+     * window's begin, is left out. A filter overlapping several windows is
+     * cut to each of them.
+     *
+     * This used to cut filters of every channel to every window and return
+     * them in the order of the window list. Now a filter is only cut to
+     * windows of its own channel, and the results are grouped by channel, in
+     * order of each channel's first window, and in window begin time order
+     * within a channel.
+     */
     public static List<RequestFilter> trimTo(List<RequestFilter> rfList, List<RequestFilter> windowList) {
+        return trimTo(rfList, windowList, false);
+    }
+
+    /**
+     * Both lists are split by channel and each channel is trimmed by walking
+     * its filters and windows in begin time order. With parallel the channels
+     * are done concurrently on the common fork join pool. Results are grouped
+     * by channel, in window order within a channel.
+     */
+    public static List<RequestFilter> trimTo(List<RequestFilter> rfList,
+                                             List<RequestFilter> windowList,
+                                             boolean parallel) {
+        final Map<String, List<RequestFilter>> rfByChannel = groupByChannel(rfList);
+        final Map<String, List<RequestFilter>> windowByChannel = groupByChannel(windowList);
+        List<String> keys = new ArrayList<String>(windowByChannel.keySet());
+        keys.retainAll(rfByChannel.keySet());
+        Stream<String> keyStream = parallel ? keys.parallelStream() : keys.stream();
+        return keyStream.map(key -> trimChannelTo(rfByChannel.get(key), windowByChannel.get(key)))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * trimTo for filters and windows all from one channel.
+     */
+    static List<RequestFilter> trimChannelTo(List<RequestFilter> rfList, List<RequestFilter> windowList) {
+        RequestFilter[] rfs = SortTool.byBeginTimeAscending(rfList.toArray(new RequestFilter[0]));
+        RequestFilter[] windows = SortTool.byBeginTimeAscending(windowList.toArray(new RequestFilter[0]));
+        // latest end time so far, only ever increases so the first filter
+        // that can reach a window moves forward as the windows do
+        Instant[] maxEnd = new Instant[rfs.length];
+        for(int i = 0; i < rfs.length; i++) {
+            maxEnd[i] = (i == 0 || rfs[i].endTime.isAfter(maxEnd[i - 1])) ? rfs[i].endTime : maxEnd[i - 1];
+        }
         List<RequestFilter> out = new ArrayList<RequestFilter>();
-        for (RequestFilter window : windowList) {
+        int first = 0;
+        for(RequestFilter window : windows) {
             Instant windowStart = window.startTime;
             Instant windowEnd = window.endTime;
-            for (RequestFilter rf : rfList) {
+            while(first < rfs.length && maxEnd[first].isBefore(windowStart)) {
+                first++;
+            }
+            for(int i = first; i < rfs.length && !rfs[i].startTime.isAfter(windowEnd); i++) {
+                RequestFilter rf = rfs[i];
                 Instant rfStart = rf.startTime;
                 Instant rfEnd = rf.endTime;
-                if ((rfStart.isAfter(windowStart) || rfStart.equals(windowStart))
-                        && (rfEnd.isBefore(windowEnd) || rfEnd.equals(windowEnd))) {
+                if(!rfStart.isBefore(windowStart) && !rfEnd.isAfter(windowEnd)) {
                     // good, totally contained
                     out.add(rf);
-                } else if (rfEnd.isBefore(windowStart) || rfEnd.equals(windowStart)) {
-                    // bad, completely before window
-                } else if (rfStart.isAfter(windowEnd) || rfStart.equals(windowEnd)) {
-                    // bad, completely after window
+                } else if(!rfEnd.isAfter(windowStart) || !rfStart.isBefore(windowEnd)) {
+                    // bad, touches but does not overlap window
                 } else {
                     // some overlap
-                    if (rfStart.isBefore(windowStart)) {
+                    if(rfStart.isBefore(windowStart)) {
                         rfStart = windowStart;
                     }
-                    if (rfEnd.isAfter(windowEnd)) {
+                    if(rfEnd.isAfter(windowEnd)) {
                         rfEnd = windowEnd;
                     }
                     out.add(new RequestFilter(rf.channelId, rfStart, rfEnd));
@@ -104,6 +176,20 @@ public class ReduceTool {
         return out;
     }
 
+    private static Map<String, List<RequestFilter>> groupByChannel(List<RequestFilter> rfList) {
+        Map<String, List<RequestFilter>> out = new LinkedHashMap<String, List<RequestFilter>>();
+        for(RequestFilter rf : rfList) {
+            String key = ChannelIdUtil.toStringNoDates(rf.channelId);
+            List<RequestFilter> group = out.get(key);
+            if(group == null) {
+                group = new ArrayList<RequestFilter>();
+                out.put(key, group);
+            }
+            group.add(rf);
+        }
+        return out;
+    }
+
     /**
      * Unites all ranges in the given array into a single range if they're
      * contiguous or overlapping
@@ -131,104 +217,238 @@ public class ReduceTool {
         RFMerger rfm = new RFMerger();
         RequestFilter out = rf[0];
         for (int i = 1; i < rf.length; i++) {
-            out = (RequestFilter)rfm.merge(out, rf[i]);
+            out = rfm.merge(out, rf[i]);
         }
         return out;
     }
 
-    private static abstract class Merger {
+    /**
+     * Merges by sweeping, items are grouped by a key computed once per item,
+     * each group is sorted by begin time and then walked once. An item that
+     * ends more than getReach before the begin of the current item can never
+     * merge with anything later, so only the few items still within reach are
+     * compared against each new one.
+     *
+     * The results are the same as the pairwise loop this replaced. Each
+     * result comes out at the position of the last input merged into it, and
+     * merge is always passed the earlier input first, so where merged items
+     * overlap the later input wins. The one difference is that the pairwise
+     * loop could miss a merge that only became possible after a later merge,
+     * the sweep finds those.
+     */
+    private static abstract class Merger<T> {
+
+        public abstract T merge(T one, T two);
+
+        public abstract boolean shouldMerge(T one, T two);
+
+        protected abstract Instant getBeginTime(T item);
+
+        protected abstract Instant getEndTime(T item);
+
+        /**
+         * Items with different keys are never merged.
+         */
+        protected String getGroupKey(T item) {
+            return "";
+        }
+
+        /**
+         * How far after the end of the item the next may begin and still be
+         * merged with it.
+         */
+        protected Duration getReach(T item) {
+            return Duration.ZERO;
+        }
 
-        public abstract Object merge(Object one, Object two);
+        public List<T> internalMerge(List<T> items) {
+            int[] group = new int[items.size()];
+            int[] order = sweepOrder(items, group);
+            Object[] byLast = new Object[items.size()];
+            List<Merged<T>> active = new ArrayList<Merged<T>>();
+            for(int k = 0; k < order.length; k++) {
+                int index = order[k];
+                if(k > 0 && group[index] != group[order[k - 1]]) {
+                    finish(active, byLast);
+                }
+                T item = items.get(index);
+                Instant begin = getBeginTime(item);
+                boolean merged = false;
+                int i = 0;
+                while(i < active.size()) {
+                    Merged<T> prev = active.get(i);
+                    if(getEndTime(prev.value).plus(getReach(prev.value)).isBefore(begin)) {
+                        byLast[prev.last] = prev.value;
+                        active.remove(i);
+                        continue;
+                    }
+                    if(!merged && shouldMerge(prev.value, item)) {
+                        if(prev.last < index) {
+                            prev.value = merge(prev.value, item);
+                            prev.last = index;
+                        } else {
+                            prev.value = merge(item, prev.value);
+                        }
+                        merged = true;
+                    }
+                    i++;
+                }
+                if(!merged) {
+                    active.add(new Merged<T>(item, index));
+                }
+            }
+            finish(active, byLast);
+            return inInputOrder(byLast);
+        }
 
-        public abstract boolean shouldMerge(Object one, Object two);
+        private void finish(List<Merged<T>> active, Object[] byLast) {
+            for(Merged<T> m : active) {
+                byLast[m.last] = m.value;
+            }
+            active.clear();
+        }
 
-        public Object[] internalMerge(Object[] chunks,
-                                      Object[] resultantTypeArray) {
-            chunks = (Object[])chunks.clone();
-            for(int i = 0; i < chunks.length; i++) {
-                Object chunk = chunks[i];
-                for(int j = i + 1; j < chunks.length; j++) {
-                    Object chunk2 = chunks[j];
-                    if(shouldMerge(chunk, chunk2)) {
-                        chunks[j] = merge(chunk, chunk2);
-                        chunks[i] = null;
-                        break;
+        /**
+         * The indices of the items grouped by getGroupKey, groups in order of
+         * first appearance, and by begin time within a group, equal begin
+         * times in input order. group is filled with each item's group number.
+         */
+        protected int[] sweepOrder(List<T> items, int[] group) {
+            int n = items.size();
+            Map<String, Integer> groupNumbers = new HashMap<String, Integer>();
+            long[] beginKeys = new long[n];
+            Comparable<?>[] exact = null;
+            for(int i = 0; i < n; i++) {
+                T item = items.get(i);
+                String key = getGroupKey(item);
+                Integer g = groupNumbers.get(key);
+                if(g == null) {
+                    g = groupNumbers.size();
+                    groupNumbers.put(key, g);
+                }
+                group[i] = g;
+                Instant begin = getBeginTime(item);
+                beginKeys[i] = EpochNanos.toNanos(begin);
+                if(EpochNanos.isClamped(beginKeys[i])) {
+                    if(exact == null) {
+                        exact = new Comparable<?>[n];
                     }
+                    exact[i] = begin;
                 }
             }
-            List results = new ArrayList();
-            for(int i = 0; i < chunks.length; i++) {
-                if(chunks[i] != null) {
-                    results.add(chunks[i]);
+            int[] byBegin = SortTool.sortOrder(beginKeys, exact, false);
+            // stable counting sort of the begin order by group
+            int[] start = new int[groupNumbers.size() + 1];
+            for(int i = 0; i < n; i++) {
+                start[group[i] + 1]++;
+            }
+            for(int g = 1; g < start.length; g++) {
+                start[g] += start[g - 1];
+            }
+            int[] order = new int[n];
+            for(int index : byBegin) {
+                order[start[group[index]]++] = index;
+            }
+            return order;
+        }
+
+        protected List<T> inInputOrder(Object[] byLast) {
+            List<T> results = new ArrayList<T>();
+            for(Object o : byLast) {
+                if(o != null) {
+                    @SuppressWarnings("unchecked")
+                    T item = (T)o;
+                    results.add(item);
                 }
             }
-            return results.toArray(resultantTypeArray);
+            return results;
         }
     }
 
-    private static class MSTRMerger extends Merger {
+    /**
+     * A merge result in progress and the index of the last input in it.
+     */
+    private static class Merged<T> {
+
+        Merged(T value, int last) {
+            this.value = value;
+            this.last = last;
+        }
+
+        T value;
 
-        public Object merge(Object one, Object two) {
-            return new TimeRange(cast(one), cast(two));
+        int last;
+    }
+
+    private static class MSTRMerger extends Merger<TimeRange> {
+
+        public TimeRange merge(TimeRange one, TimeRange two) {
+            return new TimeRange(one, two);
         }
 
-        public boolean shouldMerge(Object one, Object two) {
-            TimeRange o = (TimeRange)one;
-            TimeRange t = (TimeRange)two;
+        public boolean shouldMerge(TimeRange o, TimeRange t) {
             if(o.getBeginTime().isBefore(t.getBeginTime())) {
                 return !o.getEndTime().isBefore(t.getBeginTime());
             }
             return !t.getEndTime().isBefore(o.getBeginTime());
         }
 
-        public TimeRange cast(Object o) {
-            return (TimeRange)o;
+        protected Instant getBeginTime(TimeRange item) {
+            return item.getBeginTime();
+        }
+
+        protected Instant getEndTime(TimeRange item) {
+            return item.getEndTime();
         }
 
         public TimeRange[] merge(TimeRange[] ranges) {
-            return (TimeRange[])internalMerge(ranges,
-                                                         new TimeRange[0]);
+            return internalMerge(Arrays.asList(ranges)).toArray(new TimeRange[0]);
         }
-        
+
         public List<TimeRange> merge(List<TimeRange> chunks) {
-            return Arrays.asList((TimeRange[])internalMerge(chunks.toArray(),
-                                                   new TimeRange[0]));
+            return internalMerge(chunks);
         }
     }
 
-    private static class RFMerger extends Merger {
+    private static class RFMerger extends Merger<RequestFilter> {
 
-        public Object merge(Object one, Object two) {
-            RequestFilter orig = (RequestFilter)one;
-            TimeRange tr = new TimeRange(toMSTR(one),
-                                                               toMSTR(two));
-            return new RequestFilter(orig.channelId, tr.getBeginTime(), tr.getEndTime());
+        public RequestFilter merge(RequestFilter one, RequestFilter two) {
+            TimeRange tr = new TimeRange(toMSTR(one), toMSTR(two));
+            return new RequestFilter(one.channelId, tr.getBeginTime(), tr.getEndTime());
         }
 
-        protected String getChannelString(Object rf) {
-            return ChannelIdUtil.toStringNoDates(((RequestFilter)rf).channelId);
+        protected String getGroupKey(RequestFilter rf) {
+            return ChannelIdUtil.toStringNoDates(rf.channelId);
         }
 
-        public boolean shouldMerge(Object one, Object two) {
-            return getChannelString(one).equals(getChannelString(two))
-                    && (RangeTool.areOverlapping(toMSTR(one), toMSTR(two)) || RangeTool.areContiguous(toMSTR(one),
-                                                                                                      toMSTR(two)));
+        /**
+         * Only called within a group, so the channels are already known to
+         * match.
+         */
+        public boolean shouldMerge(RequestFilter one, RequestFilter two) {
+            TimeRange oneTR = toMSTR(one);
+            TimeRange twoTR = toMSTR(two);
+            return RangeTool.areOverlapping(oneTR, twoTR) || RangeTool.areContiguous(oneTR, twoTR);
         }
 
-        protected TimeRange toMSTR(Object o) {
-            return new TimeRange((RequestFilter)o);
+        protected Instant getBeginTime(RequestFilter item) {
+            return item.startTime;
         }
 
-        public RequestFilter[] merge(RequestFilter[] ranges) {
-            return (RequestFilter[])internalMerge(ranges, new RequestFilter[0]);
+        protected Instant getEndTime(RequestFilter item) {
+            return item.endTime;
         }
-    }
 
-    public static class LSMerger extends Merger {
+        protected TimeRange toMSTR(RequestFilter o) {
+            return new TimeRange(o);
+        }
 
-        public Object merge(Object one, Object two) {
-            return merge((LocalSeismogramImpl)one, (LocalSeismogramImpl)two);
+        public RequestFilter[] merge(RequestFilter[] ranges) {
+            return internalMerge(Arrays.asList(ranges)).toArray(new RequestFilter[0]);
         }
+    }
+
+    public static class LSMerger extends Merger<LocalSeismogramImpl> {
 
         public LocalSeismogramImpl merge(LocalSeismogramImpl seis,
                                          LocalSeismogramImpl seis2) {
@@ -323,31 +543,220 @@ public class ReduceTool {
             }
         }
 
-        public boolean shouldMerge(Object one, Object two) {
+        public boolean shouldMerge(LocalSeismogramImpl one, LocalSeismogramImpl two) {
             return getChannelString(one).equals(getChannelString(two))
-                    && (RangeTool.areContiguous((LocalSeismogramImpl)one,
-                                                (LocalSeismogramImpl)two) || toMSTR(one).equals(toMSTR(two)));
+                    && (RangeTool.areContiguous(one, two) || toMSTR(one).equals(toMSTR(two)));
+        }
+
+        protected String getGroupKey(LocalSeismogramImpl seis) {
+            return getChannelString(seis);
+        }
+
+        protected Instant getBeginTime(LocalSeismogramImpl item) {
+            return item.getBeginTime();
+        }
+
+        protected Instant getEndTime(LocalSeismogramImpl item) {
+            return item.getEndTime();
         }
 
-        protected String getChannelString(Object rf) {
-            return ChannelIdUtil.toStringNoDates(((LocalSeismogramImpl)rf).channel_id);
+        /**
+         * areContiguous allows the next to start up to one and a half samples
+         * after the end, use two to be safe.
+         */
+        protected Duration getReach(LocalSeismogramImpl item) {
+            return item.getSampling().getPeriod().multipliedBy(2);
         }
 
-        protected TimeRange toMSTR(Object o) {
-            return new TimeRange((LocalSeismogramImpl)o);
+        protected String getChannelString(LocalSeismogramImpl seis) {
+            return ChannelIdUtil.toStringNoDates(seis.channel_id);
+        }
+
+        protected TimeRange toMSTR(LocalSeismogramImpl o) {
+            return new TimeRange(o);
         }
 
         public LocalSeismogramImpl[] merge(LocalSeismogramImpl[] ranges) {
-            return (LocalSeismogramImpl[])internalMerge(ranges,
-                                                        new LocalSeismogramImpl[0]);
+            return internalMerge(Arrays.asList(ranges)).toArray(new LocalSeismogramImpl[0]);
+        }
+
+        /**
+         * Finds the runs of contiguous seismograms with the same sweep as the
+         * pairwise merge, but only keeps track of each run's span while
+         * sweeping and then joins each run with mergeAll, so each sample is
+         * copied once however many pieces there are. Results are in the same
+         * order as Merger.internalMerge.
+         */
+        public List<LocalSeismogramImpl> internalMerge(List<LocalSeismogramImpl> items) {
+            int[] group = new int[items.size()];
+            int[] order = sweepOrder(items, group);
+            Object[] byLast = new Object[items.size()];
+            List<Run> active = new ArrayList<Run>();
+            for(int k = 0; k < order.length; k++) {
+                int index = order[k];
+                if(k > 0 && group[index] != group[order[k - 1]]) {
+                    finish(active, byLast);
+                }
+                LocalSeismogramImpl item = items.get(index);
+                Instant begin = item.getBeginTime();
+                boolean merged = false;
+                int i = 0;
+                while(i < active.size()) {
+                    Run run = active.get(i);
+                    if(run.end.plus(run.period.multipliedBy(2)).isBefore(begin)) {
+                        byLast[run.last] = mergeAll(run.members);
+                        active.remove(i);
+                        continue;
+                    }
+                    if(!merged && run.accept(item, index)) {
+                        merged = true;
+                    }
+                    i++;
+                }
+                if(!merged) {
+                    active.add(new Run(item, index));
+                }
+            }
+            finish(active, byLast);
+            return inInputOrder(byLast);
+        }
+
+        private void finish(List<Run> active, Object[] byLast) {
+            for(Run run : active) {
+                byLast[run.last] = mergeAll(run.members);
+            }
+            active.clear();
+        }
+
+        /**
+         * Joins seismograms that are each contiguous with the one before,
+         * in time order. The total size is found first and the output
+         * allocated once. Encoded data is joined by concatenating the
+         * EncodedData arrays without decoding.
+         */
+        public LocalSeismogramImpl mergeAll(List<LocalSeismogramImpl> contiguous) {
+            if(contiguous.size() == 1) {
+                return contiguous.get(0);
+            }
+            LocalSeismogramImpl first = contiguous.get(0);
+            int numPoints = 0;
+            boolean allEncoded = true;
+            boolean allShort = true;
+            boolean allLong = true;
+            boolean allFloat = true;
+            for(LocalSeismogramImpl seis : contiguous) {
+                numPoints += seis.getNumPoints();
+                allEncoded &= seis.is_encoded();
+                allShort &= seis.can_convert_to_short();
+                allLong &= seis.can_convert_to_long();
+                allFloat &= seis.can_convert_to_float();
+            }
+            try {
+                if(allEncoded) {
+                    int numED = 0;
+                    for(LocalSeismogramImpl seis : contiguous) {
+                        numED += seis.get_as_encoded().length;
+                    }
+                    EncodedData[] outED = new EncodedData[numED];
+                    int pos = 0;
+                    for(LocalSeismogramImpl seis : contiguous) {
+                        EncodedData[] ed = seis.get_as_encoded();
+                        System.arraycopy(ed, 0, outED, pos, ed.length);
+                        pos += ed.length;
+                    }
+                    TimeSeriesDataSel td = new TimeSeriesDataSel();
+                    td.encoded_values(outED);
+                    LocalSeismogramImpl newSeis = new LocalSeismogramImpl(first, td);
+                    newSeis.num_points = numPoints;
+                    return newSeis;
+                }
+                int pos = 0;
+                if(allShort) {
+                    short[] outS = new short[numPoints];
+                    for(LocalSeismogramImpl seis : contiguous) {
+                        System.arraycopy(seis.get_as_shorts(), 0, outS, pos, seis.getNumPoints());
+                        pos += seis.getNumPoints();
+                    }
+                    return new LocalSeismogramImpl(first, outS);
+                } else if(allLong) {
+                    int[] outI = new int[numPoints];
+                    for(LocalSeismogramImpl seis : contiguous) {
+                        System.arraycopy(seis.get_as_longs(), 0, outI, pos, seis.getNumPoints());
+                        pos += seis.getNumPoints();
+                    }
+                    return new LocalSeismogramImpl(first, outI);
+                } else if(allFloat) {
+                    float[] outF = new float[numPoints];
+                    for(LocalSeismogramImpl seis : contiguous) {
+                        System.arraycopy(seis.get_as_floats(), 0, outF, pos, seis.getNumPoints());
+                        pos += seis.getNumPoints();
+                    }
+                    return new LocalSeismogramImpl(first, outF);
+                } else {
+                    double[] outD = new double[numPoints];
+                    for(LocalSeismogramImpl seis : contiguous) {
+                        System.arraycopy(seis.get_as_doubles(), 0, outD, pos, seis.getNumPoints());
+                        pos += seis.getNumPoints();
+                    }
+                    return new LocalSeismogramImpl(first, outD);
+                }
+            } catch(FissuresException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Seismograms found to be contiguous so far, and the span they cover.
+         */
+        private class Run {
+
+            Run(LocalSeismogramImpl seis, int index) {
+                members.add(seis);
+                last = index;
+                begin = seis.getBeginTime();
+                end = seis.getEndTime();
+                period = seis.getSampling().getPeriod();
+            }
+
+            /**
+             * Same test as shouldMerge against the seismogram the run would
+             * merge into: an identical time range is dropped, as merge
+             * returns the earlier one, a contiguous one is added.
+             */
+            boolean accept(LocalSeismogramImpl seis, int index) {
+                TimeRange span = new TimeRange(begin, end);
+                TimeRange seisRange = toMSTR(seis);
+                if(span.equals(seisRange)) {
+                    last = Math.max(last, index);
+                    return true;
+                }
+                if(RangeTool.areContiguous(new TimeRange(begin, end.plus(period.dividedBy(2))), seisRange, period)) {
+                    members.add(seis);
+                    last = Math.max(last, index);
+                    if(seis.getEndTime().isAfter(end)) {
+                        end = seis.getEndTime();
+                    }
+                    return true;
+                }
+                return false;
+            }
+
+            List<LocalSeismogramImpl> members = new ArrayList<LocalSeismogramImpl>();
+
+            /** index of the last input in the run, where the result goes */
+            int last;
+
+            Instant begin;
+
+            Instant end;
+
+            Duration period;
         }
     }
 
-    private static class PlottableChunkMerger extends Merger {
+    private static class PlottableChunkMerger extends Merger<PlottableChunk> {
 
-        public Object merge(Object one, Object two) {
-            PlottableChunk chunk = cast(one);
-            PlottableChunk chunk2 = cast(two);
+        public PlottableChunk merge(PlottableChunk chunk, PlottableChunk chunk2) {
             TimeRange fullRange = new TimeRange(chunk.getTimeRange(),
                                                                       chunk2.getTimeRange());
             int samples = (int)Math.floor(chunk.getPixelsPerDay() * 2
@@ -371,18 +780,26 @@ public class ReduceTool {
                                       chunk.getChannelCode());
         }
 
-        public boolean shouldMerge(Object one, Object two) {
-            return RangeTool.areContiguous(cast(one), cast(two))
-                    || RangeTool.areOverlapping(cast(one), cast(two));
+        public boolean shouldMerge(PlottableChunk one, PlottableChunk two) {
+            return RangeTool.areContiguous(one, two)
+                    || RangeTool.areOverlapping(one, two);
+        }
+
+        protected Instant getBeginTime(PlottableChunk item) {
+            return item.getBeginTime();
+        }
+
+        protected Instant getEndTime(PlottableChunk item) {
+            return item.getEndTime();
         }
 
-        private PlottableChunk cast(Object o) {
-            return (PlottableChunk)o;
+        /** areContiguous for chunks allows a gap just under a microsecond */
+        protected Duration getReach(PlottableChunk item) {
+            return Duration.ofNanos(1000);
         }
 
         public List<PlottableChunk> merge(List<PlottableChunk> chunks) {
-            return Arrays.asList((PlottableChunk[])internalMerge(chunks.toArray(),
-                                                   new PlottableChunk[0]));
+            return internalMerge(chunks);
         }
 
         public static int[] fill(TimeRange fullRange,
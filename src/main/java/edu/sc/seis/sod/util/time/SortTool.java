@@ -1,10 +1,12 @@
 package edu.sc.seis.sod.util.time;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 import edu.sc.seis.sod.model.common.TimeRange;
 import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
@@ -16,85 +18,216 @@ import edu.sc.seis.sod.model.seismogram.RequestFilter;
  */
 public class SortTool {
 
+    /**
+     * Sorts by getTimeInterval, the same measure SeisSizeSorter uses.
+     */
     public static LocalSeismogramImpl[] byLengthAscending(LocalSeismogramImpl[] seis) {
-        Arrays.sort(seis, new SeisSizeSorter());
-        return seis;
+        return sortByDuration(seis, s -> s.getTimeInterval());
     }
 
     /**
      * @return the seismograms in order of begin time
      */
     public static LocalSeismogramImpl[] byBeginTimeAscending(LocalSeismogramImpl[] seis) {
-        Arrays.sort(seis, new SeisBeginSorter());
-        return seis;
+        return sortByTime(seis, s -> s.getBeginTime());
     }
 
     public static List<PlottableChunk> byBeginTimeAscending(List<PlottableChunk> pc) {
-        Collections.sort(pc, new PCBeginSorter());
+        PlottableChunk[] sorted = byBeginTimeAscending(pc.toArray(new PlottableChunk[0]));
+        for (int i = 0; i < sorted.length; i++) {
+            pc.set(i, sorted[i]);
+        }
         return pc;
     }
 
     public static PlottableChunk[] byBeginTimeAscending(PlottableChunk[] pc) {
-        Arrays.sort(pc, new PCBeginSorter());
-        return pc;
+        return sortByTime(pc, c -> c.getBeginTime());
     }
 
     public static RequestFilter[] byBeginTimeAscending(RequestFilter[] rf) {
-        Arrays.sort(rf, new RFBeginSorter());
-        return rf;
+        return sortByTime(rf, r -> r.startTime);
     }
 
     public static TimeRange[] byBeginTimeAscending(TimeRange[] ranges) {
-        Arrays.sort(ranges, new MSTRBeginSorter());
-        return ranges;
+        return sortByTime(ranges, r -> r.getBeginTime());
     }
 
-    public static class SeisSizeSorter implements Comparator<LocalSeismogramImpl>  {
-
-        @Override
-        public int compare(LocalSeismogramImpl o1, LocalSeismogramImpl o2) {
-            return o1.getTimeInterval().compareTo(o2.getTimeInterval());
+    /**
+     * Stable sort of the array in place by a long key that is extracted once
+     * per element. See sortOrder for how the sort itself works.
+     */
+    public static <T> T[] sortByKey(T[] items, ToLongFunction<? super T> key) {
+        long[] keys = new long[items.length];
+        for (int i = 0; i < items.length; i++) {
+            keys[i] = key.applyAsLong(items[i]);
         }
+        return permute(items, sortOrder(keys, null, false));
     }
 
-    public static class AscendingTimeSorter implements Comparator<Instant> {
+    /**
+     * Stable sort in place by time, comparing EpochNanos keys and going back
+     * to the Instants only for times that EpochNanos clamps, so times after
+     * 2262 like TimeUtils.future still sort correctly.
+     */
+    public static <T> T[] sortByTime(T[] items, Function<? super T, Instant> time) {
+        return sortByTime(items, time, false);
+    }
 
-        @Override
-        public int compare(Instant o1, Instant o2) {
-            return o1.compareTo(o2);
+    /**
+     * Stable sort in place, latest time first. Items with equal times keep
+     * their order.
+     */
+    public static <T> T[] sortByTimeDescending(T[] items, Function<? super T, Instant> time) {
+        return sortByTime(items, time, true);
+    }
+
+    /**
+     * Stable sort in place by duration, exact for durations too long for
+     * EpochNanos the same as sortByTime.
+     */
+    public static <T> T[] sortByDuration(T[] items, Function<? super T, Duration> duration) {
+        long[] keys = new long[items.length];
+        Comparable<?>[] exact = null;
+        for (int i = 0; i < items.length; i++) {
+            Duration d = duration.apply(items[i]);
+            keys[i] = EpochNanos.toNanos(d);
+            if (EpochNanos.isClamped(keys[i])) {
+                exact = setExact(exact, items.length, i, d);
+            }
         }
+        return permute(items, sortOrder(keys, exact, false));
     }
 
-    private static class SeisBeginSorter  implements Comparator<LocalSeismogramImpl> {
+    private static <T> T[] sortByTime(T[] items, Function<? super T, Instant> time, boolean descending) {
+        long[] keys = new long[items.length];
+        Comparable<?>[] exact = null;
+        for (int i = 0; i < items.length; i++) {
+            Instant t = time.apply(items[i]);
+            keys[i] = EpochNanos.toNanos(t);
+            if (EpochNanos.isClamped(keys[i])) {
+                exact = setExact(exact, items.length, i, t);
+            }
+        }
+        return permute(items, sortOrder(keys, exact, descending));
+    }
 
-        @Override
-        public int compare(LocalSeismogramImpl o1, LocalSeismogramImpl o2) {
-            return o1.getBeginTime().compareTo(o2.getBeginTime());
+    /** the exact values are only kept for the rare clamped keys */
+    private static Comparable<?>[] setExact(Comparable<?>[] exact, int length, int i, Comparable<?> value) {
+        if (exact == null) {
+            exact = new Comparable<?>[length];
         }
+        exact[i] = value;
+        return exact;
     }
 
-    private static class PCBeginSorter implements Comparator<PlottableChunk> {
+    /**
+     * The stable order of the keys as indices into them, all on primitive
+     * arrays. Each key is replaced by its rank among the distinct keys, found
+     * by sorting a copy of the keys and a binary search, and the rank and the
+     * index are packed into one long, rank in the high half, so sorting the
+     * packed longs sorts by key and keeps equal keys in index order. Both
+     * sorts use Arrays.parallelSort above PARALLEL_THRESHOLD.
+     *
+     * @param exact
+     *            null, or the original values for clamped keys, used to order
+     *            keys that are equal only because they were clamped
+     */
+    static int[] sortOrder(long[] keys, Comparable<?>[] exact, boolean descending) {
+        int n = keys.length;
+        long[] distinct = keys.clone();
+        sort(distinct);
+        int numDistinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || distinct[i] != distinct[numDistinct - 1]) {
+                distinct[numDistinct++] = distinct[i];
+            }
+        }
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            long rank = Arrays.binarySearch(distinct, 0, numDistinct, keys[i]);
+            if (descending) {
+                rank = numDistinct - 1 - rank;
+            }
+            packed[i] = (rank << 32) | i;
+        }
+        sort(packed);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int)packed[i];
+        }
+        if (exact != null) {
+            // clamped keys are the lowest and highest, so are at the two ends
+            int lo = 0;
+            while (lo < n && keys[order[lo]] == keys[order[0]] && EpochNanos.isClamped(keys[order[0]])) {
+                lo++;
+            }
+            sortExact(order, 0, lo, exact, descending);
+            int hi = n;
+            while (hi > lo && keys[order[hi - 1]] == keys[order[n - 1]] && EpochNanos.isClamped(keys[order[n - 1]])) {
+                hi--;
+            }
+            sortExact(order, hi, n, exact, descending);
+        }
+        return order;
+    }
 
+    private static void sort(long[] a) {
+        if (a.length > PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(a);
+        } else {
+            Arrays.sort(a);
+        }
+    }
 
-        @Override
-        public int compare(PlottableChunk o1, PlottableChunk o2) {
-            return o1.getBeginTime().compareTo(o2.getBeginTime());
+    /**
+     * Stable insertion sort of order[from, to) by the exact values. These are
+     * only the items at a clamped key, usually few and often all equal.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void sortExact(int[] order, int from, int to, Comparable<?>[] exact, boolean descending) {
+        for (int i = from + 1; i < to; i++) {
+            int item = order[i];
+            Comparable value = exact[item];
+            int j = i;
+            while (j > from) {
+                int c = value.compareTo(exact[order[j - 1]]);
+                if (descending ? c <= 0 : c >= 0) {
+                    break;
+                }
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = item;
+        }
+    }
+
+    private static <T> T[] permute(T[] items, int[] order) {
+        Object[] original = items.clone();
+        for (int i = 0; i < order.length; i++) {
+            @SuppressWarnings("unchecked")
+            T item = (T)original[order[i]];
+            items[i] = item;
         }
+        return items;
     }
 
-    private static class RFBeginSorter  implements Comparator<RequestFilter> {
+    /** below this sequential sorting is faster than splitting the work */
+    public static final int PARALLEL_THRESHOLD = 8192;
+
+    public static class SeisSizeSorter implements Comparator<LocalSeismogramImpl>  {
 
         @Override
-        public int compare(RequestFilter o1, RequestFilter o2) {
-            return o1.startTime.compareTo(o2.startTime);
+        public int compare(LocalSeismogramImpl o1, LocalSeismogramImpl o2) {
+            return o1.getTimeInterval().compareTo(o2.getTimeInterval());
         }
     }
 
-    private static class MSTRBeginSorter implements Comparator<TimeRange> {
+    public static class AscendingTimeSorter implements Comparator<Instant> {
 
         @Override
-        public int compare(TimeRange o1, TimeRange o2) {
-            return o1.getBeginTime().compareTo(o2.getBeginTime());
+        public int compare(Instant o1, Instant o2) {
+            return o1.compareTo(o2);
         }
     }
+
 }
\ No newline at end of file
@@ -0,0 +1,472 @@
+package edu.sc.seis.sod.util.time;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.sc.seis.seisFile.TimeUtils;
+import edu.sc.seis.sod.model.common.TimeRange;
+import edu.sc.seis.sod.model.seismogram.RequestFilter;
+import edu.sc.seis.sod.model.station.ChannelId;
+import edu.sc.seis.sod.model.station.ChannelIdUtil;
+
+/**
+ * A set of time ranges held as parallel arrays of begin and end epoch
+ * nanoseconds plus a channel index, for working on very many ranges without an
+ * Instant and TimeRange per range. Each range takes 20 bytes. Conversion to and
+ * from RequestFilter and TimeRange happens only when building the set and
+ * getting results out, the operations in between work on the arrays.
+ *
+ * The operations mirror the static methods in ReduceTool, RangeTool and
+ * CoverageTool, but only ever combine ranges from the same channel. Ranges
+ * added without a channel have channel index NO_CHANNEL and are treated as
+ * one more channel. Each operation returns a new set, this one is not
+ * changed. Times outside of what EpochNanos can hold are clamped, and come
+ * back out as TimeUtils.wayPast or TimeUtils.future so the usual open ended
+ * ranges survive a trip through the set.
+ */
+public class TimeRangeSet {
+
+    public TimeRangeSet() {
+        this(16);
+    }
+
+    public TimeRangeSet(int initialCapacity) {
+        this(initialCapacity, new ChannelTable());
+    }
+
+    TimeRangeSet(int initialCapacity, ChannelTable channels) {
+        int cap = Math.max(1, initialCapacity);
+        begins = new long[cap];
+        ends = new long[cap];
+        channelIndex = new int[cap];
+        this.channels = channels;
+    }
+
+    public static TimeRangeSet fromRequestFilters(Collection<RequestFilter> filters) {
+        TimeRangeSet out = new TimeRangeSet(filters.size());
+        for (RequestFilter rf : filters) {
+            out.add(rf);
+        }
+        return out;
+    }
+
+    public static TimeRangeSet fromRequestFilters(RequestFilter[] filters) {
+        return fromRequestFilters(Arrays.asList(filters));
+    }
+
+    public static TimeRangeSet fromTimeRanges(TimeRange[] ranges) {
+        TimeRangeSet out = new TimeRangeSet(ranges.length);
+        for (TimeRange tr : ranges) {
+            out.add(tr);
+        }
+        return out;
+    }
+
+    public void add(RequestFilter rf) {
+        add(getChannelIndex(rf.channelId), EpochNanos.toNanos(rf.startTime), EpochNanos.toNanos(rf.endTime));
+    }
+
+    public void add(TimeRange tr) {
+        add(NO_CHANNEL, EpochNanos.toNanos(tr.getBeginTime()), EpochNanos.toNanos(tr.getEndTime()));
+    }
+
+    public void add(int channel, long begin, long end) {
+        if (size == begins.length) {
+            int cap = size * 2;
+            begins = Arrays.copyOf(begins, cap);
+            ends = Arrays.copyOf(ends, cap);
+            channelIndex = Arrays.copyOf(channelIndex, cap);
+        }
+        begins[size] = begin;
+        ends[size] = end;
+        channelIndex[size] = channel;
+        size++;
+    }
+
+    /**
+     * @return the index used for the channel in this set, adding it if it is
+     *         new. Channels are matched by ChannelIdUtil.toStringNoDates.
+     */
+    public int getChannelIndex(ChannelId chan) {
+        return channels.indexOf(chan);
+    }
+
+    /** the ChannelId for a channel index, or null for NO_CHANNEL */
+    public ChannelId getChannelId(int channel) {
+        return channel == NO_CHANNEL ? null : channels.ids.get(channel);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getBegin(int i) {
+        return begins[i];
+    }
+
+    public long getEnd(int i) {
+        return ends[i];
+    }
+
+    public int getChannel(int i) {
+        return channelIndex[i];
+    }
+
+    /**
+     * Ranges without a channel are skipped.
+     */
+    public List<RequestFilter> toRequestFilters() {
+        List<RequestFilter> out = new ArrayList<RequestFilter>(size);
+        for (int i = 0; i < size; i++) {
+            if (channelIndex[i] != NO_CHANNEL) {
+                out.add(new RequestFilter(getChannelId(channelIndex[i]),
+                                          toInstant(begins[i]),
+                                          toInstant(ends[i])));
+            }
+        }
+        return out;
+    }
+
+    public TimeRange[] toTimeRanges() {
+        TimeRange[] out = new TimeRange[size];
+        for (int i = 0; i < size; i++) {
+            out[i] = new TimeRange(toInstant(begins[i]), toInstant(ends[i]));
+        }
+        return out;
+    }
+
+    /**
+     * @return a copy sorted by channel index, then begin, then end
+     */
+    public TimeRangeSet sorted() {
+        int[] order = sortOrder();
+        TimeRangeSet out = new TimeRangeSet(size, channels.copy());
+        for (int i : order) {
+            out.add(channelIndex[i], begins[i], ends[i]);
+        }
+        return out;
+    }
+
+    /**
+     * Unites ranges on the same channel that overlap or touch, like
+     * ReduceTool.merge.
+     *
+     * @return sorted, disjoint ranges
+     */
+    public TimeRangeSet union() {
+        return union(0);
+    }
+
+    /**
+     * Unites ranges on the same channel that overlap or have a gap of no more
+     * than tolerance nanoseconds between them.
+     */
+    public TimeRangeSet union(long tolerance) {
+        TimeRangeSet s = sorted();
+        TimeRangeSet out = new TimeRangeSet(s.size, s.channels);
+        for (int i = 0; i < s.size; i++) {
+            int last = out.size - 1;
+            if (last >= 0 && out.channelIndex[last] == s.channelIndex[i]
+                    && EpochNanos.subtract(s.begins[i], out.ends[last]) <= tolerance) {
+                if (s.ends[i] > out.ends[last]) {
+                    out.ends[last] = s.ends[i];
+                }
+            } else {
+                out.add(s.channelIndex[i], s.begins[i], s.ends[i]);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Merges seismogram like ranges that are contiguous with a sample
+     * interval, the same test as RangeTool.areContiguous(TimeRange, TimeRange,
+     * Duration), ie a gap of less than the interval plus one microsecond.
+     */
+    public TimeRangeSet unionContiguous(long intervalNanos) {
+        return union(EpochNanos.add(intervalNanos, 1000 - 1));
+    }
+
+    public TimeRangeSet union(TimeRangeSet other) {
+        TimeRangeSet all = new TimeRangeSet(size + other.size, channels.copy());
+        all.addAll(this);
+        all.addAll(other);
+        return all.union();
+    }
+
+    /**
+     * @return the time covered by both this and the other set, per channel
+     */
+    public TimeRangeSet intersection(TimeRangeSet other) {
+        TimeRangeSet a = union();
+        TimeRangeSet b = a.remapped(other).union();
+        TimeRangeSet out = new TimeRangeSet(Math.max(a.size, b.size), a.channels);
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.channelIndex[i] != b.channelIndex[j]) {
+                if (a.channelIndex[i] < b.channelIndex[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+                continue;
+            }
+            long lo = Math.max(a.begins[i], b.begins[j]);
+            long hi = Math.min(a.ends[i], b.ends[j]);
+            if (lo < hi) {
+                out.add(a.channelIndex[i], lo, hi);
+            }
+            if (a.ends[i] < b.ends[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return the time in this set that is not covered by the other, per
+     *         channel, like CoverageTool.notCovered
+     */
+    public TimeRangeSet difference(TimeRangeSet other) {
+        TimeRangeSet a = union();
+        TimeRangeSet b = a.remapped(other).union();
+        TimeRangeSet out = new TimeRangeSet(a.size, a.channels);
+        int j = 0;
+        for (int i = 0; i < a.size; i++) {
+            int chan = a.channelIndex[i];
+            while (j < b.size && (b.channelIndex[j] < chan || (b.channelIndex[j] == chan && b.ends[j] <= a.begins[i]))) {
+                j++;
+            }
+            long cur = a.begins[i];
+            for (int k = j; k < b.size && b.channelIndex[k] == chan && b.begins[k] < a.ends[i]; k++) {
+                if (b.begins[k] > cur) {
+                    out.add(chan, cur, b.begins[k]);
+                }
+                cur = Math.max(cur, b.ends[k]);
+                if (cur >= a.ends[i]) {
+                    break;
+                }
+            }
+            if (cur < a.ends[i]) {
+                out.add(chan, cur, a.ends[i]);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Cuts each range to each window on the same channel that it overlaps,
+     * like ReduceTool.trimTo. Ranges entirely inside a window are kept as they
+     * are, ranges that only touch a window are dropped. The result is in
+     * window order.
+     */
+    public TimeRangeSet trimTo(TimeRangeSet windows) {
+        TimeRangeSet r = sorted();
+        TimeRangeSet w = r.remapped(windows).sorted();
+        // running max of the ends within each channel, so the first range that
+        // can reach a window can be found by binary search
+        long[] maxEnd = new long[r.size];
+        for (int i = 0; i < r.size; i++) {
+            maxEnd[i] = (i > 0 && r.channelIndex[i - 1] == r.channelIndex[i]) ? Math.max(maxEnd[i - 1], r.ends[i])
+                    : r.ends[i];
+        }
+        TimeRangeSet out = new TimeRangeSet(r.size, r.channels);
+        int chanStart = 0;
+        for (int wi = 0; wi < w.size; wi++) {
+            int chan = w.channelIndex[wi];
+            long wb = w.begins[wi];
+            long we = w.ends[wi];
+            while (chanStart < r.size && r.channelIndex[chanStart] < chan) {
+                chanStart++;
+            }
+            int chanEnd = chanStart;
+            while (chanEnd < r.size && r.channelIndex[chanEnd] == chan) {
+                chanEnd++;
+            }
+            int lo = chanStart;
+            int hi = chanEnd;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (maxEnd[mid] <= wb) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            for (int i = lo; i < chanEnd && r.begins[i] <= we; i++) {
+                long b = r.begins[i];
+                long e = r.ends[i];
+                if (b >= wb && e <= we) {
+                    out.add(chan, b, e);
+                } else if (e > wb && b < we) {
+                    out.add(chan, Math.max(b, wb), Math.min(e, we));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Same test as RangeTool.areOverlapping(TimeRange, TimeRange).
+     */
+    public static boolean areOverlapping(long begin1, long end1, long begin2, long end2) {
+        return begin1 < end2 && end1 > begin2;
+    }
+
+    /**
+     * Same test as RangeTool.areContiguous(TimeRange, TimeRange, Duration).
+     */
+    public static boolean areContiguous(long begin1, long end1, long begin2, long end2, long intervalNanos) {
+        if (areOverlapping(begin1, end1, begin2, end2)) {
+            return false;
+        }
+        long littleMoreThanInterval = EpochNanos.add(intervalNanos, 1000);
+        if (end1 < begin2) {
+            return EpochNanos.add(end1, littleMoreThanInterval) > begin2;
+        }
+        return end2 < begin1 && EpochNanos.add(end2, littleMoreThanInterval) > begin1;
+    }
+
+    /**
+     * @return true if ranges i and j are on the same channel and contiguous
+     *         with the given sample interval
+     */
+    public boolean areContiguous(int i, int j, long intervalNanos) {
+        return channelIndex[i] == channelIndex[j]
+                && areContiguous(begins[i], ends[i], begins[j], ends[j], intervalNanos);
+    }
+
+    /** clamped values go back to the sentinel times they most likely came from */
+    static Instant toInstant(long nanos) {
+        if (nanos == Long.MAX_VALUE) {
+            return TimeUtils.future;
+        }
+        if (nanos == Long.MIN_VALUE) {
+            return TimeUtils.wayPast;
+        }
+        return EpochNanos.toInstant(nanos);
+    }
+
+    private void addAll(TimeRangeSet other) {
+        int[] remap = remapChannels(other);
+        for (int i = 0; i < other.size; i++) {
+            int c = other.channelIndex[i];
+            add(c == NO_CHANNEL ? NO_CHANNEL : remap[c], other.begins[i], other.ends[i]);
+        }
+    }
+
+    /** the other set with its channel indices converted to this set's */
+    private TimeRangeSet remapped(TimeRangeSet other) {
+        if (other.channels == channels) {
+            return other;
+        }
+        TimeRangeSet out = new TimeRangeSet(other.size, channels);
+        out.addAll(other);
+        return out;
+    }
+
+    private int[] remapChannels(TimeRangeSet other) {
+        int[] remap = new int[other.channels.ids.size()];
+        for (int c = 0; c < remap.length; c++) {
+            remap[c] = other.channels == channels ? c : channels.indexOf(other.channels.ids.get(c));
+        }
+        return remap;
+    }
+
+    /**
+     * Stable merge sort of the indices by channel, begin and end, so the
+     * arrays themselves are only touched once to permute them.
+     */
+    private int[] sortOrder() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        int[] tmp = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int lo = 0; lo < size - width; lo += 2 * width) {
+                int mid = lo + width;
+                int hi = Math.min(lo + 2 * width, size);
+                if (compare(order[mid - 1], order[mid]) <= 0) {
+                    continue;
+                }
+                int a = lo;
+                int b = mid;
+                int k = lo;
+                while (a < mid && b < hi) {
+                    tmp[k++] = compare(order[a], order[b]) <= 0 ? order[a++] : order[b++];
+                }
+                while (a < mid) {
+                    tmp[k++] = order[a++];
+                }
+                while (b < hi) {
+                    tmp[k++] = order[b++];
+                }
+                System.arraycopy(tmp, lo, order, lo, hi - lo);
+            }
+        }
+        return order;
+    }
+
+    private int compare(int i, int j) {
+        int c = Integer.compare(channelIndex[i], channelIndex[j]);
+        if (c != 0) {
+            return c;
+        }
+        c = Long.compare(begins[i], begins[j]);
+        if (c != 0) {
+            return c;
+        }
+        return Long.compare(ends[i], ends[j]);
+    }
+
+    /**
+     * Channels seen by a set and the sets derived from it. Copied before
+     * adding channels from another set so the sets already made are not
+     * changed.
+     */
+    static class ChannelTable {
+
+        int indexOf(ChannelId chan) {
+            String key = ChannelIdUtil.toStringNoDates(chan);
+            Integer index = keys.get(key);
+            if (index == null) {
+                index = ids.size();
+                ids.add(chan);
+                keys.put(key, index);
+            }
+            return index;
+        }
+
+        ChannelTable copy() {
+            ChannelTable out = new ChannelTable();
+            out.ids.addAll(ids);
+            out.keys.putAll(keys);
+            return out;
+        }
+
+        List<ChannelId> ids = new ArrayList<ChannelId>();
+
+        Map<String, Integer> keys = new HashMap<String, Integer>();
+    }
+
+    private long[] begins;
+
+    private long[] ends;
+
+    private int[] channelIndex;
+
+    private int size = 0;
+
+    private ChannelTable channels;
+
+    public static final int NO_CHANNEL = -1;
+}
@@ -0,0 +1,33 @@
+package edu.sc.seis.sod.util.time;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * A reference clock that ClockUtil compares the local clock against. Set one
+ * with ClockUtil.setTimeSource, UrlTimeSource is the default.
+ */
+public interface TimeSource {
+
+    /**
+     * @return the amount to add to the local clock to get the reference time
+     */
+    public Duration getOffset() throws IOException;
+
+    /**
+     * A source with a fixed offset, for tests and for running without a
+     * network.
+     */
+    public static class Fixed implements TimeSource {
+
+        public Fixed(Duration offset) {
+            this.offset = offset;
+        }
+
+        public Duration getOffset() {
+            return offset;
+        }
+
+        private Duration offset;
+    }
+}
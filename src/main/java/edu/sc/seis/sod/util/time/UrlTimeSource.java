@@ -0,0 +1,65 @@
+package edu.sc.seis.sod.util.time;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.time.Duration;
+import java.time.Instant;
+
+import edu.sc.seis.seisFile.TimeUtils;
+
+/**
+ * Reads the reference time as an ISO string, the last line of the content at
+ * a URL. Works with http URLs, like the seis.sc.edu date_time.pl script, and
+ * with file URLs for a local stand in.
+ */
+public class UrlTimeSource implements TimeSource {
+
+    public UrlTimeSource(URL url) {
+        this(url, DEFAULT_TIMEOUT);
+    }
+
+    public UrlTimeSource(URL url, int timeoutMillis) {
+        this.url = url;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public Duration getOffset() throws IOException {
+        URLConnection conn = url.openConnection();
+        conn.setConnectTimeout(timeoutMillis);
+        conn.setReadTimeout(timeoutMillis);
+        String timeStr = null;
+        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
+        try {
+            String str;
+            while((str = bufferedReader.readLine()) != null) {
+                timeStr = str;
+            }
+        } finally {
+            bufferedReader.close();
+        }
+        Instant localTime = Instant.now();
+        if(timeStr == null) {
+            throw new IOException("No time returned from " + url);
+        }
+        Instant serverTime = TimeUtils.parseISOString(timeStr.trim());
+        return Duration.between(localTime, serverTime);
+    }
+
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public String toString() {
+        return url.toString();
+    }
+
+    private URL url;
+
+    private int timeoutMillis;
+
+    public static final int DEFAULT_TIMEOUT = 10000;
+}
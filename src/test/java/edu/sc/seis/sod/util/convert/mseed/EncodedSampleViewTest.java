@@ -0,0 +1,149 @@
+package edu.sc.seis.sod.util.convert.mseed;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.iris.dmc.seedcodec.B1000Types;
+import edu.sc.seis.sod.model.seismogram.EncodedData;
+
+public class EncodedSampleViewTest {
+
+    @Test
+    public void testBlocks() throws Exception {
+        int[] data = randomWalk(5000, 1);
+        EncodedSampleView view = new EncodedSampleView(steim1(data));
+        assertEquals(data.length, view.getNumPoints());
+        assertTrue(view.isIntegerData());
+        assertTrue(view.getNumBlocks() > 3);
+        assertEquals(0, view.getBlockStart(0));
+        for (int b = 1; b < view.getNumBlocks(); b++) {
+            int start = view.getBlockStart(b);
+            assertEquals(b - 1, view.getBlockIndex(start - 1));
+            assertEquals(b, view.getBlockIndex(start));
+        }
+        assertEquals(view.getNumBlocks() - 1, view.getBlockIndex(data.length - 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.getBlockIndex(data.length));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.getBlockIndex(-1));
+        // no samples are decoded until asked for
+        assertEquals(0, view.getNumDecoded());
+    }
+
+    @Test
+    public void testRangesAcrossBlockBoundaries() throws Exception {
+        int[] data = randomWalk(5000, 2);
+        EncodedSampleView view = new EncodedSampleView(steim1(data));
+        for (int b = 1; b < view.getNumBlocks(); b++) {
+            int start = view.getBlockStart(b);
+            assertRange(view, data, start - 3, start + 3);
+            assertRange(view, data, start - 1, start);
+            assertRange(view, data, start, start + 1);
+        }
+        // spanning more than two blocks
+        assertRange(view, data, view.getBlockStart(1) - 5, view.getBlockStart(3) + 5);
+        assertRange(view, data, 0, data.length);
+        assertEquals(0, view.getInts(10, 10).length);
+        for (int i = 0; i < data.length; i += 97) {
+            assertEquals(data[i], view.getInt(i));
+            assertEquals(data[i], view.getDouble(i));
+        }
+    }
+
+    @Test
+    public void testOnlyOverlappingBlocksDecoded() throws Exception {
+        int[] data = randomWalk(5000, 3);
+        EncodedSampleView view = new EncodedSampleView(steim1(data));
+        int start = view.getBlockStart(2);
+        view.getInts(start - 1, start + 1);
+        assertEquals(2, view.getNumDecoded());
+        view.getFloats(start - 1, start + 1);
+        view.getMinMaxMean(start - 1, start + 1);
+        assertEquals(2, view.getNumDecoded());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        int[] data = randomWalk(5000, 4);
+        EncodedSampleView view = new EncodedSampleView(steim1(data), 2);
+        int b0 = view.getBlockStart(0);
+        int b1 = view.getBlockStart(1);
+        int b2 = view.getBlockStart(2);
+        view.getInt(b0);
+        view.getInt(b1);
+        assertEquals(2, view.getNumDecoded());
+        // block 0 is now the most recently used, so block 1 goes next
+        assertEquals(data[b0], view.getInt(b0));
+        assertEquals(2, view.getNumDecoded());
+        assertEquals(data[b2], view.getInt(b2));
+        assertEquals(3, view.getNumDecoded());
+        assertEquals(data[b0], view.getInt(b0));
+        assertEquals(3, view.getNumDecoded());
+        assertEquals(data[b1], view.getInt(b1));
+        assertEquals(4, view.getNumDecoded());
+        // a range longer than the cache still decodes each block once
+        EncodedSampleView one = new EncodedSampleView(steim1(data), 1);
+        assertArrayEquals(data, one.getInts(0, data.length));
+        assertEquals(one.getNumBlocks(), one.getNumDecoded());
+    }
+
+    @Test
+    public void testFloatData() throws Exception {
+        float[] data = new float[3000];
+        Random r = new Random(5);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (float)r.nextGaussian() * 100;
+        }
+        EncodedData[] ed = FissuresConvert.toEncodedData(data);
+        assertEquals(B1000Types.FLOAT, ed[0].compression);
+        EncodedSampleView view = new EncodedSampleView(ed);
+        assertFalse(view.isIntegerData());
+        assertTrue(view.getNumBlocks() > 1);
+        int start = view.getBlockStart(1);
+        assertArrayEquals(Arrays.copyOfRange(data, start - 4, start + 4), view.getFloats(start - 4, start + 4));
+        for (int i = start - 4; i < start + 4; i++) {
+            assertEquals(data[i], view.getDouble(i));
+            assertEquals((int)data[i], view.getInt(i));
+        }
+    }
+
+    static void assertRange(EncodedSampleView view, int[] data, int begin, int end) throws Exception {
+        assertArrayEquals(Arrays.copyOfRange(data, begin, end), view.getInts(begin, end), begin + "-" + end);
+        float[] floats = view.getFloats(begin, end);
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (int i = begin; i < end; i++) {
+            assertEquals(data[i], floats[i - begin]);
+            min = Math.min(min, data[i]);
+            max = Math.max(max, data[i]);
+            sum += data[i];
+        }
+        double[] minMaxMean = view.getMinMaxMean(begin, end);
+        assertEquals(min, minMaxMean[0]);
+        assertEquals(max, minMaxMean[1]);
+        assertEquals(sum / (end - begin), minMaxMean[2], 1e-9);
+    }
+
+    /** small records so there are many block boundaries */
+    static EncodedData[] steim1(int[] data) throws Exception {
+        return new SteimEncoder(B1000Types.STEIM1).encodeAll(data, 7);
+    }
+
+    static int[] randomWalk(int n, long seed) {
+        int[] data = new int[n];
+        Random r = new Random(seed);
+        int v = 0;
+        for (int i = 0; i < n; i++) {
+            v += r.nextInt(2001) - 1000;
+            data[i] = v;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,133 @@
+package edu.sc.seis.sod.util.convert.mseed;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.iris.dmc.seedcodec.B1000Types;
+import edu.sc.seis.seisFile.mseed.DataRecord;
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.model.station.ChannelId;
+import edu.sc.seis.sod.model.station.ChannelIdUtil;
+import edu.sc.seis.sod.util.time.ReduceTool;
+
+public class MSeedBulkIngestTest {
+
+    @Test
+    public void testInterleavedChannels() throws Exception {
+        // BHE has a gap, so two contiguous runs
+        LocalSeismogramImpl z = seismogram("BHZ", 0, 6000, 1);
+        LocalSeismogramImpl n = seismogram("BHN", 0, 6000, 2);
+        LocalSeismogramImpl e1 = seismogram("BHE", 0, 3000, 3);
+        LocalSeismogramImpl e2 = seismogram("BHE", 3100, 2000, 4);
+        List<DataRecord> records = new ArrayList<DataRecord>();
+        for (LocalSeismogramImpl seis : new LocalSeismogramImpl[] {z, n, e1, e2}) {
+            Collections.addAll(records,
+                               FissuresConvert.toMSeed(seis, 1, B1000Types.STEIM2, FissuresConvert.RECORD_SIZE_512));
+        }
+        // spread the records over the files with the channels mixed and
+        // out of time order within each file
+        Collections.shuffle(records, new Random(5));
+        List<File> files = new ArrayList<File>();
+        for (int f = 0; f < NUM_FILES; f++) {
+            File file = new File(tempDir, "part" + f + ".mseed");
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+                for (int i = f; i < records.size(); i += NUM_FILES) {
+                    records.get(i).write(out);
+                }
+            }
+            files.add(file);
+        }
+        File junk = new File(tempDir, "junk.mseed");
+        byte[] text = new byte[FissuresConvert.RECORD_SIZE_512];
+        Arrays.fill(text, (byte)'x');
+        Files.write(junk.toPath(), text);
+        MSeedBulkIngest ingest = new MSeedBulkIngest(3);
+        try {
+            Map<String, List<LocalSeismogramImpl>> out = ingest.ingest(tempDir);
+            assertEquals(1, ingest.getFailures().size());
+            assertTrue(ingest.getFailures().containsKey(junk));
+            assertEquals(3, out.size());
+            assertRuns(out.get(key(z)), z);
+            assertRuns(out.get(key(n)), n);
+            assertRuns(out.get(key(e1)), e1, e2);
+            // the same runs as reading each file on its own and merging
+            Map<String, List<LocalSeismogramImpl>> separately = new HashMap<String, List<LocalSeismogramImpl>>();
+            for (File file : files) {
+                for (LocalSeismogramImpl seis : MappedMSeedReader.read(file)) {
+                    separately.computeIfAbsent(key(seis), k -> new ArrayList<LocalSeismogramImpl>()).add(seis);
+                }
+            }
+            assertEquals(out.keySet(), separately.keySet());
+            for (Map.Entry<String, List<LocalSeismogramImpl>> entry : separately.entrySet()) {
+                LocalSeismogramImpl[] merged = ReduceTool.merge(entry.getValue().toArray(new LocalSeismogramImpl[0]));
+                assertRuns(out.get(entry.getKey()), sortByBegin(merged));
+            }
+        } finally {
+            ingest.shutdown();
+        }
+    }
+
+    static void assertRuns(List<LocalSeismogramImpl> actual, LocalSeismogramImpl... expected) throws Exception {
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getBeginTime(), actual.get(i).getBeginTime(), "run " + i);
+            assertEquals(expected[i].getNumPoints(), actual.get(i).getNumPoints(), "run " + i);
+            assertArrayEquals(expected[i].get_as_longs(), actual.get(i).get_as_longs(), "run " + i);
+        }
+    }
+
+    static LocalSeismogramImpl[] sortByBegin(LocalSeismogramImpl[] seis) {
+        LocalSeismogramImpl[] out = seis.clone();
+        Arrays.sort(out, (a, b) -> a.getBeginTime().compareTo(b.getBeginTime()));
+        return out;
+    }
+
+    static String key(LocalSeismogramImpl seis) {
+        return ChannelIdUtil.toStringNoDates(seis.getChannelID());
+    }
+
+    static LocalSeismogramImpl seismogram(String channelCode, int beginSample, int numPoints, long seed) {
+        LocalSeismogramImpl spike = MockSeismogram.createSpike();
+        Random r = new Random(seed);
+        int[] data = new int[numPoints];
+        int v = 0;
+        for (int i = 0; i < data.length; i++) {
+            v += r.nextInt(2001) - 1000;
+            data[i] = v;
+        }
+        LocalSeismogramImpl out = new LocalSeismogramImpl(spike, data);
+        ChannelId chan = spike.channel_id;
+        out.channel_id = new ChannelId(chan.getNetworkId(),
+                                       chan.getStationCode(),
+                                       chan.getLocCode(),
+                                       channelCode,
+                                       spike.getBeginTime());
+        out.begin_time = T0.plus(spike.getSampling().getPeriod().multipliedBy(beginSample));
+        return out;
+    }
+
+    static final int NUM_FILES = 3;
+
+    static final Instant T0 = Instant.parse("2020-01-01T00:00:00Z");
+
+    @TempDir
+    File tempDir;
+}
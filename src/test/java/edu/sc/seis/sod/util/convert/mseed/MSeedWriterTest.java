@@ -0,0 +1,48 @@
+package edu.sc.seis.sod.util.convert.mseed;
+
+import static edu.sc.seis.sod.util.convert.mseed.MappedMSeedReaderTest.assertRoundTrip;
+import static edu.sc.seis.sod.util.convert.mseed.MappedMSeedReaderTest.createNoise;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+
+public class MSeedWriterTest {
+
+    @Test
+    public void testUncompressedRoundTrip() throws Exception {
+        LocalSeismogramImpl seis = createNoise(5000);
+        File file = new File(tempDir, "int.mseed");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            FissuresConvert.writeMSeed(seis, out);
+        }
+        assertRoundTrip(seis, file);
+
+        float[] floats = new float[3000];
+        Random r = new Random(7);
+        for (int i = 0; i < floats.length; i++) {
+            floats[i] = r.nextFloat() * 1000 - 500;
+        }
+        LocalSeismogramImpl floatSeis = new LocalSeismogramImpl(MockSeismogram.createSpike(), floats);
+        file = new File(tempDir, "float.mseed");
+        try (MSeedWriter writer = new MSeedWriter(new FileOutputStream(file))) {
+            writer.setRecordSizePower((byte)9);
+            writer.write(floatSeis);
+        }
+        List<LocalSeismogramImpl> read = MappedMSeedReader.read(file);
+        assertEquals(1, read.size());
+        assertArrayEquals(floats, read.get(0).get_as_floats());
+    }
+
+    @TempDir
+    File tempDir;
+}
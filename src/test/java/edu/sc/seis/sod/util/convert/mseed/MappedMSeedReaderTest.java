@@ -0,0 +1,115 @@
+package edu.sc.seis.sod.util.convert.mseed;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.iris.dmc.seedcodec.B1000Types;
+import edu.sc.seis.seisFile.mseed.DataRecord;
+import edu.sc.seis.seisFile.mseed.SeedFormatException;
+import edu.sc.seis.seisFile.mseed.SeedRecord;
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+
+public class MappedMSeedReaderTest {
+
+    @Test
+    public void testMappedReaderReadsToMSeedRecords() throws Exception {
+        LocalSeismogramImpl seis = createNoise(10000);
+        DataRecord[] records = FissuresConvert.toMSeed(seis,
+                                                       1,
+                                                       B1000Types.STEIM2,
+                                                       FissuresConvert.RECORD_SIZE_4096);
+        File file = new File(tempDir, "toMSeed.mseed");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            for (DataRecord dr : records) {
+                dr.write(out);
+            }
+        }
+        assertRoundTrip(seis, file);
+    }
+
+    @Test
+    public void testBadRecordLengthPower() throws Exception {
+        File file = writeNoise("badPower.mseed");
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        // blockette 1000 is first, at the offset in bytes 46-47, record length power at 6 into it
+        int b1000 = ((bytes[46] & 0xff) << 8) | (bytes[47] & 0xff);
+        for (byte power : new byte[] {0, 6, 17, 31, -1}) {
+            bytes[b1000 + 6] = power;
+            Files.write(file.toPath(), bytes);
+            assertThrows(SeedFormatException.class, () -> MappedMSeedReader.read(file), "power " + power);
+        }
+    }
+
+    @Test
+    public void testTruncatedRecord() throws Exception {
+        File file = writeNoise("truncated.mseed");
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 100));
+        assertThrows(SeedFormatException.class, () -> MappedMSeedReader.read(file));
+    }
+
+    File writeNoise(String name) throws Exception {
+        DataRecord[] records = FissuresConvert.toMSeed(createNoise(10000),
+                                                       1,
+                                                       B1000Types.STEIM2,
+                                                       FissuresConvert.RECORD_SIZE_4096);
+        File file = new File(tempDir, name);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            for (DataRecord dr : records) {
+                dr.write(out);
+            }
+        }
+        return file;
+    }
+
+    static void assertRoundTrip(LocalSeismogramImpl seis, File file) throws Exception {
+        List<LocalSeismogramImpl> read = MappedMSeedReader.read(file);
+        assertEquals(1, read.size());
+        LocalSeismogramImpl back = read.get(0);
+        assertEquals(seis.getBeginTime(), back.getBeginTime());
+        assertEquals(seis.channel_id.getStationCode(), back.channel_id.getStationCode());
+        assertEquals(seis.channel_id.getChannelCode(), back.channel_id.getChannelCode());
+        assertArrayEquals(seis.get_as_longs(), back.get_as_longs());
+    }
+
+    static List<DataRecord> readRecords(File file) throws Exception {
+        List<DataRecord> out = new ArrayList<DataRecord>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (in.available() > 0) {
+                out.add((DataRecord)SeedRecord.read(in, FissuresConvert.RECORD_SIZE_4096));
+            }
+        }
+        return out;
+    }
+
+    static LocalSeismogramImpl createNoise(int numPoints) {
+        Random r = new Random(42);
+        int[] data = new int[numPoints];
+        int v = 0;
+        for (int i = 0; i < data.length; i++) {
+            v += r.nextInt(2001) - 1000;
+            data[i] = v;
+        }
+        return new LocalSeismogramImpl(MockSeismogram.createSpike(), data);
+    }
+
+    @TempDir
+    File tempDir;
+}
@@ -0,0 +1,102 @@
+package edu.sc.seis.sod.util.convert.mseed;
+
+import static edu.sc.seis.sod.util.convert.mseed.MappedMSeedReaderTest.assertRoundTrip;
+import static edu.sc.seis.sod.util.convert.mseed.MappedMSeedReaderTest.createNoise;
+import static edu.sc.seis.sod.util.convert.mseed.MappedMSeedReaderTest.readRecords;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.iris.dmc.seedcodec.B1000Types;
+import edu.sc.seis.seisFile.mseed.DataRecord;
+import edu.sc.seis.sod.model.seismogram.EncodedData;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+
+public class SteimEncoderTest {
+
+    @Test
+    public void testSteimMatchesToMSeed() throws Exception {
+        LocalSeismogramImpl seis = createNoise(20000);
+        for (int compression : new int[] {B1000Types.STEIM1, B1000Types.STEIM2}) {
+            File written = new File(tempDir, "writer" + compression + ".mseed");
+            int numRecords;
+            try (MSeedWriter writer = new MSeedWriter(new FileOutputStream(written))) {
+                writer.setCompression(compression);
+                writer.setRecordSizePower(FissuresConvert.RECORD_SIZE_4096_POWER);
+                numRecords = writer.write(seis);
+            }
+            DataRecord[] expected = FissuresConvert.toMSeed(seis, 1, compression, FissuresConvert.RECORD_SIZE_4096);
+            List<DataRecord> actual = readRecords(written);
+            assertEquals(expected.length, numRecords, "records " + compression);
+            assertEquals(expected.length, actual.size(), "records " + compression);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].getHeader().getNumSamples(), actual.get(i).getHeader().getNumSamples());
+                assertEquals(expected[i].getHeader().getStartTime(), actual.get(i).getHeader().getStartTime());
+                assertEquals(expected[i].getHeader().getStationIdentifier().trim(),
+                             actual.get(i).getHeader().getStationIdentifier().trim());
+                assertArrayEquals(expected[i].decompress().getAsInt(), actual.get(i).decompress().getAsInt());
+            }
+            assertRoundTrip(seis, written);
+        }
+    }
+
+    @Test
+    public void testDataStartsOnFrameBoundary() throws Exception {
+        LocalSeismogramImpl seis = createNoise(20000);
+        for (int recordSize : new int[] {FissuresConvert.RECORD_SIZE_512,
+                                         FissuresConvert.RECORD_SIZE_1024,
+                                         FissuresConvert.RECORD_SIZE_4096}) {
+            DataRecord[] records = FissuresConvert.toMSeed(seis, 1, B1000Types.STEIM2, recordSize);
+            File file = new File(tempDir, "offset" + recordSize + ".mseed");
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+                for (DataRecord dr : records) {
+                    dr.write(out);
+                }
+            }
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            assertEquals(records.length * recordSize, bytes.length, "size " + recordSize);
+            for (int i = 0; i < records.length; i++) {
+                // beginning of data is the big endian short at byte 44 of the header
+                int offset = ((bytes[i * recordSize + 44] & 0xff) << 8) | (bytes[i * recordSize + 45] & 0xff);
+                assertEquals(64, offset, "record " + i + " of " + recordSize);
+                int dataLength = records[i].getData().length;
+                assertEquals(0, dataLength % 64, "record " + i + " of " + recordSize);
+                if (i < records.length - 1) {
+                    assertEquals(recordSize - 64, dataLength, "record " + i + " of " + recordSize);
+                }
+            }
+            assertRoundTrip(seis, file);
+        }
+    }
+
+    @Test
+    public void testSteim2FallsBackToSteim1() throws Exception {
+        int[] data = new int[500];
+        for (int i = 0; i < data.length; i++) {
+            // differences too large for the 30 bits steim2 allows
+            data[i] = (i % 2 == 0) ? 1 << 29 : -(1 << 29);
+        }
+        EncodedData[] encoded = new SteimEncoder(B1000Types.STEIM2).encodeAll(data, 63);
+        int pos = 0;
+        for (EncodedData ed : encoded) {
+            assertEquals(B1000Types.STEIM1, ed.compression);
+            int[] decoded = EncodedSampleView.decode(ed).getAsInt();
+            for (int i = 0; i < decoded.length; i++) {
+                assertEquals(data[pos + i], decoded[i]);
+            }
+            pos += decoded.length;
+        }
+        assertEquals(data.length, pos);
+    }
+
+    @TempDir
+    File tempDir;
+}
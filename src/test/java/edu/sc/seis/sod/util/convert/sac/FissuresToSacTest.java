@@ -0,0 +1,98 @@
+package edu.sc.seis.sod.util.convert.sac;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.iris.dmc.seedcodec.B1000Types;
+import edu.sc.seis.seisFile.sac.SacHeader;
+import edu.sc.seis.seisFile.sac.SacTimeSeries;
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.seismogram.EncodedData;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.model.seismogram.TimeSeriesDataSel;
+import edu.sc.seis.sod.util.convert.mseed.FissuresConvert;
+import edu.sc.seis.sod.util.convert.mseed.SteimEncoder;
+
+public class FissuresToSacTest {
+
+    @Test
+    public void testIntStats() throws Exception {
+        assertStats(new LocalSeismogramImpl(MockSeismogram.createSpike(), randomWalk(3000, 1)));
+    }
+
+    @Test
+    public void testFloatStats() throws Exception {
+        assertStats(new LocalSeismogramImpl(MockSeismogram.createSpike(), gaussian(3000, 2)));
+    }
+
+    @Test
+    public void testSteimStats() throws Exception {
+        int[] data = randomWalk(5000, 3);
+        EncodedData[] ed = new SteimEncoder(B1000Types.STEIM2).encodeAll(data, 7);
+        assertTrue(ed.length > 1);
+        LocalSeismogramImpl seis = encoded(ed, data.length);
+        assertStats(seis);
+        assertArrayEquals(toFloats(data), FissuresToSac.getSAC(seis).getY());
+    }
+
+    @Test
+    public void testEncodedFloatStats() throws Exception {
+        float[] data = gaussian(3000, 4);
+        LocalSeismogramImpl seis = encoded(FissuresConvert.toEncodedData(data), data.length);
+        assertStats(seis);
+        assertArrayEquals(data, FissuresToSac.getSAC(seis).getY());
+    }
+
+    static void assertStats(LocalSeismogramImpl seis) throws Exception {
+        SacTimeSeries sac = FissuresToSac.getSAC(seis);
+        assertArrayEquals(seis.get_as_floats(), sac.getY());
+        SacHeader header = sac.getHeader();
+        assertEquals(seis.getNumPoints(), header.getNpts());
+        assertEquals((float)seis.getMinValue().getValue(), header.getDepmin());
+        assertEquals((float)seis.getMaxValue().getValue(), header.getDepmax());
+        float mean = (float)seis.getMeanValue().getValue();
+        // the sum may be taken in a different order, so allow for rounding
+        assertEquals(mean, header.getDepmen(), 1e-4 * Math.max(1, Math.abs(mean)));
+    }
+
+    static LocalSeismogramImpl encoded(EncodedData[] ed, int numPoints) {
+        TimeSeriesDataSel td = new TimeSeriesDataSel();
+        td.encoded_values(ed);
+        LocalSeismogramImpl out = new LocalSeismogramImpl(MockSeismogram.createSpike(), td);
+        out.num_points = numPoints;
+        return out;
+    }
+
+    static float[] toFloats(int[] data) {
+        float[] out = new float[data.length];
+        for (int i = 0; i < data.length; i++) {
+            out[i] = data[i];
+        }
+        return out;
+    }
+
+    static int[] randomWalk(int n, long seed) {
+        int[] data = new int[n];
+        Random r = new Random(seed);
+        int v = 0;
+        for (int i = 0; i < n; i++) {
+            v += r.nextInt(2001) - 1000;
+            data[i] = v;
+        }
+        return data;
+    }
+
+    static float[] gaussian(int n, long seed) {
+        float[] data = new float[n];
+        Random r = new Random(seed);
+        for (int i = 0; i < n; i++) {
+            data[i] = (float)r.nextGaussian() * 100 + 10;
+        }
+        return data;
+    }
+}
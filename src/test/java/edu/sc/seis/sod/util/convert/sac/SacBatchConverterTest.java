@@ -0,0 +1,181 @@
+package edu.sc.seis.sod.util.convert.sac;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+
+public class SacBatchConverterTest {
+
+    @Test
+    public void testWriteAllReadAll() throws Exception {
+        List<LocalSeismogramImpl> seismograms = new ArrayList<LocalSeismogramImpl>();
+        for (int i = 0; i < 5; i++) {
+            seismograms.add(seismogram(i, i * 60));
+        }
+        // same channel and begin second as the first
+        seismograms.add(seismogram(100, 0));
+        seismograms.add(seismogram(200, 0));
+        try (SacBatchConverter converter = new SacBatchConverter(3, 2)) {
+            List<File> written = converter.writeAll(seismograms, tempDir);
+            assertEquals(seismograms.size(), written.size());
+            assertEquals(seismograms.size(), new HashSet<File>(written).size());
+            String name = SacBatchConverter.getFilename(seismograms.get(0));
+            assertEquals(name, written.get(0).getName());
+            assertEquals(name.replace(".sac", "_1.sac"), written.get(5).getName());
+            assertEquals(name.replace(".sac", "_2.sac"), written.get(6).getName());
+            assertTrue(converter.getFailures().isEmpty());
+            Map<File, LocalSeismogramImpl> read = converter.readAll(tempDir);
+            assertEquals(seismograms.size(), read.size());
+            for (int i = 0; i < seismograms.size(); i++) {
+                LocalSeismogramImpl expected = seismograms.get(i);
+                LocalSeismogramImpl actual = read.get(written.get(i));
+                assertEquals(expected.getBeginTime(), actual.getBeginTime(), "seismogram " + i);
+                assertArrayEquals(expected.get_as_floats(), actual.get_as_floats(), "seismogram " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testFailureDoesNotStopBatch() throws Exception {
+        List<LocalSeismogramImpl> seismograms = new ArrayList<LocalSeismogramImpl>();
+        for (int i = 0; i < 4; i++) {
+            seismograms.add(seismogram(i, i * 60));
+        }
+        File sub = new File(tempDir, "sub");
+        sub.mkdir();
+        File junk = new File(sub, "junk.sac");
+        Files.write(junk.toPath(), "not a sac file".getBytes());
+        final AtomicInteger finished = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger lastDone = new AtomicInteger();
+        final AtomicInteger lastTotal = new AtomicInteger();
+        final Set<File> failedFiles = ConcurrentHashMap.newKeySet();
+        try (SacBatchConverter converter = new SacBatchConverter(2, 2)) {
+            converter.writeAll(seismograms, tempDir);
+            converter.setProgressListener(new SacBatchConverter.ProgressListener() {
+
+                public void finished(File file, int numDone, int numTotal) {
+                    finished.incrementAndGet();
+                    lastDone.accumulateAndGet(numDone, Math::max);
+                    lastTotal.set(numTotal);
+                }
+
+                public void failed(File file, Exception e, int numDone, int numTotal) {
+                    failed.incrementAndGet();
+                    lastDone.accumulateAndGet(numDone, Math::max);
+                    failedFiles.add(file);
+                }
+            });
+            Map<File, LocalSeismogramImpl> read = converter.readAll(tempDir);
+            assertEquals(4, read.size());
+            assertFalse(read.containsKey(junk));
+            assertEquals(1, converter.getFailures().size());
+            assertTrue(converter.getFailures().containsKey(junk));
+            assertEquals(4, finished.get());
+            assertEquals(1, failed.get());
+            assertEquals(5, lastDone.get());
+            assertEquals(5, lastTotal.get());
+            assertTrue(failedFiles.contains(junk));
+        }
+    }
+
+    @Test
+    public void testErrorFailsOnlyThatFile() throws Exception {
+        List<File> files = files(6);
+        final Error boom = new Error("boom");
+        Map<File, Exception> failures = new ConcurrentHashMap<File, Exception>();
+        final Set<Integer> converted = ConcurrentHashMap.newKeySet();
+        try (SacBatchConverter converter = new SacBatchConverter(2, 2)) {
+            converter.run(files, new SacBatchConverter.Conversion() {
+
+                public void convert(int index, File f) throws Exception {
+                    if (index == 2) {
+                        throw boom;
+                    }
+                    converted.add(index);
+                }
+            }, failures);
+        }
+        assertEquals(5, converted.size());
+        assertEquals(1, failures.size());
+        Exception e = failures.get(files.get(2));
+        assertTrue(e instanceof ExecutionException);
+        assertSame(boom, e.getCause());
+    }
+
+    @Test
+    public void testInFlightLimit() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger numDone = new AtomicInteger();
+        try (SacBatchConverter converter = new SacBatchConverter(4, 2)) {
+            converter.run(files(12), new SacBatchConverter.Conversion() {
+
+                public void convert(int index, File f) throws Exception {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(50);
+                    running.decrementAndGet();
+                    numDone.incrementAndGet();
+                }
+            }, new ConcurrentHashMap<File, Exception>());
+        }
+        // more threads than permits, so the permits are the limit
+        assertEquals(2, maxRunning.get());
+        assertEquals(12, numDone.get());
+        assertEquals(0, running.get());
+    }
+
+    @Test
+    public void testUniqueName() {
+        Set<String> used = new HashSet<String>();
+        assertEquals("a.sac", SacBatchConverter.uniqueName("a.sac", used));
+        assertEquals("a_1.sac", SacBatchConverter.uniqueName("a.sac", used));
+        assertEquals("a_2.sac", SacBatchConverter.uniqueName("a.sac", used));
+        assertEquals("b.sac", SacBatchConverter.uniqueName("b.sac", used));
+        // a name already taken by a suffixed one moves on to the next suffix
+        assertEquals("a_1_1.sac", SacBatchConverter.uniqueName("a_1.sac", used));
+        assertEquals("c", SacBatchConverter.uniqueName("c", used));
+        assertEquals("c_1.sac", SacBatchConverter.uniqueName("c", used));
+    }
+
+    List<File> files(int n) {
+        List<File> out = new ArrayList<File>();
+        for (int i = 0; i < n; i++) {
+            out.add(new File(tempDir, i + ".sac"));
+        }
+        return out;
+    }
+
+    static LocalSeismogramImpl seismogram(int seed, int offsetSeconds) {
+        LocalSeismogramImpl spike = MockSeismogram.createSpike();
+        int[] data = new int[500];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = ((i + seed) * 37) % 201 - 100;
+        }
+        LocalSeismogramImpl out = new LocalSeismogramImpl(spike, data);
+        out.begin_time = spike.getBeginTime().plusSeconds(offsetSeconds);
+        return out;
+    }
+
+    @TempDir
+    File tempDir;
+}
@@ -0,0 +1,141 @@
+package edu.sc.seis.sod.util.convert.sac;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.model.station.ChannelId;
+
+public class SacCatalogTest {
+
+    @Test
+    public void testScanMixedTree() throws Exception {
+        File a = new File(tempDir, "a");
+        File b = new File(a, "b");
+        b.mkdirs();
+        for (int hour = 0; hour < 3; hour++) {
+            writeSac(new File(a, "z" + hour + ".sac"), "BHZ", hour);
+            writeSac(new File(b, "n" + hour + ".sac"), "BHN", hour);
+        }
+        File text = new File(a, "readme.txt");
+        Files.write(text.toPath(), "not sac".getBytes());
+        File zeros = new File(b, "zeros.sac");
+        Files.write(zeros.toPath(), new byte[SacToFissures.HEADER_BYTES + 400]);
+        File empty = new File(tempDir, "empty");
+        Files.write(empty.toPath(), new byte[0]);
+        SacCatalog catalog = new SacCatalog();
+        catalog.scan(tempDir);
+        assertEquals(6, catalog.size());
+        assertEquals(2, catalog.getChannels().size());
+        assertEquals(3, catalog.getFailures().size());
+        assertTrue(catalog.getFailures().containsKey(text));
+        assertTrue(catalog.getFailures().containsKey(zeros));
+        assertTrue(catalog.getFailures().containsKey(empty));
+        for (String chan : catalog.getChannels()) {
+            assertTrue(chan.contains("BHZ") || chan.contains("BHN"), chan);
+        }
+    }
+
+    @Test
+    public void testFindByChannelAndTime() throws Exception {
+        List<File> files = new ArrayList<File>();
+        for (int hour = 0; hour < 4; hour++) {
+            files.add(writeSac(new File(tempDir, "z" + hour + ".sac"), "BHZ", hour));
+            files.add(writeSac(new File(tempDir, "e" + hour + ".sac"), "BHE", hour));
+        }
+        SacCatalog catalog = new SacCatalog();
+        catalog.scan(files);
+        ChannelId bhz = SacToFissures.getChannelId(SacToFissures.readHeader(files.get(0)));
+        List<SacCatalog.Entry> entries = catalog.getEntries(bhz);
+        assertEquals(4, entries.size());
+        SacCatalog.Entry one = entries.get(1);
+        SacCatalog.Entry two = entries.get(2);
+        // the ends are inclusive
+        assertFiles(catalog.find(bhz, one.getBeginTime(), two.getBeginTime()), files.get(2), files.get(4));
+        assertFiles(catalog.find(bhz, one.getEndTime(), one.getEndTime()), files.get(2));
+        // between two files
+        assertFiles(catalog.find(bhz, one.getEndTime().plusNanos(1), two.getBeginTime().minusNanos(1)));
+        assertFiles(catalog.find(bhz, T0.minusSeconds(7200), T0.minusSeconds(3600)));
+        assertFiles(catalog.find(bhz, T0.minusSeconds(7200), T0.plusSeconds(100 * 3600)),
+                    files.get(0),
+                    files.get(2),
+                    files.get(4),
+                    files.get(6));
+        // all channels, sorted by channel then time, BHE before BHZ
+        assertFiles(catalog.find(one.getBeginTime(), two.getBeginTime()),
+                    files.get(3),
+                    files.get(5),
+                    files.get(2),
+                    files.get(4));
+        ChannelId missing = new ChannelId(bhz.getNetworkId(), bhz.getStationCode(), bhz.getLocCode(), "LHZ", T0);
+        assertEquals(0, catalog.find(missing, T0.minusSeconds(7200), T0.plusSeconds(100 * 3600)).size());
+        assertEquals(0, catalog.getEntries(missing).size());
+    }
+
+    @Test
+    public void testAddedOutOfOrder() throws Exception {
+        List<SacCatalog.Entry> entries = new ArrayList<SacCatalog.Entry>();
+        for (int hour = 0; hour < 6; hour++) {
+            File f = writeSac(new File(tempDir, hour + ".sac"), "BHZ", hour);
+            entries.add(new SacCatalog.Entry(f, SacToFissures.readHeader(f)));
+        }
+        SacCatalog catalog = new SacCatalog();
+        for (int i : new int[] {3, 0, 5, 1, 4, 2}) {
+            catalog.add(entries.get(i));
+        }
+        List<SacCatalog.Entry> sorted = catalog.getEntries(entries.get(0).getChannelId());
+        assertEquals(entries.size(), sorted.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.get(i).getFile(), sorted.get(i).getFile());
+        }
+        // scanning in parallel gives the same order
+        SacCatalog scanned = new SacCatalog();
+        scanned.scan(tempDir);
+        sorted = scanned.getEntries(entries.get(0).getChannelId());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(entries.get(i).getFile(), sorted.get(i).getFile());
+        }
+    }
+
+    static void assertFiles(List<SacCatalog.Entry> actual, File... expected) {
+        List<File> files = new ArrayList<File>();
+        for (SacCatalog.Entry entry : actual) {
+            files.add(entry.getFile());
+        }
+        assertEquals(Arrays.asList(expected), files);
+    }
+
+    static File writeSac(File file, String channelCode, int hour) throws Exception {
+        LocalSeismogramImpl spike = MockSeismogram.createSpike();
+        int[] data = new int[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i * 37) % 201 - 100;
+        }
+        LocalSeismogramImpl seis = new LocalSeismogramImpl(spike, data);
+        ChannelId chan = spike.channel_id;
+        seis.channel_id = new ChannelId(chan.getNetworkId(),
+                                        chan.getStationCode(),
+                                        chan.getLocCode(),
+                                        channelCode,
+                                        T0);
+        seis.begin_time = T0.plusSeconds(3600 * hour);
+        FissuresToSac.getSAC(seis).write(file);
+        return file;
+    }
+
+    static final Instant T0 = Instant.parse("2020-01-01T00:00:00Z");
+
+    @TempDir
+    File tempDir;
+}
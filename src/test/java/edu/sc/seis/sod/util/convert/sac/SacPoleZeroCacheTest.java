@@ -0,0 +1,166 @@
+package edu.sc.seis.sod.util.convert.sac;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+
+import org.junit.jupiter.api.Test;
+
+import edu.sc.seis.seisFile.fdsnws.stationxml.Response;
+import edu.sc.seis.seisFile.sac.SacPoleZero;
+
+public class SacPoleZeroCacheTest {
+
+    @Test
+    public void testIdenticalResponsesConvertOnce() throws Exception {
+        SacPoleZeroCache cache = new SacPoleZeroCache();
+        SacPoleZero first = cache.convert(response("M/S", 1.5e9));
+        // a separately parsed but identical response
+        SacPoleZero second = cache.convert(response("M/S", 1.5e9));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0.5, cache.getHitRate());
+        assertEquals(1, cache.size());
+        assertEquals(first.getConstant(), second.getConstant());
+        assertEquals(first.getPoles().length, second.getPoles().length);
+        assertEquals(first.getZeros().length, second.getZeros().length);
+        SacPoleZero direct = StationXMLToSacPoleZero.convert(response("M/S", 1.5e9));
+        assertEquals(direct.getConstant(), first.getConstant());
+    }
+
+    @Test
+    public void testSensitivityAndUnitsKeptApart() throws Exception {
+        SacPoleZeroCache cache = new SacPoleZeroCache();
+        SacPoleZero velocity = cache.convert(response("M/S", 1.5e9));
+        SacPoleZero louder = cache.convert(response("M/S", 3e9));
+        SacPoleZero displacement = cache.convert(response("M", 1.5e9));
+        assertEquals(3, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(3, cache.size());
+        assertNotEquals(velocity.getConstant(), louder.getConstant());
+        // velocity gets one more zero at the origin than displacement
+        assertEquals(displacement.getZeros().length + 1, velocity.getZeros().length);
+        assertNotEquals(SacPoleZeroCache.getKey(response("M/S", 1.5e9)),
+                        SacPoleZeroCache.getKey(response("M", 1.5e9)));
+        assertEquals(SacPoleZeroCache.getKey(response("M/S", 1.5e9)), SacPoleZeroCache.getKey(response("M/S", 1.5e9)));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        SacPoleZeroCache cache = new SacPoleZeroCache(2);
+        cache.convert(response("M/S", 1e9));
+        cache.convert(response("M/S", 2e9));
+        assertEquals(0, cache.getEvictionCount());
+        // touch the first, so the second is least recently used
+        cache.convert(response("M/S", 1e9));
+        cache.convert(response("M/S", 3e9));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        cache.convert(response("M/S", 1e9));
+        assertEquals(2, cache.getHitCount());
+        cache.convert(response("M/S", 2e9));
+        assertEquals(4, cache.getMissCount());
+        assertEquals(2, cache.getEvictionCount());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCopyProtectsCachedArrays() throws Exception {
+        SacPoleZeroCache cache = new SacPoleZeroCache();
+        SacPoleZero first = cache.convert(response("M/S", 1.5e9));
+        Object pole = first.getPoles()[0];
+        Object zero = first.getZeros()[0];
+        first.getPoles()[0] = null;
+        first.getZeros()[0] = null;
+        SacPoleZero second = cache.convert(response("M/S", 1.5e9));
+        assertEquals(1, cache.getHitCount());
+        assertNotSame(first.getPoles(), second.getPoles());
+        assertSame(pole, second.getPoles()[0]);
+        assertSame(zero, second.getZeros()[0]);
+    }
+
+    @Test
+    public void testConvertAllSkipsNonPolesZeros() throws Exception {
+        Map<String, Response> responses = new HashMap<String, Response>();
+        responses.put("a", response("M/S", 1.5e9));
+        responses.put("b", response("M/S", 1.5e9));
+        responses.put("c", response("M", 1.5e9));
+        responses.put("coefficients", coefficientsResponse());
+        SacPoleZeroCache cache = new SacPoleZeroCache();
+        Map<String, SacPoleZero> out = cache.convertAll(responses);
+        assertEquals(3, out.size());
+        assertFalse(out.containsKey("coefficients"));
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getHitCount() + cache.getMissCount());
+        assertEquals(out.get("a").getConstant(), out.get("b").getConstant());
+    }
+
+    @Test
+    public void testGetFirstPolesZeros() throws Exception {
+        assertNotNull(StationXMLToSacPoleZero.getFirstPolesZeros(response("M/S", 1.5e9)));
+        Response coefficients = coefficientsResponse();
+        assertThrows(IllegalArgumentException.class, () -> StationXMLToSacPoleZero.getFirstPolesZeros(coefficients));
+        assertThrows(IllegalArgumentException.class, () -> new SacPoleZeroCache().convert(coefficients));
+        assertTrue(StationXMLToSacPoleZero.getFirstPolesZeros(response("M", 1.5e9)).getPoleList().size() > 0);
+    }
+
+    static Response response(String inputUnit, double sensitivity) throws Exception {
+        return parse(sensitivityXML(inputUnit, sensitivity)
+                + "<Stage number=\"1\"><PolesZeros>"
+                + "<InputUnits><Name>" + inputUnit + "</Name><Description>ground motion</Description></InputUnits>"
+                + "<OutputUnits><Name>V</Name></OutputUnits>"
+                + "<PzTransferFunctionType>LAPLACE (RADIANS/SECOND)</PzTransferFunctionType>"
+                + "<NormalizationFactor>1.0</NormalizationFactor>"
+                + "<NormalizationFrequency>1.0</NormalizationFrequency>"
+                + "<Zero number=\"0\"><Real>0</Real><Imaginary>0</Imaginary></Zero>"
+                + "<Pole number=\"0\"><Real>-0.037</Real><Imaginary>0.037</Imaginary></Pole>"
+                + "<Pole number=\"1\"><Real>-0.037</Real><Imaginary>-0.037</Imaginary></Pole>"
+                + "</PolesZeros>"
+                + "<StageGain><Value>1500</Value><Frequency>1.0</Frequency></StageGain>"
+                + "</Stage></Response>");
+    }
+
+    /** first stage is Coefficients rather than PolesZeros */
+    static Response coefficientsResponse() throws Exception {
+        return parse(sensitivityXML("M/S", 1.5e9)
+                + "<Stage number=\"1\"><Coefficients>"
+                + "<InputUnits><Name>M/S</Name></InputUnits>"
+                + "<OutputUnits><Name>COUNTS</Name></OutputUnits>"
+                + "<CfTransferFunctionType>DIGITAL</CfTransferFunctionType>"
+                + "<Numerator>1.0</Numerator>"
+                + "</Coefficients>"
+                + "<StageGain><Value>1.5e9</Value><Frequency>1.0</Frequency></StageGain>"
+                + "</Stage></Response>");
+    }
+
+    static String sensitivityXML(String inputUnit, double sensitivity) {
+        return "<Response><InstrumentSensitivity>"
+                + "<Value>" + sensitivity + "</Value><Frequency>1.0</Frequency>"
+                + "<InputUnits><Name>" + inputUnit + "</Name></InputUnits>"
+                + "<OutputUnits><Name>COUNTS</Name></OutputUnits>"
+                + "</InstrumentSensitivity>";
+    }
+
+    static Response parse(String xml) throws Exception {
+        XMLEventReader reader = XMLInputFactory.newInstance().createXMLEventReader(new StringReader(xml));
+        while ( ! reader.peek().isStartElement()) {
+            reader.nextEvent();
+        }
+        return new Response(reader);
+    }
+}
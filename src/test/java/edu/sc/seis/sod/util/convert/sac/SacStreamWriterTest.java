@@ -0,0 +1,81 @@
+package edu.sc.seis.sod.util.convert.sac;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.iris.dmc.seedcodec.B1000Types;
+import edu.sc.seis.seisFile.mseed.DataRecord;
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.util.convert.mseed.FissuresConvert;
+import edu.sc.seis.sod.util.convert.mseed.MappedMSeedReader;
+
+public class SacStreamWriterTest {
+
+    @Test
+    public void testIntsMatchGetSAC() throws Exception {
+        int[] data = new int[3 * SacStreamWriter.BLOCK_SAMPLES + 17];
+        Random r = new Random(3);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = r.nextInt(20001) - 10000;
+        }
+        assertSameBytes(new LocalSeismogramImpl(MockSeismogram.createSpike(), data));
+    }
+
+    @Test
+    public void testFloatsMatchGetSAC() throws Exception {
+        float[] data = new float[SacStreamWriter.BLOCK_SAMPLES + 5];
+        Random r = new Random(5);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (float)r.nextGaussian() * 100;
+        }
+        assertSameBytes(new LocalSeismogramImpl(MockSeismogram.createSpike(), data));
+    }
+
+    @Test
+    public void testEncodedMatchGetSAC() throws Exception {
+        int[] data = new int[10000];
+        int v = 0;
+        Random r = new Random(11);
+        for (int i = 0; i < data.length; i++) {
+            v += r.nextInt(201) - 100;
+            data[i] = v;
+        }
+        LocalSeismogramImpl seis = new LocalSeismogramImpl(MockSeismogram.createSpike(), data);
+        DataRecord[] records = FissuresConvert.toMSeed(seis, 1, B1000Types.STEIM2, FissuresConvert.RECORD_SIZE_4096);
+        File mseed = new File(tempDir, "encoded.mseed");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(mseed))) {
+            for (DataRecord dr : records) {
+                dr.write(out);
+            }
+        }
+        List<LocalSeismogramImpl> read = MappedMSeedReader.read(mseed);
+        assertEquals(1, read.size());
+        LocalSeismogramImpl encoded = read.get(0);
+        assertTrue(encoded.is_encoded());
+        assertTrue(encoded.get_as_encoded().length > 1);
+        assertSameBytes(encoded);
+    }
+
+    void assertSameBytes(LocalSeismogramImpl seis) throws Exception {
+        File expected = new File(tempDir, "getSAC.sac");
+        File actual = new File(tempDir, "stream.sac");
+        FissuresToSac.getSAC(seis).write(expected);
+        SacStreamWriter.write(seis, actual);
+        assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(actual.toPath()));
+    }
+
+    @TempDir
+    File tempDir;
+}
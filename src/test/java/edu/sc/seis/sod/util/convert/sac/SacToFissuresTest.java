@@ -0,0 +1,99 @@
+package edu.sc.seis.sod.util.convert.sac;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.sc.seis.seisFile.sac.SacHeader;
+import edu.sc.seis.seisFile.sac.SacTimeSeries;
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+
+public class SacToFissuresTest {
+
+    @Test
+    public void testReadHeaderBigEndian() throws Exception {
+        File file = writeSac("big.sac");
+        assertSameHeader(SacTimeSeries.read(file).getHeader(), SacToFissures.readHeader(file));
+    }
+
+    @Test
+    public void testReadHeaderLittleEndian() throws Exception {
+        File big = writeSac("big.sac");
+        byte[] bytes = Files.readAllBytes(big.toPath());
+        // every word except the 192 bytes of strings in the header
+        for (int i = 0; i < bytes.length; i += 4) {
+            if (i == SacToFissures.NUMERIC_HEADER_BYTES) {
+                i = SacToFissures.HEADER_BYTES;
+            }
+            swapWord(bytes, i);
+        }
+        File little = new File(tempDir, "little.sac");
+        Files.write(little.toPath(), bytes);
+        SacTimeSeries expected = SacTimeSeries.read(big);
+        SacTimeSeries fromLittle = SacTimeSeries.read(little);
+        assertArrayEquals(expected.getY(), fromLittle.getY());
+        assertSameHeader(expected.getHeader(), SacToFissures.readHeader(little));
+        assertSameHeader(fromLittle.getHeader(), SacToFissures.readHeader(little));
+    }
+
+    @Test
+    public void testReadHeaderNotSac() throws Exception {
+        File shortFile = new File(tempDir, "short.sac");
+        Files.write(shortFile.toPath(), new byte[100]);
+        assertThrows(IOException.class, () -> SacToFissures.readHeader(shortFile));
+        File zeros = new File(tempDir, "zeros.sac");
+        Files.write(zeros.toPath(), new byte[SacToFissures.HEADER_BYTES]);
+        assertThrows(IOException.class, () -> SacToFissures.readHeader(zeros));
+    }
+
+    static void assertSameHeader(SacHeader expected, SacHeader actual) {
+        assertEquals(expected.getNvhdr(), actual.getNvhdr());
+        assertEquals(expected.getNpts(), actual.getNpts());
+        assertEquals(expected.getDelta(), actual.getDelta());
+        assertEquals(expected.getB(), actual.getB());
+        assertEquals(expected.getE(), actual.getE());
+        assertEquals(expected.getDepmin(), actual.getDepmin());
+        assertEquals(expected.getDepmax(), actual.getDepmax());
+        assertEquals(expected.getNzyear(), actual.getNzyear());
+        assertEquals(expected.getNzjday(), actual.getNzjday());
+        assertEquals(expected.getNzhour(), actual.getNzhour());
+        assertEquals(expected.getNzmin(), actual.getNzmin());
+        assertEquals(expected.getNzsec(), actual.getNzsec());
+        assertEquals(expected.getNzmsec(), actual.getNzmsec());
+        assertEquals(expected.getKnetwk(), actual.getKnetwk());
+        assertEquals(expected.getKstnm(), actual.getKstnm());
+        assertEquals(expected.getKcmpnm(), actual.getKcmpnm());
+        assertEquals(SacToFissures.getSeismogramBeginTime(expected), SacToFissures.getSeismogramBeginTime(actual));
+    }
+
+    static void swapWord(byte[] bytes, int i) {
+        byte b = bytes[i];
+        bytes[i] = bytes[i + 3];
+        bytes[i + 3] = b;
+        b = bytes[i + 1];
+        bytes[i + 1] = bytes[i + 2];
+        bytes[i + 2] = b;
+    }
+
+    File writeSac(String name) throws Exception {
+        int[] data = new int[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i * 37) % 201 - 100;
+        }
+        LocalSeismogramImpl seis = new LocalSeismogramImpl(MockSeismogram.createSpike(), data);
+        File file = new File(tempDir, name);
+        FissuresToSac.getSAC(seis).write(file);
+        return file;
+    }
+
+    @TempDir
+    File tempDir;
+}
@@ -0,0 +1,44 @@
+package edu.sc.seis.sod.util.convert.wav;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.iris.dmc.seedcodec.B1000Types;
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.common.TimeRange;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.model.seismogram.TimeSeriesDataSel;
+import edu.sc.seis.sod.util.convert.mseed.SteimEncoder;
+
+public class FissuresToWAVTest {
+
+    @Test
+    public void testEncodedMatchesDecoded() throws Exception {
+        int[] data = new int[5000];
+        Random r = new Random(7);
+        int v = 0;
+        for (int i = 0; i < data.length; i++) {
+            v += r.nextInt(2001) - 1000;
+            data[i] = v;
+        }
+        LocalSeismogramImpl plain = new LocalSeismogramImpl(MockSeismogram.createSpike(), data);
+        TimeSeriesDataSel td = new TimeSeriesDataSel();
+        td.encoded_values(new SteimEncoder(B1000Types.STEIM1).encodeAll(data, 7));
+        LocalSeismogramImpl encoded = new LocalSeismogramImpl(plain, td);
+        encoded.num_points = data.length;
+        assertTrue(encoded.is_encoded());
+        assertArrayEquals(toWAV(plain), toWAV(encoded));
+    }
+
+    static byte[] toWAV(LocalSeismogramImpl seis) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new FissuresToWAV(seis, 1).writeWAV(new DataOutputStream(bytes), new TimeRange(seis));
+        return bytes.toByteArray();
+    }
+}
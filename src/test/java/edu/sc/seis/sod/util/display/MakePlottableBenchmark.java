@@ -0,0 +1,41 @@
+package edu.sc.seis.sod.util.display;
+
+import edu.iris.dmc.seedcodec.CodecException;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+
+/**
+ * Times the single pass SimplePlotUtil.makePlottable against the per pixel
+ * getMinValue/getMaxValue loop it replaced. Not part of the unit tests, run
+ * the main method by hand, optionally with the number of samples and the
+ * pixels per day as arguments.
+ */
+public class MakePlottableBenchmark {
+
+    public static void main(String[] args) throws CodecException {
+        int numPoints = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        int pixelsPerDay = args.length > 1 ? Integer.parseInt(args[1]) : 12000;
+        LocalSeismogramImpl seis = SimplePlotUtilTest.createNoise(numPoints);
+        for (int i = 0; i < WARM_UP; i++) {
+            SimplePlotUtil.makePlottable(seis, pixelsPerDay);
+            SimplePlotUtilTest.makePlottablePerPixel(seis, pixelsPerDay);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            SimplePlotUtil.makePlottable(seis, pixelsPerDay);
+        }
+        long fast = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            SimplePlotUtilTest.makePlottablePerPixel(seis, pixelsPerDay);
+        }
+        long slow = System.nanoTime() - start;
+        System.out.println("makePlottable " + numPoints + " samples at " + pixelsPerDay + " pixels per day");
+        System.out.println("  single pass          " + fast / (RUNS * 1000000.0) + " ms");
+        System.out.println("  per pixel min/max    " + slow / (RUNS * 1000000.0) + " ms");
+        System.out.println("  speedup              " + ((double)slow / fast));
+    }
+
+    static final int WARM_UP = 5;
+
+    static final int RUNS = 10;
+}
@@ -0,0 +1,215 @@
+package edu.sc.seis.sod.util.display;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import edu.sc.seis.sod.model.seismogram.Plottable;
+import edu.sc.seis.sod.model.seismogram.PlottableChunk;
+
+public class PlottableChunkCacheTest {
+
+    @Test
+    public void testByteWeightedEviction() {
+        List<PlottableChunk> small = chunks(10);
+        List<PlottableChunk> big = chunks(100);
+        long smallWeight = PlottableChunkCache.weigh(small);
+        long bigWeight = PlottableChunkCache.weigh(big);
+        assertEquals(PlottableChunkCache.ENTRY_OVERHEAD + PlottableChunkCache.CHUNK_OVERHEAD + 2 * 4 * 2 * 10,
+                     smallWeight);
+        // room for one big and two small, but not two big
+        PlottableChunkCache cache = new PlottableChunkCache(bigWeight + 2 * smallWeight, 1);
+        cache.put(key("A"), small);
+        cache.put(key("B"), small);
+        cache.put(key("C"), big);
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals(bigWeight + 2 * smallWeight, cache.getWeight());
+        // touch A so B is the least recently used
+        assertNotNull(cache.get(key("A")));
+        cache.put(key("D"), small);
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(key("B")));
+        assertNotNull(cache.get(key("A")));
+        assertNotNull(cache.get(key("C")));
+        assertNotNull(cache.get(key("D")));
+        // a second big entry pushes out everything older until it fits
+        cache.put(key("E"), big);
+        assertTrue(cache.getWeight() <= bigWeight + 2 * smallWeight);
+        assertNotNull(cache.get(key("E")));
+        assertNull(cache.get(key("A")));
+        assertNull(cache.get(key("C")));
+        // replacing an entry swaps its weight rather than adding to it
+        long before = cache.getWeight();
+        cache.put(key("E"), big);
+        assertEquals(before, cache.getWeight());
+    }
+
+    @Test
+    public void testEntryLargerThanSegmentIsKept() {
+        List<PlottableChunk> big = chunks(100);
+        PlottableChunkCache cache = new PlottableChunkCache(PlottableChunkCache.weigh(big) / 2, 1);
+        cache.put(key("A"), chunks(1));
+        cache.put(key("B"), big);
+        assertNull(cache.get(key("A")));
+        assertSame(big.get(0), cache.get(key("B")).get(0));
+        assertEquals(PlottableChunkCache.weigh(big), cache.getWeight());
+        cache.remove(key("B"));
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testSegmentBoundaries() {
+        List<PlottableChunk> small = chunks(10);
+        long smallWeight = PlottableChunkCache.weigh(small);
+        int numSegments = 4;
+        // each segment has room for exactly two entries
+        PlottableChunkCache cache = new PlottableChunkCache(numSegments * 2 * smallWeight, numSegments);
+        List<PlottableChunkCache.Key> same = new ArrayList<PlottableChunkCache.Key>();
+        List<PlottableChunkCache.Key> other = new ArrayList<PlottableChunkCache.Key>();
+        PlottableChunkCache.Segment first = cache.segmentFor(key("C0"));
+        for (int i = 0; same.size() < 3 || other.isEmpty(); i++) {
+            PlottableChunkCache.Key k = key("C" + i);
+            if (cache.segmentFor(k) == first) {
+                same.add(k);
+            } else {
+                other.add(k);
+            }
+        }
+        cache.put(other.get(0), small);
+        cache.put(same.get(0), small);
+        cache.put(same.get(1), small);
+        assertEquals(0, cache.getEvictionCount());
+        // a third entry in the full segment evicts from that segment only
+        cache.put(same.get(2), small);
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(same.get(0)));
+        assertNotNull(cache.get(same.get(1)));
+        assertNotNull(cache.get(same.get(2)));
+        assertNotNull(cache.get(other.get(0)));
+        assertEquals(3 * smallWeight, cache.getWeight());
+    }
+
+    @Test
+    public void testHitMissCounters() throws Exception {
+        PlottableChunkCache cache = new PlottableChunkCache(1000000);
+        assertNull(cache.get(key("A")));
+        assertCounts(cache, 0, 1);
+        cache.put(key("A"), chunks(10));
+        assertNotNull(cache.get(key("A")));
+        assertCounts(cache, 1, 1);
+        AtomicInteger loads = new AtomicInteger();
+        List<PlottableChunk> loaded = cache.getOrCompute(key("B"), () -> {
+            loads.incrementAndGet();
+            return chunks(5);
+        });
+        assertCounts(cache, 1, 2);
+        assertSame(loaded, cache.getOrCompute(key("B"), () -> {
+            loads.incrementAndGet();
+            return chunks(5);
+        }));
+        assertCounts(cache, 2, 2);
+        assertEquals(1, loads.get());
+        cache.clear();
+        assertNull(cache.get(key("A")));
+        assertCounts(cache, 2, 3);
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testDerivedMatchedToSourceList() {
+        PlottableChunkCache cache = new PlottableChunkCache(1000000);
+        PlottableChunkCache.Key k = key("A");
+        cache.put(k, Arrays.asList(chunk(0, 10, 1), chunk(10, 10, 2)));
+        List<PlottableChunk> source = cache.get(k);
+        assertCounts(cache, 1, 0);
+        List<PlottableChunk> merged = cache.merge(k, source);
+        assertCounts(cache, 1, 1);
+        assertEquals(1, merged.size());
+        assertEquals(20, merged.get(0).getNumPixels());
+        assertSame(merged, cache.merge(k, source));
+        assertCounts(cache, 2, 1);
+        // merge and convertToCommonPixelScale are cached apart
+        List<PlottableChunk> scaled = cache.convertToCommonPixelScale(k, source);
+        assertCounts(cache, 2, 2);
+        assertNotSame(merged, scaled);
+        assertSame(scaled, cache.convertToCommonPixelScale(k, source));
+        assertSame(merged, cache.merge(k, source));
+        assertCounts(cache, 4, 2);
+        // an equal but different list is not trusted to hold the same chunks
+        List<PlottableChunk> copy = new ArrayList<PlottableChunk>(source);
+        assertNotSame(merged, cache.merge(k, copy));
+        assertCounts(cache, 4, 3);
+    }
+
+    @Test
+    public void testPutAndRemoveDropDerived() {
+        PlottableChunkCache cache = new PlottableChunkCache(1000000);
+        PlottableChunkCache.Key k = key("A");
+        List<PlottableChunk> source = Arrays.asList(chunk(0, 10, 1), chunk(20, 10, 2));
+        cache.put(k, source);
+        List<PlottableChunk> merged = cache.merge(k, source);
+        assertEquals(2, merged.size());
+        long withDerived = cache.getWeight();
+        cache.put(k, source);
+        assertTrue(cache.getWeight() < withDerived);
+        List<PlottableChunk> again = cache.merge(k, source);
+        assertNotSame(merged, again);
+        cache.convertToCommonPixelScale(k, source);
+        cache.remove(k);
+        assertEquals(0, cache.getWeight());
+        assertNull(cache.get(k));
+        // a put for another key leaves this key's results alone
+        cache.put(k, source);
+        merged = cache.merge(k, source);
+        cache.put(key("B"), source);
+        assertSame(merged, cache.merge(k, source));
+    }
+
+    static void assertCounts(PlottableChunkCache cache, long hits, long misses) {
+        assertEquals(hits, cache.getHitCount(), "hits");
+        assertEquals(misses, cache.getMissCount(), "misses");
+    }
+
+    static PlottableChunkCache.Key key(String channel) {
+        return new PlottableChunkCache.Key("XX", "ABC", "00", channel, DAY, PPD);
+    }
+
+    static List<PlottableChunk> chunks(int numPixels) {
+        List<PlottableChunk> out = new ArrayList<PlottableChunk>();
+        out.add(chunk(0, numPixels, 1));
+        return out;
+    }
+
+    static PlottableChunk chunk(int beginPixel, int numPixels, int value) {
+        int[] x = new int[2 * numPixels];
+        int[] y = new int[2 * numPixels];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = beginPixel + i / 2;
+            y[i] = value;
+        }
+        return new PlottableChunk(new Plottable(x, y),
+                                  beginPixel,
+                                  PlottableChunk.getJDay(DAY),
+                                  PlottableChunk.getYear(DAY),
+                                  PPD,
+                                  "XX",
+                                  "ABC",
+                                  "00",
+                                  "BHZ");
+    }
+
+    static final int PPD = 1440;
+
+    static final Instant DAY = Instant.parse("2020-01-01T00:00:00Z");
+}
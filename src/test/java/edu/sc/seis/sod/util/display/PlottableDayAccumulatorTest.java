@@ -0,0 +1,163 @@
+package edu.sc.seis.sod.util.display;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import edu.sc.seis.seisFile.TimeUtils;
+import edu.sc.seis.sod.model.seismogram.Plottable;
+import edu.sc.seis.sod.model.seismogram.PlottableChunk;
+import edu.sc.seis.sod.util.time.ReduceTool;
+
+public class PlottableDayAccumulatorTest {
+
+    @Test
+    public void testSplitAtMidnight() {
+        PlottableDayAccumulator acc = new PlottableDayAccumulator();
+        acc.add(chunk(PPD - 3, 6, 100));
+        assertEquals(2, acc.getDays().size());
+        List<PlottableChunk> today = acc.getChunks(key(DAY));
+        assertEquals(1, today.size());
+        assertEquals(PPD - 3, today.get(0).getBeginPixel());
+        assertEquals(3, today.get(0).getNumPixels());
+        assertEquals(100, today.get(0).getData().y_coor[0]);
+        List<PlottableChunk> tomorrow = acc.getChunks(key(DAY.plus(TimeUtils.ONE_DAY)));
+        assertEquals(1, tomorrow.size());
+        assertEquals(0, tomorrow.get(0).getBeginPixel());
+        assertEquals(3, tomorrow.get(0).getNumPixels());
+        assertEquals(103, tomorrow.get(0).getData().y_coor[0]);
+        assertEquals(PlottableChunk.getJDay(DAY.plus(TimeUtils.ONE_DAY)), tomorrow.get(0).getJDay());
+    }
+
+    @Test
+    public void testNegativeBeginPixel() {
+        PlottableDayAccumulator acc = new PlottableDayAccumulator();
+        acc.add(chunk(-2, 4, 100));
+        List<PlottableChunk> yesterday = acc.getChunks(key(DAY.minus(TimeUtils.ONE_DAY)));
+        assertEquals(1, yesterday.size());
+        assertEquals(PPD - 2, yesterday.get(0).getBeginPixel());
+        assertEquals(2, yesterday.get(0).getNumPixels());
+        assertEquals(100, yesterday.get(0).getData().y_coor[0]);
+        List<PlottableChunk> today = acc.getChunks(key(DAY));
+        assertEquals(0, today.get(0).getBeginPixel());
+        assertEquals(2, today.get(0).getNumPixels());
+        assertEquals(102, today.get(0).getData().y_coor[0]);
+    }
+
+    @Test
+    public void testLastChunkWins() {
+        PlottableDayAccumulator acc = new PlottableDayAccumulator();
+        acc.add(chunk(0, 10, 0));
+        acc.add(chunk(5, 10, 1000));
+        acc.add(chunk(8, 1, 5000));
+        Map<Integer, int[]> pixels = pixels(acc.getChunks(key(DAY)));
+        assertEquals(15, pixels.size());
+        assertArrayEquals(new int[] {4, 4 + SPREAD}, pixels.get(4));
+        assertArrayEquals(new int[] {1000, 1000 + SPREAD}, pixels.get(5));
+        assertArrayEquals(new int[] {5000, 5000 + SPREAD}, pixels.get(8));
+        assertArrayEquals(new int[] {1004, 1004 + SPREAD}, pixels.get(9));
+        assertEquals(15, acc.getNumFilledPixels(key(DAY)));
+    }
+
+    @Test
+    public void testRunsOfFilledPixels() {
+        PlottableDayAccumulator acc = new PlottableDayAccumulator();
+        acc.add(chunk(20, 10, 0));
+        acc.add(chunk(0, 10, 0));
+        acc.add(chunk(10, 5, 0));
+        acc.add(chunk(PPD - 1, 1, 0));
+        List<PlottableChunk> runs = acc.getChunks(key(DAY));
+        assertEquals(3, runs.size());
+        assertRun(runs.get(0), 0, 15);
+        assertRun(runs.get(1), 20, 10);
+        assertRun(runs.get(2), PPD - 1, 1);
+        assertEquals(0, acc.getChunks(key(DAY.plus(TimeUtils.ONE_DAY))).size());
+        acc.remove(key(DAY));
+        assertEquals(0, acc.getChunks(key(DAY)).size());
+        assertEquals(0, acc.getNumFilledPixels(key(DAY)));
+    }
+
+    @Test
+    public void testMatchesReduceToolMerge() {
+        Random r = new Random(9);
+        for (int trial = 0; trial < 20; trial++) {
+            List<PlottableChunk> chunks = new ArrayList<PlottableChunk>();
+            PlottableDayAccumulator acc = new PlottableDayAccumulator();
+            for (int i = 0; i < 10; i++) {
+                int numPixels = 1 + r.nextInt(50);
+                PlottableChunk c = chunk(r.nextInt(PPD - numPixels), numPixels, r.nextInt(10000));
+                chunks.add(c);
+                acc.add(c);
+            }
+            List<PlottableChunk> merged = ReduceTool.merge(chunks);
+            List<PlottableChunk> runs = acc.getChunks(key(DAY));
+            Map<Integer, int[]> expected = pixels(merged);
+            Map<Integer, int[]> actual = pixels(runs);
+            assertEquals(expected.keySet(), actual.keySet(), "trial " + trial);
+            for (Map.Entry<Integer, int[]> e : expected.entrySet()) {
+                assertArrayEquals(e.getValue(), actual.get(e.getKey()), "trial " + trial + " pixel " + e.getKey());
+            }
+        }
+    }
+
+    static void assertRun(PlottableChunk run, int beginPixel, int numPixels) {
+        assertEquals(beginPixel, run.getBeginPixel());
+        assertEquals(numPixels, run.getNumPixels());
+        assertEquals(2 * numPixels, run.getData().x_coor.length);
+        assertEquals(beginPixel, run.getData().x_coor[0]);
+        assertEquals(beginPixel + numPixels - 1, run.getData().x_coor[2 * numPixels - 1]);
+    }
+
+    /** pixel to min and max */
+    static Map<Integer, int[]> pixels(List<PlottableChunk> chunks) {
+        Map<Integer, int[]> out = new TreeMap<Integer, int[]>();
+        for (PlottableChunk c : chunks) {
+            int[] x = c.getData().x_coor;
+            int[] y = c.getData().y_coor;
+            for (int i = 0; i < x.length; i += 2) {
+                out.put(x[i], Arrays.copyOfRange(y, i, i + 2));
+            }
+        }
+        return out;
+    }
+
+    static PlottableChunkCache.Key key(Instant day) {
+        return new PlottableChunkCache.Key("XX", "ABC", "00", "BHZ", day, PPD);
+    }
+
+    /** pixel i of the chunk has min value + i and max SPREAD more */
+    static PlottableChunk chunk(int beginPixel, int numPixels, int value) {
+        int[] x = new int[2 * numPixels];
+        int[] y = new int[2 * numPixels];
+        for (int i = 0; i < numPixels; i++) {
+            x[2 * i] = beginPixel + i;
+            x[2 * i + 1] = beginPixel + i;
+            y[2 * i] = value + i;
+            y[2 * i + 1] = value + i + SPREAD;
+        }
+        return new PlottableChunk(new Plottable(x, y),
+                                  beginPixel,
+                                  PlottableChunk.getJDay(DAY),
+                                  PlottableChunk.getYear(DAY),
+                                  PPD,
+                                  "XX",
+                                  "ABC",
+                                  "00",
+                                  "BHZ");
+    }
+
+    static final int SPREAD = 7;
+
+    static final int PPD = 1440;
+
+    static final Instant DAY = Instant.parse("2020-03-01T00:00:00Z");
+}
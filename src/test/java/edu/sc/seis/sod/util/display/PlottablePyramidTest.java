@@ -0,0 +1,122 @@
+package edu.sc.seis.sod.util.display;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.sc.seis.sod.model.seismogram.Plottable;
+import edu.sc.seis.sod.model.seismogram.PlottableChunk;
+
+public class PlottablePyramidTest {
+
+    @Test
+    public void testHalveOddAndEvenEdges() {
+        Random r = new Random(3);
+        for (int begin : new int[] {0, 1, 2, 3, 10, 11, PPD - 8, PPD - 7}) {
+            for (int numPixels : new int[] {1, 2, 3, 4, 7, 8}) {
+                PlottableChunk fine = chunk(begin, numPixels, r);
+                PlottableChunk coarse = PlottablePyramid.halve(fine);
+                String msg = "begin " + begin + " pixels " + numPixels;
+                assertEquals(PPD / 2, coarse.getPixelsPerDay(), msg);
+                assertEquals(fine.getJDay(), coarse.getJDay(), msg);
+                assertEquals(fine.getYear(), coarse.getYear(), msg);
+                int first = begin / 2;
+                int last = (begin + numPixels - 1) / 2;
+                assertEquals(first, coarse.getBeginPixel(), msg);
+                assertEquals(last - first + 1, coarse.getNumPixels(), msg);
+                int[] x = coarse.getData().x_coor;
+                int[] y = coarse.getData().y_coor;
+                int[] fineY = fine.getData().y_coor;
+                for (int j = 0; j < coarse.getNumPixels(); j++) {
+                    int p = first + j;
+                    assertEquals(p, x[2 * j], msg);
+                    assertEquals(p, x[2 * j + 1], msg);
+                    int min = Integer.MAX_VALUE;
+                    int max = Integer.MIN_VALUE;
+                    // the two finer pixels, either may be outside the chunk
+                    for (int f = 2 * p; f <= 2 * p + 1; f++) {
+                        if (f >= begin && f < begin + numPixels) {
+                            min = Math.min(min, fineY[2 * (f - begin)]);
+                            max = Math.max(max, fineY[2 * (f - begin) + 1]);
+                        }
+                    }
+                    assertEquals(min, y[2 * j], msg + " pixel " + p);
+                    assertEquals(max, y[2 * j + 1], msg + " pixel " + p);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testHalveTwiceIsGroupsOfFour() {
+        PlottableChunk fine = chunk(5, 23, new Random(4));
+        PlottableChunk quarter = PlottablePyramid.halve(PlottablePyramid.halve(fine));
+        int[] fineY = fine.getData().y_coor;
+        assertEquals(1, quarter.getBeginPixel());
+        for (int j = 0; j < quarter.getNumPixels(); j++) {
+            int p = quarter.getBeginPixel() + j;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int f = Math.max(4 * p, 5); f < Math.min(4 * p + 4, 5 + 23); f++) {
+                min = Math.min(min, fineY[2 * (f - 5)]);
+                max = Math.max(max, fineY[2 * (f - 5) + 1]);
+            }
+            assertEquals(min, quarter.getData().y_coor[2 * j], "pixel " + p);
+            assertEquals(max, quarter.getData().y_coor[2 * j + 1], "pixel " + p);
+        }
+    }
+
+    @Test
+    public void testLevels() {
+        List<PlottableChunk> finest = new ArrayList<PlottableChunk>();
+        finest.add(chunk(0, 100, new Random(5)));
+        finest.add(chunk(300, 51, new Random(6)));
+        PlottablePyramid pyramid = new PlottablePyramid(finest, 100);
+        assertEquals(Arrays.asList(180, 360, 720, 1440), pyramid.getPixelsPerDayLevels());
+        assertEquals(2, pyramid.getLevel(180).size());
+        assertEquals(13, pyramid.getLevel(180).get(0).getNumPixels());
+        assertEquals(1440, pyramid.getClosestPixelsPerDay(5000));
+        assertEquals(180, pyramid.getClosestPixelsPerDay(10));
+        assertEquals(720, pyramid.getClosestPixelsPerDay(1000));
+        assertEquals(1440, pyramid.getClosestPixelsPerDay(1100));
+        // stops when pixels per day becomes odd
+        List<PlottableChunk> odd = new ArrayList<PlottableChunk>();
+        odd.add(chunk(0, 10, new Random(7), 1080));
+        assertEquals(Arrays.asList(135, 270, 540, 1080), new PlottablePyramid(odd, 1).getPixelsPerDayLevels());
+        assertEquals(0, new PlottablePyramid(new ArrayList<PlottableChunk>(), 1).getLevel(100).size());
+    }
+
+    static PlottableChunk chunk(int beginPixel, int numPixels, Random r) {
+        return chunk(beginPixel, numPixels, r, PPD);
+    }
+
+    static PlottableChunk chunk(int beginPixel, int numPixels, Random r, int pixelsPerDay) {
+        int[] x = new int[2 * numPixels];
+        int[] y = new int[2 * numPixels];
+        for (int i = 0; i < numPixels; i++) {
+            x[2 * i] = beginPixel + i;
+            x[2 * i + 1] = beginPixel + i;
+            y[2 * i] = r.nextInt(2000) - 1000;
+            y[2 * i + 1] = y[2 * i] + r.nextInt(500);
+        }
+        return new PlottableChunk(new Plottable(x, y),
+                                  beginPixel,
+                                  PlottableChunk.getJDay(DAY),
+                                  PlottableChunk.getYear(DAY),
+                                  pixelsPerDay,
+                                  "XX",
+                                  "ABC",
+                                  "00",
+                                  "BHZ");
+    }
+
+    static final int PPD = 1440;
+
+    static final Instant DAY = Instant.parse("2020-01-01T00:00:00Z");
+}
@@ -0,0 +1,215 @@
+package edu.sc.seis.sod.util.display;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Dimension;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.iris.dmc.seedcodec.CodecException;
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.common.FissuresException;
+import edu.sc.seis.sod.model.common.TimeRange;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.model.seismogram.Plottable;
+import edu.sc.seis.sod.model.util.LinearInterp;
+
+public class SimplePlotUtilTest {
+
+    @Test
+    public void testMakePlottableMatchesPerPixelMinMax() throws CodecException {
+        LocalSeismogramImpl seis = createNoise(100000);
+        for (int pixelsPerDay : new int[] {1440, 12000, 86400}) {
+            Plottable fast = SimplePlotUtil.makePlottable(seis, pixelsPerDay);
+            Plottable slow = makePlottablePerPixel(seis, pixelsPerDay);
+            assertArrayEquals(slow.x_coor, fast.x_coor, "x " + pixelsPerDay);
+            assertArrayEquals(slow.y_coor, fast.y_coor, "y " + pixelsPerDay);
+        }
+    }
+
+    @Test
+    public void testMorePixelsThanSamples() throws CodecException, FissuresException {
+        LocalSeismogramImpl seis = createNoise(50);
+        int[] data = seis.get_as_longs();
+        int dataMin = Integer.MAX_VALUE;
+        int dataMax = Integer.MIN_VALUE;
+        for (int v : data) {
+            dataMin = Math.min(dataMin, v);
+            dataMax = Math.max(dataMax, v);
+        }
+        // one millisecond pixels, more than one per sample
+        Plottable p = SimplePlotUtil.makePlottable(seis, 86400 * 1000);
+        int numPixels = p.y_coor.length / 2;
+        assertTrue(numPixels > data.length, "pixels " + numPixels + " samples " + data.length);
+        for (int i = 0; i < numPixels; i++) {
+            assertTrue(p.y_coor[2 * i] <= p.y_coor[2 * i + 1], "pixel " + i);
+            assertTrue(p.y_coor[2 * i] >= dataMin && p.y_coor[2 * i + 1] <= dataMax, "pixel " + i);
+        }
+    }
+
+    @Test
+    public void testBinMinMaxEmptyLastPixel() {
+        int[] data = new int[] {3, -1, 7};
+        int[] minMax = new int[8];
+        SimplePlotUtil.binMinMax(data, 0, new int[] {2, 3, 3, 3}, minMax);
+        assertArrayEquals(new int[] {-1, 3, 7, 7, 7, 7, 7, 7}, minMax);
+        double[] ddata = new double[] {3, -1, 7};
+        SimplePlotUtil.binMinMax(ddata, 0, new int[] {2, 3, 3, 3}, minMax);
+        assertArrayEquals(new int[] {-1, 3, 7, 7, 7, 7, 7, 7}, minMax);
+    }
+
+    @Test
+    public void testCompressXvaluesMatchesInterpolation() throws Exception {
+        // sample counts stay small enough that the float rounding in the old
+        // interpolation is exact
+        for (int numPoints : new int[] {2, 50, 1000, 9973}) {
+            LocalSeismogramImpl ints = createNoise(numPoints);
+            int[] data = ints.get_as_longs();
+            float[] fdata = new float[data.length];
+            for (int i = 0; i < data.length; i++) {
+                fdata[i] = data[i] + 0.25f;
+            }
+            LocalSeismogramImpl floats = new LocalSeismogramImpl(ints, fdata);
+            TimeRange whole = new TimeRange(ints);
+            Duration span = Duration.between(ints.getBeginTime(), ints.getEndTime());
+            TimeRange[] ranges = new TimeRange[] {whole,
+                                                  new TimeRange(ints.getBeginTime().plus(span.dividedBy(4)),
+                                                                ints.getEndTime().plus(span)),
+                                                  new TimeRange(ints.getBeginTime().minus(span),
+                                                                ints.getBeginTime().plus(span.dividedBy(3)))};
+            // includes more pixels than samples
+            for (int width : new int[] {1, 10, 100, 640, 2000}) {
+                for (TimeRange tr : ranges) {
+                    String msg = numPoints + " samples " + width + " wide " + tr;
+                    assertCompressMatches(ints, tr, width, msg);
+                    assertCompressMatches(floats, tr, width, "float " + msg);
+                }
+            }
+        }
+    }
+
+    static void assertCompressMatches(LocalSeismogramImpl seis, TimeRange tr, int width, String msg)
+            throws CodecException {
+        int[][] expected = compressXvaluesInterp(seis, tr, width);
+        int[][] actual = SimplePlotUtil.compressXvalues(seis, tr, new Dimension(width, 100));
+        assertArrayEquals(expected[0], actual[0], "x " + msg);
+        assertArrayEquals(expected[1], actual[1], "y " + msg);
+    }
+
+    /**
+     * the double interpolation per sample and temp array of y values
+     * compressXvalues used to use, for comparison
+     */
+    static int[][] compressXvaluesInterp(LocalSeismogramImpl seis, TimeRange timeRange, int width)
+            throws CodecException {
+        int[][] out = new int[2][];
+        if (seis.getEndTime().isBefore(timeRange.getBeginTime())
+                || seis.getBeginTime().isAfter(timeRange.getEndTime())) {
+            out[0] = new int[0];
+            out[1] = new int[0];
+            return out;
+        }
+        int seisStartIndex = SimplePlotUtil.getPoint(seis, timeRange.getBeginTime());
+        int seisEndIndex = SimplePlotUtil.getPoint(seis, timeRange.getEndTime());
+        if (seisStartIndex < 0) {
+            seisStartIndex = 0;
+        }
+        if (seisEndIndex >= seis.getNumPoints()) {
+            seisEndIndex = seis.getNumPoints() - 1;
+        }
+        Instant tempdate = SimplePlotUtil.getValue(seis.getNumPoints(),
+                                                   seis.getBeginTime(),
+                                                   seis.getEndTime(),
+                                                   seisStartIndex);
+        int pixelStartIndex = SimplePlotUtil.getPixel(width, timeRange, tempdate);
+        tempdate = SimplePlotUtil.getValue(seis.getNumPoints(), seis.getBeginTime(), seis.getEndTime(), seisEndIndex);
+        int pixelEndIndex = SimplePlotUtil.getPixel(width, timeRange, tempdate);
+        int pixels = seisEndIndex - seisStartIndex + 1;
+        out[0] = new int[2 * pixels];
+        out[1] = new int[out[0].length];
+        int tempYvalues[] = new int[out[0].length];
+        int seisIndex = seisStartIndex;
+        int numAdded = 0;
+        int xvalue = Math.round((float)(LinearInterp.linearInterp(seisStartIndex,
+                                                                  pixelStartIndex,
+                                                                  seisEndIndex,
+                                                                  pixelEndIndex,
+                                                                  seisIndex)));
+        seisIndex++;
+        int j = 0;
+        while (seisIndex <= seisEndIndex) {
+            int tempValue = Math.round((float)(LinearInterp.linearInterp(seisStartIndex,
+                                                                         pixelStartIndex,
+                                                                         seisEndIndex,
+                                                                         pixelEndIndex,
+                                                                         seisIndex)));
+            tempYvalues[j++] = (int)seis.getValueAt(seisIndex).getValue();
+            if (tempValue != xvalue) {
+                int min = Integer.MAX_VALUE;
+                int max = Integer.MIN_VALUE;
+                for (int i = 0; i < j; i++) {
+                    min = Math.min(min, tempYvalues[i]);
+                    max = Math.max(max, tempYvalues[i]);
+                }
+                out[0][numAdded] = xvalue;
+                out[0][numAdded + 1] = xvalue;
+                out[1][numAdded] = min;
+                out[1][numAdded + 1] = max;
+                j = 0;
+                xvalue = tempValue;
+                numAdded = numAdded + 2;
+            }
+            seisIndex++;
+        }
+        int temp[][] = new int[2][numAdded];
+        System.arraycopy(out[0], 0, temp[0], 0, numAdded);
+        System.arraycopy(out[1], 0, temp[1], 0, numAdded);
+        return temp;
+    }
+
+    static LocalSeismogramImpl createNoise(int numPoints) {
+        Random r = new Random(42);
+        int[] data = new int[numPoints];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = r.nextInt(20000) - 10000;
+        }
+        return new LocalSeismogramImpl(MockSeismogram.createSpike(), data);
+    }
+
+    /** the per pixel getMinValue/getMaxValue loop makePlottable used to use, for comparison */
+    static Plottable makePlottablePerPixel(LocalSeismogramImpl seis, int pixelsPerDay) throws CodecException {
+        TimeRange correctedSeisRange = SimplePlotUtil.correctTimeRangeForPixelData(seis, pixelsPerDay);
+        int startPoint = SimplePlotUtil.getPoint(seis, correctedSeisRange.getBeginTime());
+        int endPoint = SimplePlotUtil.getPoint(seis, correctedSeisRange.getEndTime());
+        IntRange seisPixelRange = SimplePlotUtil.getDayPixelRange(seis, pixelsPerDay, seis.getBeginTime());
+        int numPixels = seisPixelRange.getDifference();
+        Duration pixelPeriod = SimplePlotUtil.getPixelPeriod(pixelsPerDay);
+        if (correctedSeisRange.getBeginTime()
+                .plus(pixelPeriod.multipliedBy(numPixels))
+                .isAfter(correctedSeisRange.getEndTime())) {
+            numPixels--;
+        }
+        int startPixel = seisPixelRange.getMin();
+        int[][] pixels = new int[2][numPixels * 2];
+        int pixelPoint = startPixel < 0 ? 0 : startPoint;
+        Instant pixelEndTime = correctedSeisRange.getBeginTime();
+        for (int i = 0; i < numPixels; i++) {
+            pixelEndTime = pixelEndTime.plus(pixelPeriod);
+            pixels[0][2 * i] = startPixel + i;
+            pixels[0][2 * i + 1] = startPixel + i;
+            int nextPixelPoint = SimplePlotUtil.getPixel(startPoint,
+                                                         endPoint,
+                                                         correctedSeisRange.getBeginTime(),
+                                                         correctedSeisRange.getEndTime(),
+                                                         pixelEndTime);
+            pixels[1][2 * i] = (int)seis.getMinValue(pixelPoint, nextPixelPoint).getValue();
+            pixels[1][2 * i + 1] = (int)seis.getMaxValue(pixelPoint, nextPixelPoint).getValue();
+            pixelPoint = nextPixelPoint;
+        }
+        return new Plottable(pixels[0], pixels[1]);
+    }
+}
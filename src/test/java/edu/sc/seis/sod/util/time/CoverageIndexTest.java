@@ -0,0 +1,112 @@
+package edu.sc.seis.sod.util.time;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.sc.seis.seisFile.TimeUtils;
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.common.TimeRange;
+import edu.sc.seis.sod.model.seismogram.RequestFilter;
+import edu.sc.seis.sod.model.station.ChannelId;
+
+public class CoverageIndexTest {
+
+    @Test
+    public void testGaps() {
+        CoverageIndex.Coverage c = new CoverageIndex.Coverage(1);
+        c.add(T0.plusSeconds(10), T0.plusSeconds(20));
+        c.add(T0.plusSeconds(30), T0.plusSeconds(40));
+        c.add(T0.plusSeconds(35), T0.plusSeconds(50));
+        c.add(T0.plusSeconds(50), T0.plusSeconds(60));
+        assertEquals(2, c.size());
+        RequestFilter[] gaps = CoverageTool.notCovered(new RequestFilter[] {rf(T0, T0.plusSeconds(70))}, c);
+        assertEquals(3, gaps.length);
+        assertRange(T0, T0.plusSeconds(10), gaps[0]);
+        assertRange(T0.plusSeconds(20), T0.plusSeconds(30), gaps[1]);
+        assertRange(T0.plusSeconds(60), T0.plusSeconds(70), gaps[2]);
+        assertTrue(c.isCovered(T0.plusSeconds(31), T0.plusSeconds(59)));
+        assertFalse(c.isCovered(T0.plusSeconds(15), T0.plusSeconds(35)));
+    }
+
+    @Test
+    public void testAddBridgesRanges() {
+        CoverageIndex.Coverage c = new CoverageIndex.Coverage();
+        c.add(T0.plusSeconds(40), T0.plusSeconds(50));
+        c.add(T0, T0.plusSeconds(10));
+        c.add(T0.plusSeconds(20), T0.plusSeconds(30));
+        c.add(T0.plusSeconds(5), T0.plusSeconds(45));
+        List<TimeRange> ranges = c.getRanges();
+        assertEquals(1, ranges.size());
+        assertEquals(T0, ranges.get(0).getBeginTime());
+        assertEquals(T0.plusSeconds(50), ranges.get(0).getEndTime());
+    }
+
+    @Test
+    public void testFutureEnd() {
+        RequestFilter[] gaps = CoverageTool.notCovered(new RequestFilter[] {rf(T0.plusSeconds(10), TimeUtils.future)},
+                                                       new TimeRange[] {new TimeRange(T0, TimeUtils.future)});
+        assertEquals(0, gaps.length);
+    }
+
+    @Test
+    public void testFutureBeyondCoverage() {
+        Instant later = TimeUtils.future.plus(Duration.ofDays(1));
+        CoverageIndex.Coverage c = new CoverageIndex.Coverage();
+        c.add(T0, TimeUtils.future);
+        RequestFilter[] gaps = CoverageTool.notCovered(new RequestFilter[] {rf(T0, later)}, c);
+        assertEquals(1, gaps.length);
+        assertRange(TimeUtils.future, later, gaps[0]);
+        assertEquals(TimeUtils.future, c.getRanges().get(0).getEndTime());
+    }
+
+    @Test
+    public void testWayPastBegin() {
+        CoverageIndex.Coverage c = new CoverageIndex.Coverage();
+        c.add(TimeUtils.wayPast, T0);
+        RequestFilter[] gaps = CoverageTool.notCovered(new RequestFilter[] {rf(TimeUtils.wayPast, T0.plusSeconds(10))},
+                                                       c);
+        assertEquals(1, gaps.length);
+        assertRange(T0, T0.plusSeconds(10), gaps[0]);
+        assertEquals(TimeUtils.wayPast, c.getRanges().get(0).getBeginTime());
+        assertTrue(c.isCovered(TimeUtils.wayPast, T0));
+    }
+
+    @Test
+    public void testSentinelsBothEnds() {
+        CoverageIndex.Coverage c = new CoverageIndex.Coverage();
+        c.add(TimeUtils.wayPast, TimeUtils.future);
+        assertEquals(0, CoverageTool.notCovered(new RequestFilter[] {rf(TimeUtils.wayPast, TimeUtils.future)}, c).length);
+        assertTrue(c.isCovered(T0, TimeUtils.future));
+    }
+
+    @Test
+    public void testIndexByChannel() {
+        CoverageIndex index = new CoverageIndex();
+        index.add(rf(T0, T0.plusSeconds(10)));
+        assertEquals(1, index.getNumChannels());
+        assertTrue(index.isCovered(rf(T0, T0.plusSeconds(5))));
+        RequestFilter[] gaps = index.notCovered(new RequestFilter[] {rf(T0, T0.plusSeconds(20))});
+        assertEquals(1, gaps.length);
+        assertRange(T0.plusSeconds(10), T0.plusSeconds(20), gaps[0]);
+    }
+
+    static RequestFilter rf(Instant begin, Instant end) {
+        return new RequestFilter(CHAN, begin, end);
+    }
+
+    static void assertRange(Instant begin, Instant end, RequestFilter rf) {
+        assertEquals(begin, rf.startTime);
+        assertEquals(end, rf.endTime);
+    }
+
+    static final ChannelId CHAN = MockSeismogram.createSpike().channel_id;
+
+    static final Instant T0 = Instant.parse("2020-01-01T00:00:00Z");
+}
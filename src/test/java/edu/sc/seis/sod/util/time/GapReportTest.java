@@ -0,0 +1,99 @@
+package edu.sc.seis.sod.util.time;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.sc.seis.seisFile.TimeUtils;
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.seismogram.RequestFilter;
+import edu.sc.seis.sod.model.station.ChannelId;
+
+public class GapReportTest {
+
+    @Test
+    public void testGapAndOverlap() {
+        GapReport r = analyze(rf(0, 10), rf(25, 40), rf(20, 30));
+        assertEquals(3, r.getNumSegments());
+        assertEquals(1, r.getGapCount());
+        assertEquals(Duration.ofSeconds(10), r.getTotalGap());
+        assertEquals(T0.plusSeconds(10), r.getLargestGapBegin());
+        assertEquals(1, r.getOverlapCount());
+        assertEquals(Duration.ofSeconds(5), r.getTotalOverlap());
+        assertEquals(75.0, r.getPercentAvailable(), 0.0001);
+        assertEquals(T0, r.getBeginTime());
+        assertEquals(T0.plusSeconds(40), r.getEndTime());
+    }
+
+    @Test
+    public void testSentinelsDoNotOverflow() {
+        GapReport r = analyze(new RequestFilter(CHAN, TimeUtils.wayPast, T0),
+                              new RequestFilter(CHAN, T0, TimeUtils.future));
+        assertEquals(0, r.getGapCount());
+        assertEquals(100.0, r.getPercentAvailable(), 0.0001);
+        r = analyze(new RequestFilter(CHAN, TimeUtils.wayPast, T0),
+                    new RequestFilter(CHAN, T0.plusSeconds(10), TimeUtils.future));
+        assertEquals(1, r.getGapCount());
+        assertEquals(Duration.ofSeconds(10), r.getTotalGap());
+        assertTrue(r.getPercentAvailable() > 99 && r.getPercentAvailable() <= 100, "" + r.getPercentAvailable());
+    }
+
+    @Test
+    public void testTolerancePerSegment() {
+        GapReport.Accumulator acc = new GapReport.Accumulator();
+        acc.add(0, 100, 10);
+        acc.add(105, 200, 10);
+        assertEquals(0, acc.sweep("a").getGapCount());
+        acc = new GapReport.Accumulator();
+        acc.add(0, 100, 10);
+        acc.add(105, 200, 1);
+        assertEquals(1, acc.sweep("b").getGapCount());
+    }
+
+    @Test
+    public void testSortOrderByBeginThenEnd() {
+        Random r = new Random(8);
+        GapReport.Accumulator acc = new GapReport.Accumulator();
+        int n = 1000;
+        long[] begins = new long[n];
+        long[] ends = new long[n];
+        for (int i = 0; i < n; i++) {
+            // few distinct begins, so many ties to order by end
+            begins[i] = r.nextInt(50) * 1000L;
+            ends[i] = begins[i] + r.nextInt(5) * 100L;
+            acc.add(begins[i], ends[i], 0);
+        }
+        Integer[] expected = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            expected[i] = i;
+        }
+        Arrays.sort(expected, (i, j) -> begins[i] != begins[j] ? Long.compare(begins[i], begins[j])
+                : Long.compare(ends[i], ends[j]));
+        int[] order = acc.sortOrder();
+        for (int k = 0; k < n; k++) {
+            assertEquals(expected[k].intValue(), order[k], "position " + k);
+        }
+        assertEquals(0, new GapReport.Accumulator().sortOrder().length);
+    }
+
+    static GapReport analyze(RequestFilter... filters) {
+        Map<String, GapReport> reports = GapReport.analyzeRequestFilters(Arrays.asList(filters));
+        assertEquals(1, reports.size());
+        return reports.values().iterator().next();
+    }
+
+    static RequestFilter rf(int beginSec, int endSec) {
+        return new RequestFilter(CHAN, T0.plusSeconds(beginSec), T0.plusSeconds(endSec));
+    }
+
+    static final ChannelId CHAN = MockSeismogram.createSpike().channel_id;
+
+    static final Instant T0 = Instant.parse("2020-01-01T00:00:00Z");
+}
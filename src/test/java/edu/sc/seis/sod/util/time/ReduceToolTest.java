@@ -0,0 +1,363 @@
+package edu.sc.seis.sod.util.time;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.iris.dmc.seedcodec.B1000Types;
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.common.TimeRange;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+import edu.sc.seis.sod.model.seismogram.Plottable;
+import edu.sc.seis.sod.model.seismogram.PlottableChunk;
+import edu.sc.seis.sod.model.seismogram.RequestFilter;
+import edu.sc.seis.sod.model.seismogram.TimeSeriesDataSel;
+import edu.sc.seis.sod.model.station.ChannelId;
+import edu.sc.seis.sod.util.convert.mseed.SteimEncoder;
+
+public class ReduceToolTest {
+
+    @Test
+    public void testRemoveContained() {
+        LocalSeismogramImpl inner = seis(CHAN_A, 10, 20, 1);
+        LocalSeismogramImpl outer = seis(CHAN_A, 0, 100, 2);
+        LocalSeismogramImpl later = seis(CHAN_A, 50, 100, 3);
+        LocalSeismogramImpl sameEnd = seis(CHAN_A, 60, 90, 4);
+        LocalSeismogramImpl[] input = {inner, later, outer, sameEnd};
+        LocalSeismogramImpl[] out = ReduceTool.removeContained(input);
+        // begin time order, overlapping but not contained ones are kept
+        assertArrayEquals(new LocalSeismogramImpl[] {outer, later}, out);
+        // the input is not changed
+        assertArrayEquals(new LocalSeismogramImpl[] {inner, later, outer, sameEnd}, input);
+    }
+
+    @Test
+    public void testRemoveContainedEqualRanges() {
+        LocalSeismogramImpl first = seis(CHAN_A, 0, 100, 1);
+        LocalSeismogramImpl second = seis(CHAN_A, 0, 100, 2);
+        LocalSeismogramImpl third = seis(CHAN_A, 0, 100, 3);
+        LocalSeismogramImpl[] out = ReduceTool.removeContained(new LocalSeismogramImpl[] {first, second, third});
+        assertEquals(1, out.length);
+        assertSame(first, out[0]);
+    }
+
+    @Test
+    public void testRemoveContainedCrossChannel() {
+        LocalSeismogramImpl shortA = seis(CHAN_A, 10, 20, 1);
+        LocalSeismogramImpl longB = seis(CHAN_B, 0, 100, 2);
+        LocalSeismogramImpl equalC = seis(CHAN_C, 0, 100, 3);
+        LocalSeismogramImpl[] out = ReduceTool.removeContained(new LocalSeismogramImpl[] {shortA, equalC, longB});
+        // nothing is contained in a seismogram of its own channel
+        assertArrayEquals(new LocalSeismogramImpl[] {equalC, longB, shortA}, out);
+    }
+
+    @Test
+    public void testMergeTimeRanges() {
+        TimeRange[] merged = ReduceTool.merge(new TimeRange[] {range(50, 60),
+                                                               range(0, 10),
+                                                               range(20, 30),
+                                                               range(10, 15),
+                                                               range(25, 40)});
+        // each result is where the last range merged into it was
+        assertRanges(new TimeRange[] {range(50, 60), range(0, 15), range(20, 40)}, merged);
+        List<TimeRange> list = ReduceTool.mergeMicroSecondTimeRange(Arrays.asList(range(0, 10), range(5, 20)));
+        assertRanges(new TimeRange[] {range(0, 20)}, list.toArray(new TimeRange[0]));
+    }
+
+    @Test
+    public void testMergeRequestFilters() {
+        RequestFilter[] merged = ReduceTool.merge(new RequestFilter[] {rf(CHAN_C, 100, 110),
+                                                                       rf(CHAN_A, 0, 10),
+                                                                       rf(CHAN_B, 5, 15),
+                                                                       rf(CHAN_A, 10, 20),
+                                                                       rf(CHAN_B, 30, 40),
+                                                                       rf(CHAN_A, 15, 25),
+                                                                       rf(CHAN_B, 15, 30)});
+        assertEquals(3, merged.length);
+        assertRF(CHAN_C, 100, 110, merged[0]);
+        assertRF(CHAN_A, 0, 25, merged[1]);
+        assertRF(CHAN_B, 5, 40, merged[2]);
+    }
+
+    @Test
+    public void testMergeSeismograms() throws Exception {
+        LocalSeismogramImpl a1 = seis(CHAN_A, 0, 100, 1);
+        LocalSeismogramImpl b1 = seis(CHAN_B, 0, 100, 2);
+        LocalSeismogramImpl a2 = seis(CHAN_A, 100, 50, 3);
+        LocalSeismogramImpl a3 = seis(CHAN_A, 300, 10, 4);
+        LocalSeismogramImpl b2 = seis(CHAN_B, 50, 100, 5);
+        LocalSeismogramImpl b1Copy = seis(CHAN_B, 0, 100, 6);
+        LocalSeismogramImpl[] merged = ReduceTool.merge(new LocalSeismogramImpl[] {a1, b1, a2, a3, b2, b1Copy});
+        // a1 and a2 are contiguous, b1 and its copy are equal, a3 has a gap
+        // and b2 only overlaps
+        assertEquals(4, merged.length);
+        assertEquals(CHAN_A.getChannelCode(), merged[0].channel_id.getChannelCode());
+        assertEquals(a1.getBeginTime(), merged[0].getBeginTime());
+        assertEquals(150, merged[0].getNumPoints());
+        assertArrayEquals(concat(a1.get_as_longs(), a2.get_as_longs()), merged[0].get_as_longs());
+        assertSame(a3, merged[1]);
+        assertSame(b2, merged[2]);
+        // the earlier input is kept for equal ranges
+        assertSame(b1, merged[3]);
+    }
+
+    @Test
+    public void testMergeChunksLaterInputWins() {
+        PlottableChunk ones = chunk(0, 10, 1);
+        PlottableChunk twos = chunk(5, 10, 2);
+        PlottableChunk after = chunk(15, 5, 3);
+        List<PlottableChunk> merged = ReduceTool.merge(Arrays.asList(ones, twos, after));
+        assertEquals(1, merged.size());
+        assertEquals(0, merged.get(0).getBeginPixel());
+        int[] y = merged.get(0).getData().y_coor;
+        assertEquals(1, y[2 * 4]);
+        assertEquals(2, y[2 * 5]);
+        assertEquals(2, y[2 * 14 + 1]);
+        assertEquals(3, y[2 * 15]);
+        merged = ReduceTool.merge(Arrays.asList(twos, ones));
+        y = merged.get(0).getData().y_coor;
+        assertEquals(1, y[2 * 5]);
+        assertEquals(1, y[2 * 9 + 1]);
+        assertEquals(2, y[2 * 10]);
+        // apart, each stays where it was
+        merged = ReduceTool.merge(Arrays.asList(after, chunk(0, 5, 1)));
+        assertEquals(2, merged.size());
+        assertEquals(15, merged.get(0).getBeginPixel());
+        assertEquals(0, merged.get(1).getBeginPixel());
+    }
+
+    @Test
+    public void testTrimToSameChannel() {
+        RequestFilter inside = rf(CHAN_A, 12, 18);
+        List<RequestFilter> out = ReduceTool.trimTo(Arrays.asList(rf(CHAN_A, 0, 15), inside, rf(CHAN_A, 25, 40)),
+                                                    Arrays.asList(rf(CHAN_A, 10, 30)));
+        assertEquals(3, out.size());
+        assertRF(CHAN_A, 10, 15, out.get(0));
+        assertSame(inside, out.get(1));
+        assertRF(CHAN_A, 25, 30, out.get(2));
+    }
+
+    @Test
+    public void testTrimToCrossChannel() {
+        List<RequestFilter> out = ReduceTool.trimTo(Arrays.asList(rf(CHAN_A, 0, 20), rf(CHAN_B, 0, 20)),
+                                                    Arrays.asList(rf(CHAN_B, 5, 10), rf(CHAN_C, 0, 20)));
+        // CHAN_A has no window and CHAN_C no filter
+        assertEquals(1, out.size());
+        assertRF(CHAN_B, 5, 10, out.get(0));
+    }
+
+    @Test
+    public void testTrimToOverlappingWindows() {
+        List<RequestFilter> out = ReduceTool.trimTo(Arrays.asList(rf(CHAN_A, 0, 100)),
+                                                    Arrays.asList(rf(CHAN_A, 40, 60),
+                                                                  rf(CHAN_A, 10, 50),
+                                                                  rf(CHAN_B, 0, 5)));
+        // cut to each window, in window begin time order
+        assertEquals(2, out.size());
+        assertRF(CHAN_A, 10, 50, out.get(0));
+        assertRF(CHAN_A, 40, 60, out.get(1));
+    }
+
+    @Test
+    public void testTrimToTouchingWindow() {
+        List<RequestFilter> out = ReduceTool.trimTo(Arrays.asList(rf(CHAN_A, 0, 10), rf(CHAN_A, 20, 30)),
+                                                    Arrays.asList(rf(CHAN_A, 10, 20)));
+        assertEquals(0, out.size());
+        out = ReduceTool.trimTo(Arrays.asList(rf(CHAN_A, 0, 10), rf(CHAN_A, 9, 30)),
+                                Arrays.asList(rf(CHAN_A, 10, 20)));
+        assertEquals(1, out.size());
+        assertRF(CHAN_A, 10, 20, out.get(0));
+    }
+
+    @Test
+    public void testTrimToParallel() {
+        List<RequestFilter> rfs = Arrays.asList(rf(CHAN_A, 0, 20), rf(CHAN_B, 0, 20), rf(CHAN_C, 0, 20));
+        List<RequestFilter> windows = Arrays.asList(rf(CHAN_C, 5, 10), rf(CHAN_A, 5, 10), rf(CHAN_B, 5, 10));
+        List<RequestFilter> serial = ReduceTool.trimTo(rfs, windows);
+        List<RequestFilter> parallel = ReduceTool.trimTo(rfs, windows, true);
+        assertEquals(3, serial.size());
+        assertRF(CHAN_C, 5, 10, serial.get(0));
+        assertRF(CHAN_A, 5, 10, serial.get(1));
+        assertRF(CHAN_B, 5, 10, serial.get(2));
+        assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); i++) {
+            assertEquals(serial.get(i).channelId.getChannelCode(), parallel.get(i).channelId.getChannelCode());
+            assertEquals(serial.get(i).startTime, parallel.get(i).startTime);
+        }
+    }
+
+    @Test
+    public void testMergeManyContiguous() throws Exception {
+        LocalSeismogramImpl[] pieces = {seis(CHAN_A, 0, 100, 1),
+                                        seis(CHAN_A, 100, 37, 2),
+                                        seis(CHAN_A, 137, 250, 3),
+                                        seis(CHAN_A, 387, 1, 4),
+                                        seis(CHAN_A, 388, 60, 5)};
+        assertMatchesPairwise(pieces);
+        // out of order input gives the same seismogram
+        LocalSeismogramImpl[] shuffled = {pieces[3], pieces[0], pieces[4], pieces[2], pieces[1]};
+        LocalSeismogramImpl[] merged = ReduceTool.merge(shuffled);
+        assertEquals(1, merged.length);
+        assertArrayEquals(ReduceTool.merge(pieces)[0].get_as_longs(), merged[0].get_as_longs());
+    }
+
+    @Test
+    public void testMergeManyContiguousEncoded() throws Exception {
+        LocalSeismogramImpl[] pieces = {encoded(seis(CHAN_A, 0, 500, 1)),
+                                        encoded(seis(CHAN_A, 500, 300, 2)),
+                                        encoded(seis(CHAN_A, 800, 1000, 3))};
+        LocalSeismogramImpl merged = assertMatchesPairwise(pieces);
+        assertTrue(merged.is_encoded());
+        int numBlocks = 0;
+        for (LocalSeismogramImpl p : pieces) {
+            numBlocks += p.get_as_encoded().length;
+        }
+        assertEquals(numBlocks, merged.get_as_encoded().length);
+    }
+
+    @Test
+    public void testMergeManyWithGapAndOverlap() throws Exception {
+        LocalSeismogramImpl a = seis(CHAN_A, 0, 100, 1);
+        LocalSeismogramImpl b = seis(CHAN_A, 100, 100, 2);
+        LocalSeismogramImpl c = seis(CHAN_A, 200, 100, 3);
+        LocalSeismogramImpl afterGap = seis(CHAN_A, 400, 100, 4);
+        LocalSeismogramImpl overlap = seis(CHAN_A, 450, 100, 5);
+        LocalSeismogramImpl[] merged = ReduceTool.merge(new LocalSeismogramImpl[] {a, b, c, afterGap, overlap});
+        assertEquals(3, merged.length);
+        ReduceTool.LSMerger pairwise = new ReduceTool.LSMerger();
+        LocalSeismogramImpl abc = pairwise.merge(pairwise.merge(a, b), c);
+        assertEquals(abc.getBeginTime(), merged[0].getBeginTime());
+        assertEquals(300, merged[0].getNumPoints());
+        assertArrayEquals(abc.get_as_longs(), merged[0].get_as_longs());
+        assertSame(afterGap, merged[1]);
+        assertSame(overlap, merged[2]);
+    }
+
+    /**
+     * Merges the pieces, which must be contiguous and in time order, both at
+     * once and two at a time with LSMerger.merge, and checks they agree.
+     */
+    static LocalSeismogramImpl assertMatchesPairwise(LocalSeismogramImpl[] pieces) throws Exception {
+        ReduceTool.LSMerger pairwise = new ReduceTool.LSMerger();
+        LocalSeismogramImpl expected = pieces[0];
+        int numPoints = pieces[0].getNumPoints();
+        for (int i = 1; i < pieces.length; i++) {
+            expected = pairwise.merge(expected, pieces[i]);
+            numPoints += pieces[i].getNumPoints();
+        }
+        LocalSeismogramImpl[] merged = ReduceTool.merge(pieces);
+        assertEquals(1, merged.length);
+        assertEquals(expected.getBeginTime(), merged[0].getBeginTime());
+        assertEquals(pieces[0].getBeginTime(), merged[0].getBeginTime());
+        assertEquals(numPoints, merged[0].getNumPoints());
+        assertEquals(expected.getNumPoints(), merged[0].getNumPoints());
+        assertArrayEquals(expected.get_as_longs(), merged[0].get_as_longs());
+        return merged[0];
+    }
+
+    static LocalSeismogramImpl encoded(LocalSeismogramImpl seis) throws Exception {
+        TimeSeriesDataSel td = new TimeSeriesDataSel();
+        td.encoded_values(new SteimEncoder(B1000Types.STEIM1).encodeAll(seis.get_as_longs(), 63));
+        LocalSeismogramImpl out = new LocalSeismogramImpl(seis, td);
+        out.num_points = seis.getNumPoints();
+        return out;
+    }
+
+    static void assertRanges(TimeRange[] expected, TimeRange[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getBeginTime(), actual[i].getBeginTime(), "begin " + i);
+            assertEquals(expected[i].getEndTime(), actual[i].getEndTime(), "end " + i);
+        }
+    }
+
+    static void assertRF(ChannelId chan, int beginSec, int endSec, RequestFilter actual) {
+        assertEquals(chan.getChannelCode(), actual.channelId.getChannelCode());
+        assertEquals(T0.plusSeconds(beginSec), actual.startTime);
+        assertEquals(T0.plusSeconds(endSec), actual.endTime);
+    }
+
+    static int[] concat(int[]... parts) {
+        int n = 0;
+        for (int[] p : parts) {
+            n += p.length;
+        }
+        int[] out = new int[n];
+        int pos = 0;
+        for (int[] p : parts) {
+            System.arraycopy(p, 0, out, pos, p.length);
+            pos += p.length;
+        }
+        return out;
+    }
+
+    static TimeRange range(int beginSec, int endSec) {
+        return new TimeRange(T0.plusSeconds(beginSec), T0.plusSeconds(endSec));
+    }
+
+    static RequestFilter rf(ChannelId chan, int beginSec, int endSec) {
+        return new RequestFilter(chan, T0.plusSeconds(beginSec), T0.plusSeconds(endSec));
+    }
+
+    /**
+     * A seismogram of numPoints samples starting beginSample samples after
+     * T0, the samples are seed, seed + 1, ...
+     */
+    static LocalSeismogramImpl seis(ChannelId chan, int beginSample, int numPoints, int seed) {
+        int[] data = new int[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            data[i] = seed * 1000 + i;
+        }
+        LocalSeismogramImpl s = new LocalSeismogramImpl(SPIKE, data);
+        s.begin_time = T0.plus(PERIOD.multipliedBy(beginSample));
+        s.channel_id = chan;
+        return s;
+    }
+
+    /** numPixels minute pixels starting at beginPixel on the day of T0, all y values are value */
+    static PlottableChunk chunk(int beginPixel, int numPixels, int value) {
+        int[] x = new int[2 * numPixels];
+        int[] y = new int[2 * numPixels];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = beginPixel + i / 2;
+            y[i] = value;
+        }
+        return new PlottableChunk(new Plottable(x, y),
+                                  beginPixel,
+                                  PlottableChunk.getJDay(T0),
+                                  PlottableChunk.getYear(T0),
+                                  1440,
+                                  CHAN_A.getNetworkId(),
+                                  CHAN_A.getStationCode(),
+                                  CHAN_A.getLocCode(),
+                                  CHAN_A.getChannelCode());
+    }
+
+    static ChannelId chan(String code) {
+        return new ChannelId(SPIKE.channel_id.getNetworkId(),
+                             SPIKE.channel_id.getStationCode(),
+                             SPIKE.channel_id.getLocCode(),
+                             code,
+                             T0);
+    }
+
+    static final Instant T0 = Instant.parse("2020-01-01T00:00:00Z");
+
+    static final LocalSeismogramImpl SPIKE = MockSeismogram.createSpike();
+
+    static final Duration PERIOD = SPIKE.getSampling().getPeriod();
+
+    static final ChannelId CHAN_A = chan("BHZ");
+
+    static final ChannelId CHAN_B = chan("BHN");
+
+    static final ChannelId CHAN_C = chan("BHE");
+}
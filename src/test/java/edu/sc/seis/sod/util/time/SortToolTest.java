@@ -0,0 +1,94 @@
+package edu.sc.seis.sod.util.time;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.sc.seis.seisFile.TimeUtils;
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.common.TimeRange;
+import edu.sc.seis.sod.model.seismogram.LocalSeismogramImpl;
+
+public class SortToolTest {
+
+    @Test
+    public void testTimesPastEpochNanosRange() {
+        Instant t0 = Instant.parse("2020-01-01T00:00:00Z");
+        Instant later = TimeUtils.future.plusSeconds(3600);
+        TimeRange a = new TimeRange(later, later);
+        TimeRange b = new TimeRange(TimeUtils.future, TimeUtils.future);
+        TimeRange c = new TimeRange(t0, t0);
+        TimeRange d = new TimeRange(TimeUtils.wayPast, t0);
+        TimeRange[] sorted = SortTool.byBeginTimeAscending(new TimeRange[] {a, b, c, d});
+        assertArrayEquals(new TimeRange[] {d, c, b, a}, sorted);
+    }
+
+    @Test
+    public void testDescendingIsStable() {
+        Instant t0 = Instant.parse("2020-01-01T00:00:00Z");
+        TimeRange a = new TimeRange(t0, t0.plusSeconds(10));
+        TimeRange b = new TimeRange(t0.plusSeconds(5), t0.plusSeconds(10));
+        TimeRange c = new TimeRange(t0, TimeUtils.future);
+        TimeRange[] sorted = SortTool.sortByTimeDescending(new TimeRange[] {a, b, c}, r -> r.getEndTime());
+        assertArrayEquals(new TimeRange[] {c, a, b}, sorted);
+    }
+
+    @Test
+    public void testMatchesComparatorSort() {
+        Random r = new Random(17);
+        Instant t0 = Instant.parse("2020-01-01T00:00:00Z");
+        for (int n : new int[] {0, 1, 100, SortTool.PARALLEL_THRESHOLD + 1000}) {
+            TimeRange[] ranges = new TimeRange[n];
+            for (int i = 0; i < n; i++) {
+                // few distinct begins so there are many ties, plus some sentinels
+                Instant begin;
+                int pick = r.nextInt(20);
+                if (pick == 0) {
+                    begin = TimeUtils.future.plusSeconds(r.nextInt(3));
+                } else if (pick == 1) {
+                    begin = TimeUtils.wayPast.plusSeconds(r.nextInt(3));
+                } else {
+                    begin = t0.plusSeconds(r.nextInt(50));
+                }
+                ranges[i] = new TimeRange(begin, begin);
+            }
+            TimeRange[] expected = ranges.clone();
+            Arrays.sort(expected, Comparator.comparing(TimeRange::getBeginTime));
+            assertIdentical(expected, SortTool.byBeginTimeAscending(ranges.clone()));
+            Arrays.sort(expected, Comparator.comparing(TimeRange::getBeginTime).reversed());
+            assertIdentical(expected, SortTool.sortByTimeDescending(ranges.clone(), TimeRange::getBeginTime));
+        }
+    }
+
+    @Test
+    public void testSortByKey() {
+        String[] items = {"ccc", "a", "bb", "d", "ee"};
+        assertArrayEquals(new String[] {"a", "d", "bb", "ee", "ccc"},
+                          SortTool.sortByKey(items, String::length));
+    }
+
+    @Test
+    public void testByLengthUsesTimeInterval() {
+        LocalSeismogramImpl longest = new LocalSeismogramImpl(MockSeismogram.createSpike(), new int[100]);
+        LocalSeismogramImpl shortest = new LocalSeismogramImpl(MockSeismogram.createSpike(), new int[10]);
+        LocalSeismogramImpl middle = new LocalSeismogramImpl(MockSeismogram.createSpike(), new int[50]);
+        LocalSeismogramImpl[] seis = {longest, shortest, middle};
+        LocalSeismogramImpl[] expected = seis.clone();
+        Arrays.sort(expected, new SortTool.SeisSizeSorter());
+        assertIdentical(expected, SortTool.byLengthAscending(seis));
+    }
+
+    static void assertIdentical(Object[] expected, Object[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertSame(expected[i], actual[i], "at " + i);
+        }
+    }
+}
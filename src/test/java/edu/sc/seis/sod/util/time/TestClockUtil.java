@@ -1,9 +1,11 @@
 package edu.sc.seis.sod.util.time;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.time.Duration;
+import java.time.Instant;
 
 import org.junit.jupiter.api.Test;
 
@@ -22,4 +24,20 @@ class TestClockUtil {
 		assertEquals(100000000, d.getNano());
 	}
 
+	@Test
+	void testTimeSource() {
+		TimeSource orig = ClockUtil.getTimeSource();
+		Duration origOffset = ClockUtil.getCurrentOffset();
+		try {
+			ClockUtil.setTimeSource(new TimeSource.Fixed(Duration.ofSeconds(90)));
+			assertEquals(Duration.ofSeconds(90), ClockUtil.refreshTimeOffset());
+			assertEquals(Duration.ofSeconds(90), ClockUtil.getTimeOffset());
+			Duration diff = Duration.between(Instant.now(), ClockUtil.now());
+			assertTrue(diff.compareTo(Duration.ofSeconds(89)) > 0 && diff.compareTo(Duration.ofSeconds(91)) < 0, "now offset "+diff);
+		} finally {
+			// no refresh, which for the default source would go to the network
+			ClockUtil.restoreTimeSource(orig, origOffset);
+		}
+	}
+
 }
@@ -0,0 +1,131 @@
+package edu.sc.seis.sod.util.time;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.sc.seis.seisFile.TimeUtils;
+import edu.sc.seis.sod.mock.seismogram.MockSeismogram;
+import edu.sc.seis.sod.model.common.TimeRange;
+import edu.sc.seis.sod.model.seismogram.RequestFilter;
+import edu.sc.seis.sod.model.station.ChannelId;
+
+public class TimeRangeSetTest {
+
+    @Test
+    public void testUnion() {
+        TimeRangeSet s = set(range(20, 30), range(0, 10), range(10, 15), range(25, 40));
+        assertRanges(s.union(), range(0, 15), range(20, 40));
+        assertRanges(s.union(SECOND * 5), range(0, 40));
+        assertRanges(s.union(set(range(14, 21))), range(0, 40));
+    }
+
+    @Test
+    public void testIntersection() {
+        TimeRangeSet a = set(range(0, 10), range(20, 30));
+        TimeRangeSet b = set(range(5, 25));
+        assertRanges(a.intersection(b), range(5, 10), range(20, 25));
+        assertEquals(0, a.intersection(set(range(10, 20))).size());
+    }
+
+    @Test
+    public void testDifference() {
+        TimeRangeSet a = set(range(0, 100));
+        TimeRangeSet b = set(range(10, 20), range(50, 60), range(90, 110));
+        assertRanges(a.difference(b), range(0, 10), range(20, 50), range(60, 90));
+        assertEquals(0, b.difference(set(range(0, 200))).size());
+    }
+
+    @Test
+    public void testTrimTo() {
+        TimeRangeSet data = set(range(0, 10), range(10, 20), range(30, 40));
+        assertRanges(data.trimTo(set(range(5, 35))), range(5, 10), range(10, 20), range(30, 35));
+        // only touching the window is not overlapping it
+        assertEquals(0, data.trimTo(set(range(20, 30))).size());
+    }
+
+    @Test
+    public void testChannelsKeptApart() {
+        ChannelId other = new ChannelId(CHAN.getNetworkId(),
+                                        CHAN.getStationCode(),
+                                        CHAN.getLocCode(),
+                                        CHAN.getChannelCode().equals("BHN") ? "BHE" : "BHN",
+                                        T0);
+        TimeRangeSet s = TimeRangeSet.fromRequestFilters(new RequestFilter[] {rf(CHAN, 0, 10),
+                                                                             rf(CHAN, 10, 20),
+                                                                             rf(other, 5, 15)});
+        List<RequestFilter> out = s.union().toRequestFilters();
+        assertEquals(2, out.size());
+        TimeRangeSet diff = s.difference(TimeRangeSet.fromRequestFilters(new RequestFilter[] {rf(CHAN, 0, 20)}));
+        assertEquals(1, diff.size());
+        assertEquals(other.getChannelCode(), diff.toRequestFilters().get(0).channelId.getChannelCode());
+        assertEquals(1, s.intersection(TimeRangeSet.fromRequestFilters(new RequestFilter[] {rf(other, 0, 20)})).size());
+    }
+
+    @Test
+    public void testSentinelTimes() {
+        TimeRangeSet s = TimeRangeSet.fromTimeRanges(new TimeRange[] {new TimeRange(TimeUtils.wayPast, T0),
+                                                                     new TimeRange(T0.plusSeconds(10),
+                                                                                   TimeUtils.future)});
+        TimeRange[] out = s.union().toTimeRanges();
+        assertEquals(2, out.length);
+        assertEquals(TimeUtils.wayPast, out[0].getBeginTime());
+        assertEquals(T0, out[0].getEndTime());
+        assertEquals(T0.plusSeconds(10), out[1].getBeginTime());
+        assertEquals(TimeUtils.future, out[1].getEndTime());
+        assertEquals(1, s.union(Long.MAX_VALUE).size());
+        // the gap after a range ending at wayPast must not overflow to negative
+        assertEquals(2, set(new TimeRange(TimeUtils.wayPast, TimeUtils.wayPast), range(0, 10)).union().size());
+        TimeRange[] gaps = TimeRangeSet.fromTimeRanges(new TimeRange[] {new TimeRange(TimeUtils.wayPast,
+                                                                                    TimeUtils.future)})
+                .difference(s)
+                .toTimeRanges();
+        assertEquals(1, gaps.length);
+        assertEquals(T0, gaps[0].getBeginTime());
+        assertEquals(T0.plusSeconds(10), gaps[0].getEndTime());
+        TimeRange[] both = s.intersection(set(range(-10, 20))).toTimeRanges();
+        assertEquals(2, both.length);
+        assertEquals(T0.minusSeconds(10), both[0].getBeginTime());
+        assertEquals(T0.plusSeconds(20), both[1].getEndTime());
+    }
+
+    @Test
+    public void testAreContiguous() {
+        assertTrue(TimeRangeSet.areContiguous(0, 10 * SECOND, 11 * SECOND, 20 * SECOND, SECOND));
+        assertFalse(TimeRangeSet.areContiguous(0, 10 * SECOND, 12 * SECOND, 20 * SECOND, SECOND));
+        assertFalse(TimeRangeSet.areContiguous(0, 10 * SECOND, 5 * SECOND, 20 * SECOND, SECOND));
+        assertFalse(TimeRangeSet.areContiguous(Long.MIN_VALUE, 0, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE - 1));
+    }
+
+    static void assertRanges(TimeRangeSet s, TimeRange... expected) {
+        TimeRange[] actual = s.toTimeRanges();
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getBeginTime(), actual[i].getBeginTime(), "begin " + i);
+            assertEquals(expected[i].getEndTime(), actual[i].getEndTime(), "end " + i);
+        }
+    }
+
+    static TimeRangeSet set(TimeRange... ranges) {
+        return TimeRangeSet.fromTimeRanges(ranges);
+    }
+
+    static TimeRange range(int beginSec, int endSec) {
+        return new TimeRange(T0.plusSeconds(beginSec), T0.plusSeconds(endSec));
+    }
+
+    static RequestFilter rf(ChannelId chan, int beginSec, int endSec) {
+        return new RequestFilter(chan, T0.plusSeconds(beginSec), T0.plusSeconds(endSec));
+    }
+
+    static final long SECOND = 1000000000L;
+
+    static final ChannelId CHAN = MockSeismogram.createSpike().channel_id;
+
+    static final Instant T0 = Instant.parse("2020-01-01T00:00:00Z");
+}